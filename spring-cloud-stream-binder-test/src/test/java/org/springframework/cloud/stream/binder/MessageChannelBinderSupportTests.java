@@ -17,6 +17,7 @@
 package org.springframework.cloud.stream.binder;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 
@@ -156,6 +157,25 @@ public class MessageChannelBinderSupportTests {
 				"application/x-java-object;type=org.springframework.cloud.stream.binder.MessageChannelBinderSupportTests$Foo");
 	}
 
+	@Test
+	public void testPojoDeserializationFromPayloadView() throws Exception {
+		MessageValues convertedValues = binder.serializePayloadIfNecessary(new GenericMessage<>(new Foo("bar")));
+		byte[] embedded = EmbeddedHeaderUtils.embedHeaders(convertedValues, BinderHeaders.STANDARD_HEADERS);
+		MessageValues extracted = EmbeddedHeaderUtils.extractHeaders(new GenericMessage<>(embedded), false, true);
+		assertThat(extracted.getPayload()).isInstanceOf(ByteBuffer.class);
+		MessageValues reconstructed = binder.deserializePayloadIfNecessary(extracted);
+		assertThat(((Foo) reconstructed.getPayload()).getBar()).isEqualTo("bar");
+	}
+
+	@Test
+	public void testStringDeserializationFromPayloadView() throws Exception {
+		MessageValues convertedValues = binder.serializePayloadIfNecessary(new GenericMessage<>("foo"));
+		byte[] embedded = EmbeddedHeaderUtils.embedHeaders(convertedValues, BinderHeaders.STANDARD_HEADERS);
+		MessageValues extracted = EmbeddedHeaderUtils.extractHeaders(new GenericMessage<>(embedded), false, true);
+		MessageValues reconstructed = binder.deserializePayloadIfNecessary(extracted);
+		assertThat(reconstructed.getPayload()).isEqualTo("foo");
+	}
+
 	@Test
 	public void testTupleSerialization() {
 		Tuple payload = TupleBuilder.tuple().of("foo", "bar");
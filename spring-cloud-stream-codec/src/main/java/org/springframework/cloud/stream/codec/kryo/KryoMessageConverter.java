@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.codec.kryo;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import org.springframework.integration.codec.kryo.CompositeKryoRegistrar;
+import org.springframework.integration.codec.kryo.KryoRegistrar;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.MimeType;
+
+/**
+ * A {@link org.springframework.messaging.converter.MessageConverter} that serializes
+ * payloads with Kryo, for the {@code application/x-kryo} content type. The class of the
+ * payload is written along with it, as a registration id for registered classes, or as
+ * a class name otherwise. If {@link #setRegistrationRequired(boolean) registration is
+ * required}, only registered classes can be converted.
+ * <p>
+ * Kryo instances are not thread safe and expensive to create, so they are kept in a
+ * bounded pool, together with the buffers used for serialization. Instances created
+ * when the pool is exhausted are discarded after use.
+ *
+ * @since 1.3
+ */
+public class KryoMessageConverter extends AbstractMessageConverter {
+
+	public static final MimeType KRYO_MIME_TYPE = MimeType.valueOf("application/x-kryo");
+
+	public static final int DEFAULT_POOL_SIZE = 16;
+
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	/**
+	 * Output buffers that grew larger than this multiple of the buffer size are not
+	 * kept in the pool.
+	 */
+	private static final int MAX_RETAINED_BUFFER_FACTOR = 16;
+
+	private static final byte[] EMPTY_BUFFER = new byte[0];
+
+	private final CompositeKryoRegistrar kryoRegistrar;
+
+	private volatile BlockingQueue<PooledKryo> pool = new ArrayBlockingQueue<>(DEFAULT_POOL_SIZE);
+
+	private volatile boolean references = true;
+
+	private volatile boolean registrationRequired;
+
+	private volatile int bufferSize = DEFAULT_BUFFER_SIZE;
+
+	private volatile int maxBufferSize = -1;
+
+	public KryoMessageConverter() {
+		this(Collections.<KryoRegistrar>emptyList());
+	}
+
+	public KryoMessageConverter(List<KryoRegistrar> kryoRegistrars) {
+		super(KRYO_MIME_TYPE);
+		Assert.notNull(kryoRegistrars, "'kryoRegistrars' cannot be null");
+		this.kryoRegistrar = new CompositeKryoRegistrar(kryoRegistrars);
+	}
+
+	/**
+	 * Set the maximum number of Kryo instances kept for reuse.
+	 * @param poolSize the pool size
+	 */
+	public void setPoolSize(int poolSize) {
+		Assert.isTrue(poolSize > 0, "'poolSize' must be greater than 0");
+		this.pool = new ArrayBlockingQueue<>(poolSize);
+	}
+
+	/**
+	 * Set whether Kryo tracks references, which supports cyclic graphs and writes
+	 * repeated objects only once. Defaults to {@code true}.
+	 * @param references whether references are tracked
+	 */
+	public void setReferences(boolean references) {
+		this.references = references;
+		this.pool.clear();
+	}
+
+	/**
+	 * Set whether only classes registered by the {@link KryoRegistrar}s can be converted.
+	 * Defaults to {@code false}.
+	 * @param registrationRequired whether registration is required
+	 */
+	public void setRegistrationRequired(boolean registrationRequired) {
+		this.registrationRequired = registrationRequired;
+		this.pool.clear();
+	}
+
+	/**
+	 * Set the initial size of serialization buffers.
+	 * @param bufferSize the initial buffer size, in bytes
+	 */
+	public void setBufferSize(int bufferSize) {
+		Assert.isTrue(bufferSize > 0, "'bufferSize' must be greater than 0");
+		this.bufferSize = bufferSize;
+		this.pool.clear();
+	}
+
+	/**
+	 * Set the maximum size of a serialized payload, or -1 for no limit (the default).
+	 * @param maxBufferSize the maximum buffer size, in bytes
+	 */
+	public void setMaxBufferSize(int maxBufferSize) {
+		this.maxBufferSize = maxBufferSize;
+		this.pool.clear();
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return true;
+	}
+
+	@Override
+	protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+		PooledKryo pooledKryo = borrow();
+		try {
+			pooledKryo.kryo.writeClassAndObject(pooledKryo.output, payload);
+			return pooledKryo.output.toBytes();
+		}
+		catch (RuntimeException e) {
+			throw new MessageConversionException("Could not write Kryo: " + e.getMessage(), e);
+		}
+		finally {
+			release(pooledKryo);
+		}
+	}
+
+	@Override
+	protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+		if (!(message.getPayload() instanceof byte[])) {
+			return null;
+		}
+		Object result;
+		PooledKryo pooledKryo = borrow();
+		try {
+			pooledKryo.input.setBuffer((byte[]) message.getPayload());
+			result = pooledKryo.kryo.readClassAndObject(pooledKryo.input);
+		}
+		catch (RuntimeException e) {
+			throw new MessageConversionException(message, "Could not read Kryo: " + e.getMessage(), e);
+		}
+		finally {
+			release(pooledKryo);
+		}
+		return ClassUtils.isAssignableValue(targetClass, result) ? result : null;
+	}
+
+	int getPooledCount() {
+		return this.pool.size();
+	}
+
+	private PooledKryo borrow() {
+		PooledKryo pooledKryo = this.pool.poll();
+		if (pooledKryo == null) {
+			Kryo kryo = new Kryo();
+			kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+			kryo.setReferences(this.references);
+			kryo.setRegistrationRequired(this.registrationRequired);
+			this.kryoRegistrar.registerTypes(kryo);
+			pooledKryo = new PooledKryo(kryo, new Output(this.bufferSize, this.maxBufferSize), new Input());
+		}
+		return pooledKryo;
+	}
+
+	private void release(PooledKryo pooledKryo) {
+		// do not keep a reference to the last payload, or a buffer grown by a large one
+		pooledKryo.input.setBuffer(EMPTY_BUFFER);
+		if (pooledKryo.output.getBuffer().length > this.bufferSize * MAX_RETAINED_BUFFER_FACTOR) {
+			return;
+		}
+		pooledKryo.output.clear();
+		this.pool.offer(pooledKryo);
+	}
+
+	private static final class PooledKryo {
+
+		private final Kryo kryo;
+
+		private final Output output;
+
+		private final Input input;
+
+		private PooledKryo(Kryo kryo, Output output, Input input) {
+			this.kryo = kryo;
+			this.output = output;
+			this.input = input;
+		}
+
+	}
+
+}
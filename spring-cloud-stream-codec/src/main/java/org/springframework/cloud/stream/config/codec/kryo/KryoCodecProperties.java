@@ -19,6 +19,7 @@ package org.springframework.cloud.stream.config.codec.kryo;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.stream.codec.kryo.KryoMessageConverter;
 
 /**
  * @author David Turanski
@@ -28,6 +29,27 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class KryoCodecProperties {
 	private boolean references = true;
 
+	/**
+	 * Whether only registered classes can be converted to and from 'application/x-kryo'.
+	 */
+	private boolean registrationRequired;
+
+	/**
+	 * Maximum number of Kryo instances kept for reuse by the 'application/x-kryo' converter.
+	 */
+	private int poolSize = KryoMessageConverter.DEFAULT_POOL_SIZE;
+
+	/**
+	 * Initial size of the serialization buffers of the 'application/x-kryo' converter.
+	 */
+	private int bufferSize = KryoMessageConverter.DEFAULT_BUFFER_SIZE;
+
+	/**
+	 * Maximum size of a payload serialized by the 'application/x-kryo' converter, -1 for
+	 * no limit.
+	 */
+	private int maxBufferSize = -1;
+
 	public boolean isReferences() {
 		return references;
 	}
@@ -36,4 +58,36 @@ public class KryoCodecProperties {
 		this.references = references;
 	}
 
+	public boolean isRegistrationRequired() {
+		return this.registrationRequired;
+	}
+
+	public void setRegistrationRequired(boolean registrationRequired) {
+		this.registrationRequired = registrationRequired;
+	}
+
+	public int getPoolSize() {
+		return this.poolSize;
+	}
+
+	public void setPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+
+	public int getBufferSize() {
+		return this.bufferSize;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public int getMaxBufferSize() {
+		return this.maxBufferSize;
+	}
+
+	public void setMaxBufferSize(int maxBufferSize) {
+		this.maxBufferSize = maxBufferSize;
+	}
+
 }
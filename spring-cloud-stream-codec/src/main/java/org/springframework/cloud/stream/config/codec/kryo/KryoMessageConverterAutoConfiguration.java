@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.config.codec.kryo;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import com.esotericsoftware.kryo.Kryo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.stream.codec.kryo.KryoMessageConverter;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.codec.kryo.KryoRegistrar;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+
+/**
+ * Auto configures a {@link KryoMessageConverter} if Kryo is on the class path. Being a
+ * {@link org.springframework.messaging.converter.MessageConverter} bean, it is added to
+ * the converters used by bindings, for the 'application/x-kryo' content type.
+ * @since 1.3
+ */
+@Configuration
+@ConditionalOnClass({ Kryo.class, AbstractMessageConverter.class })
+@EnableConfigurationProperties(KryoCodecProperties.class)
+public class KryoMessageConverterAutoConfiguration {
+
+	@Autowired
+	ApplicationContext applicationContext;
+
+	@Autowired
+	KryoCodecProperties kryoCodecProperties;
+
+	@Bean
+	@ConditionalOnMissingBean(KryoMessageConverter.class)
+	public KryoMessageConverter kryoMessageConverter() {
+		Map<String, KryoRegistrar> kryoRegistrarMap = applicationContext.getBeansOfType(KryoRegistrar.class);
+		KryoMessageConverter converter = new KryoMessageConverter(new ArrayList<>(kryoRegistrarMap.values()));
+		converter.setReferences(kryoCodecProperties.isReferences());
+		converter.setRegistrationRequired(kryoCodecProperties.isRegistrationRequired());
+		converter.setPoolSize(kryoCodecProperties.getPoolSize());
+		converter.setBufferSize(kryoCodecProperties.getBufferSize());
+		converter.setMaxBufferSize(kryoCodecProperties.getMaxBufferSize());
+		return converter;
+	}
+}
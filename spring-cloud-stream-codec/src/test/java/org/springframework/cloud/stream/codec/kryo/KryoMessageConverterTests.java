@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.codec.kryo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import org.springframework.integration.codec.kryo.KryoClassListRegistrar;
+import org.springframework.integration.codec.kryo.KryoRegistrar;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @since 1.3
+ */
+public class KryoMessageConverterTests {
+
+	private static final MessageHeaders KRYO_HEADERS = new MessageHeaders(Collections.<String, Object>singletonMap(
+			MessageHeaders.CONTENT_TYPE, KryoMessageConverter.KRYO_MIME_TYPE));
+
+	@Test
+	public void testRoundTrip() {
+		KryoMessageConverter converter = new KryoMessageConverter();
+		Foo foo = new Foo("bar", 42, new ArrayList<>(Arrays.asList("a", "b")));
+		Message<?> message = converter.toMessage(foo, KRYO_HEADERS);
+		assertThat(message.getPayload()).isInstanceOf(byte[].class);
+		assertThat(converter.fromMessage(message, Foo.class)).isEqualTo(foo);
+		assertThat(converter.fromMessage(message, Object.class)).isEqualTo(foo);
+		assertThat(converter.fromMessage(message, String.class)).isNull();
+	}
+
+	@Test
+	public void testRegisteredClassIsWrittenAsId() {
+		KryoMessageConverter unregistered = new KryoMessageConverter();
+		KryoMessageConverter registered = new KryoMessageConverter(Collections.<KryoRegistrar>singletonList(
+				new KryoClassListRegistrar(Arrays.<Class<?>>asList(Foo.class, ArrayList.class))));
+		registered.setRegistrationRequired(true);
+		Foo foo = new Foo("bar", 42, new ArrayList<>(Arrays.asList("a", "b")));
+		byte[] compact = (byte[]) registered.toMessage(foo, KRYO_HEADERS).getPayload();
+		byte[] named = (byte[]) unregistered.toMessage(foo, KRYO_HEADERS).getPayload();
+		assertThat(compact.length).isLessThan(named.length - Foo.class.getName().length() + 2);
+		assertThat(registered.fromMessage(registered.toMessage(foo, KRYO_HEADERS), Foo.class)).isEqualTo(foo);
+	}
+
+	@Test
+	public void testRegistrationRequired() {
+		KryoMessageConverter converter = new KryoMessageConverter();
+		converter.setRegistrationRequired(true);
+		try {
+			converter.toMessage(new Foo("bar", 42, null), KRYO_HEADERS);
+			fail("MessageConversionException expected");
+		}
+		catch (MessageConversionException e) {
+			assertThat(e.getMessage()).contains(Foo.class.getName());
+		}
+		assertThat(converter.getPooledCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testPoolIsBounded() throws Exception {
+		final KryoMessageConverter converter = new KryoMessageConverter();
+		converter.setPoolSize(2);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Object>> results = executor.invokeAll(Collections.nCopies(64, new Callable<Object>() {
+
+				@Override
+				public Object call() throws Exception {
+					Foo foo = new Foo(Thread.currentThread().getName(), 1, null);
+					return converter.fromMessage(converter.toMessage(foo, KRYO_HEADERS), Foo.class);
+				}
+
+			}));
+			for (Future<Object> result : results) {
+				assertThat(result.get()).isInstanceOf(Foo.class);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertThat(converter.getPooledCount()).isLessThanOrEqualTo(2);
+	}
+
+	@Test
+	public void testLargeBuffersAreNotPooled() {
+		KryoMessageConverter converter = new KryoMessageConverter();
+		converter.setBufferSize(16);
+		converter.toMessage(new Foo("bar", 1, null), KRYO_HEADERS);
+		assertThat(converter.getPooledCount()).isEqualTo(1);
+		converter.toMessage(new Foo(new String(new char[1024]), 1, null), KRYO_HEADERS);
+		assertThat(converter.getPooledCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void testMaxBufferSize() {
+		KryoMessageConverter converter = new KryoMessageConverter();
+		converter.setBufferSize(16);
+		converter.setMaxBufferSize(64);
+		try {
+			converter.toMessage(new Foo(new String(new char[1024]), 1, null), KRYO_HEADERS);
+			fail("MessageConversionException expected");
+		}
+		catch (MessageConversionException e) {
+			assertThat(e.getMessage()).contains("Buffer overflow");
+		}
+	}
+
+	static class Foo {
+
+		private String name;
+
+		private int count;
+
+		private List<String> tags;
+
+		Foo(String name, int count, List<String> tags) {
+			this.name = name;
+			this.count = count;
+			this.tags = tags;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Foo)) {
+				return false;
+			}
+			Foo other = (Foo) o;
+			return this.name.equals(other.name) && this.count == other.count
+					&& (this.tags == null ? other.tags == null : this.tags.equals(other.tags));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.name.hashCode() * 31 + this.count;
+		}
+
+	}
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.cloud.stream.messaging.Sink;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.support.ErrorMessage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StreamListenerBatchTests {
+
+	@Test
+	public void testBatchOfPayloads() throws Exception {
+		ConfigurableApplicationContext context = SpringApplication.run(TestPayloadBatchSink.class,
+				"--server.port=0", "--spring.cloud.stream.bindings.input.consumer.batchingEnabled=true",
+				"--spring.cloud.stream.bindings.input.consumer.batchSize=3");
+		TestPayloadBatchSink testSink = context.getBean(TestPayloadBatchSink.class);
+		Sink sink = context.getBean(Sink.class);
+		for (int i = 0; i < 3; i++) {
+			sink.input().send(MessageBuilder.withPayload("{\"foo\":\"bar" + i + "\"}")
+					.setHeader("contentType", "application/json").build());
+		}
+		assertThat(testSink.latch.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(testSink.batches).hasSize(1);
+		assertThat(testSink.batches.get(0)).hasSize(3);
+		assertThat(testSink.batches.get(0).get(2).getFoo()).isEqualTo("bar2");
+		context.close();
+	}
+
+	@Test
+	public void testBatchOfMessagesDispatchedOnTimeout() throws Exception {
+		ConfigurableApplicationContext context = SpringApplication.run(TestMessageBatchSink.class,
+				"--server.port=0", "--spring.cloud.stream.bindings.input.consumer.batchingEnabled=true",
+				"--spring.cloud.stream.bindings.input.consumer.batchTimeout=100");
+		TestMessageBatchSink testSink = context.getBean(TestMessageBatchSink.class);
+		Sink sink = context.getBean(Sink.class);
+		sink.input().send(MessageBuilder.withPayload("{\"foo\":\"bar\"}")
+				.setHeader("contentType", "application/json").setHeader("baz", "qux").build());
+		List<Message<StreamListenerTestUtils.FooPojo>> batch = testSink.batches.poll(10, TimeUnit.SECONDS);
+		assertThat(batch).hasSize(1);
+		assertThat(batch.get(0).getPayload().getFoo()).isEqualTo("bar");
+		assertThat(batch.get(0).getHeaders()).containsEntry("baz", "qux");
+		context.close();
+	}
+
+	@Test
+	public void testConversionFailureReportedPerElement() throws Exception {
+		ConfigurableApplicationContext context = SpringApplication.run(TestPayloadBatchSink.class,
+				"--server.port=0", "--spring.cloud.stream.bindings.input.consumer.batchingEnabled=true",
+				"--spring.cloud.stream.bindings.input.consumer.batchSize=2");
+		final BlockingQueue<ErrorMessage> errors = new LinkedBlockingQueue<>();
+		context.getBean("errorChannel", PublishSubscribeChannel.class).subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				errors.add((ErrorMessage) message);
+			}
+
+		});
+		TestPayloadBatchSink testSink = context.getBean(TestPayloadBatchSink.class);
+		Sink sink = context.getBean(Sink.class);
+		sink.input().send(MessageBuilder.withPayload("{\"foo\":\"bar0\"}")
+				.setHeader("contentType", "application/json").build());
+		sink.input().send(MessageBuilder.withPayload("not json")
+				.setHeader("contentType", "application/json").build());
+		sink.input().send(MessageBuilder.withPayload("{\"foo\":\"bar1\"}")
+				.setHeader("contentType", "application/json").build());
+		ErrorMessage error = errors.poll(10, TimeUnit.SECONDS);
+		assertThat(error).isNotNull();
+		assertThat(error.getPayload()).isInstanceOf(MessageConversionException.class);
+		assertThat(((MessagingException) error.getPayload()).getFailedMessage().getPayload()).isEqualTo("not json");
+		assertThat(testSink.latch.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(testSink.batches.get(0)).hasSize(2);
+		context.close();
+	}
+
+	@Test
+	public void testConversionFailureReportedToBindingErrorChannel() throws Exception {
+		ConfigurableApplicationContext context = SpringApplication.run(TestPayloadBatchSink.class,
+				"--server.port=0", "--spring.cloud.stream.bindings.input.consumer.batchingEnabled=true",
+				"--spring.cloud.stream.bindings.input.consumer.batchSize=2",
+				"--spring.cloud.stream.bindings.input.destination=batchIn",
+				"--spring.cloud.stream.bindings.input.group=batchGroup");
+		final BlockingQueue<ErrorMessage> bindingErrors = new LinkedBlockingQueue<>();
+		final BlockingQueue<ErrorMessage> globalErrors = new LinkedBlockingQueue<>();
+		// registered as a binder that creates an error channel for the binding would
+		PublishSubscribeChannel bindingErrorChannel = new PublishSubscribeChannel();
+		bindingErrorChannel.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				bindingErrors.add((ErrorMessage) message);
+			}
+
+		});
+		context.getBeanFactory().registerSingleton("batchIn.batchGroup.errors", bindingErrorChannel);
+		context.getBean("errorChannel", PublishSubscribeChannel.class).subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				globalErrors.add((ErrorMessage) message);
+			}
+
+		});
+		Sink sink = context.getBean(Sink.class);
+		sink.input().send(MessageBuilder.withPayload("not json")
+				.setHeader("contentType", "application/json").build());
+		ErrorMessage error = bindingErrors.poll(10, TimeUnit.SECONDS);
+		assertThat(error).isNotNull();
+		assertThat(error.getPayload()).isInstanceOf(MessageConversionException.class);
+		assertThat(globalErrors).isEmpty();
+		context.close();
+	}
+
+	@Test
+	public void testListenerFailureIsRetriedAndReported() throws Exception {
+		ConfigurableApplicationContext context = SpringApplication.run(TestFailingBatchSink.class,
+				"--server.port=0", "--spring.cloud.stream.bindings.input.consumer.batchingEnabled=true",
+				"--spring.cloud.stream.bindings.input.consumer.batchSize=2",
+				"--spring.cloud.stream.bindings.input.consumer.maxAttempts=2",
+				"--spring.cloud.stream.bindings.input.consumer.backOffInitialInterval=10");
+		final BlockingQueue<ErrorMessage> errors = new LinkedBlockingQueue<>();
+		context.getBean("errorChannel", PublishSubscribeChannel.class).subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				errors.add((ErrorMessage) message);
+			}
+
+		});
+		TestFailingBatchSink testSink = context.getBean(TestFailingBatchSink.class);
+		Sink sink = context.getBean(Sink.class);
+		for (int i = 0; i < 2; i++) {
+			sink.input().send(MessageBuilder.withPayload("{\"foo\":\"bar" + i + "\"}")
+					.setHeader("contentType", "application/json").build());
+		}
+		ErrorMessage error = errors.poll(10, TimeUnit.SECONDS);
+		assertThat(error).isNotNull();
+		assertThat(testSink.attempts.get()).isEqualTo(2);
+		assertThat(((MessagingException) error.getPayload()).getFailedMessage().getPayload())
+				.isInstanceOf(List.class);
+		assertThat((List<?>) ((MessagingException) error.getPayload()).getFailedMessage().getPayload())
+				.hasSize(2);
+		context.close();
+	}
+
+	@Test
+	public void testPartialBatchDispatchedOnShutdown() throws Exception {
+		ConfigurableApplicationContext context = SpringApplication.run(TestPayloadBatchSink.class,
+				"--server.port=0", "--spring.cloud.stream.bindings.input.consumer.batchingEnabled=true",
+				"--spring.cloud.stream.bindings.input.consumer.batchSize=10",
+				"--spring.cloud.stream.bindings.input.consumer.batchTimeout=60000");
+		TestPayloadBatchSink testSink = context.getBean(TestPayloadBatchSink.class);
+		Sink sink = context.getBean(Sink.class);
+		for (int i = 0; i < 3; i++) {
+			sink.input().send(MessageBuilder.withPayload("{\"foo\":\"bar" + i + "\"}")
+					.setHeader("contentType", "application/json").build());
+		}
+		assertThat(testSink.batches).isEmpty();
+		context.close();
+		assertThat(testSink.latch.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(testSink.batches).hasSize(1);
+		assertThat(testSink.batches.get(0)).hasSize(3);
+	}
+
+	@EnableBinding(Sink.class)
+	@EnableAutoConfiguration
+	public static class TestPayloadBatchSink {
+
+		List<List<StreamListenerTestUtils.FooPojo>> batches = new ArrayList<>();
+
+		CountDownLatch latch = new CountDownLatch(1);
+
+		@StreamListener(Sink.INPUT)
+		public void receive(List<StreamListenerTestUtils.FooPojo> fooPojos) {
+			this.batches.add(fooPojos);
+			this.latch.countDown();
+		}
+	}
+
+	@EnableBinding(Sink.class)
+	@EnableAutoConfiguration
+	public static class TestFailingBatchSink {
+
+		AtomicInteger attempts = new AtomicInteger();
+
+		@StreamListener(Sink.INPUT)
+		public void receive(List<StreamListenerTestUtils.FooPojo> fooPojos) {
+			this.attempts.incrementAndGet();
+			throw new IllegalStateException("failed");
+		}
+	}
+
+	@EnableBinding(Sink.class)
+	@EnableAutoConfiguration
+	public static class TestMessageBatchSink {
+
+		BlockingQueue<List<Message<StreamListenerTestUtils.FooPojo>>> batches = new LinkedBlockingQueue<>();
+
+		@StreamListener(Sink.INPUT)
+		public void receive(List<Message<StreamListenerTestUtils.FooPojo>> messages) {
+			this.batches.add(messages);
+		}
+	}
+
+}
@@ -16,6 +16,9 @@
 
 package org.springframework.cloud.stream.schema;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
+
 /**
  * @author Vinicius Carvalho
  */
@@ -24,4 +27,17 @@ public class SchemaNotFoundException extends RuntimeException {
 	public SchemaNotFoundException(String message) {
 		super(message);
 	}
+
+	/**
+	 * Determine whether an error means that a schema does not exist, either because it
+	 * is a {@link SchemaNotFoundException}, or because the registry answered with a
+	 * {@code 404} status.
+	 * @param e the error
+	 * @return true if the schema was not found
+	 * @since 1.3
+	 */
+	public static boolean isNotFound(Throwable e) {
+		return e instanceof SchemaNotFoundException || (e instanceof HttpStatusCodeException
+				&& ((HttpStatusCodeException) e).getStatusCode() == HttpStatus.NOT_FOUND);
+	}
 }
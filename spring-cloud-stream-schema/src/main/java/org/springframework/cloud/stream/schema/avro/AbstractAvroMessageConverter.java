@@ -18,18 +18,20 @@ package org.springframework.cloud.stream.schema.avro;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.OutputStream;
 import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DatumWriter;
-import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.avro.reflect.ReflectDatumReader;
 import org.apache.avro.reflect.ReflectDatumWriter;
@@ -43,14 +45,44 @@ import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.converter.AbstractMessageConverter;
 import org.springframework.messaging.converter.MessageConversionException;
 import org.springframework.util.MimeType;
+import org.springframework.util.ObjectUtils;
 
 /**
  * Base class for Apache Avro
  * {@link org.springframework.messaging.converter.MessageConverter} implementations.
+ * <p>
+ * {@link DatumReader}s and {@link DatumWriter}s are cached by type and schemas, since
+ * creating them, and resolving the writer schema against the reader schema, is
+ * expensive. Binary encoders, decoders and output buffers are reused for each thread.
  * @author Marius Bogoevici
  */
 public abstract class AbstractAvroMessageConverter extends AbstractMessageConverter {
 
+	/**
+	 * Maximum number of readers, and of writers, that are cached.
+	 */
+	private static final int MAX_CACHE_SIZE = 1024;
+
+	/**
+	 * Output buffers that grew larger than this are not kept for reuse.
+	 */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+	private final ConcurrentMap<DatumKey, DatumReader<Object>> datumReaders = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<DatumKey, DatumWriter<Object>> datumWriters = new ConcurrentHashMap<>();
+
+	private final ThreadLocal<BinaryCodecs> binaryCodecs = new ThreadLocal<BinaryCodecs>() {
+
+		@Override
+		protected BinaryCodecs initialValue() {
+			return new BinaryCodecs();
+		}
+
+	};
+
+	private volatile boolean recordReuseEnabled;
+
 	protected AbstractAvroMessageConverter(MimeType supportedMimeType) {
 		super(supportedMimeType);
 	}
@@ -59,6 +91,19 @@ public abstract class AbstractAvroMessageConverter extends AbstractMessageConver
 		super(supportedMimeTypes);
 	}
 
+	/**
+	 * Set whether a record read on a thread is reused as the result of the next read of
+	 * the same type and schemas on that thread, which reduces allocation and garbage
+	 * collection. Only enable it if messages are processed synchronously, and their
+	 * payloads are not kept after processing, since they will be overwritten. Defaults
+	 * to {@code false}.
+	 * @param recordReuseEnabled whether records are reused
+	 * @since 1.3
+	 */
+	public void setRecordReuseEnabled(boolean recordReuseEnabled) {
+		this.recordReuseEnabled = recordReuseEnabled;
+	}
+
 	protected static Schema parseSchema(Resource r) throws IOException {
 		return new Schema.Parser().parse(r.getInputStream());
 	}
@@ -73,22 +118,35 @@ public abstract class AbstractAvroMessageConverter extends AbstractMessageConver
 		Object result = null;
 		try {
 			byte[] payload = (byte[]) message.getPayload();
-			ByteBuffer buf = ByteBuffer.wrap(payload);
 			MimeType mimeType = getContentTypeResolver().resolve(message.getHeaders());
-			if (mimeType == null) {
-				if (conversionHint instanceof MimeType) {
-					mimeType = (MimeType) conversionHint;
-				}
-				else {
-					return null;
-				}
+			if (mimeType == null && conversionHint instanceof MimeType) {
+				mimeType = (MimeType) conversionHint;
+			}
+			if (mimeType == null && getSchemaPrefixLength() == 0) {
+				return null;
+			}
+			int offset = 0;
+			Schema writerSchema = resolveWriterSchemaFromPrefix(payload, mimeType);
+			if (writerSchema != null) {
+				offset = getSchemaPrefixLength();
+			}
+			else {
+				writerSchema = resolveWriterSchemaForDeserialization(mimeType);
 			}
-			buf.get(payload);
-			Schema writerSchema = resolveWriterSchemaForDeserialization(mimeType);
 			Schema readerSchema = resolveReaderSchemaForDeserialization(targetClass);
-			DatumReader<Object> reader = getDatumReader((Class<Object>) targetClass, readerSchema, writerSchema);
-			Decoder decoder = DecoderFactory.get().binaryDecoder(payload, null);
-			result = reader.read(null, decoder);
+			DatumReader<Object> reader = getCachedDatumReader((Class<Object>) targetClass, readerSchema,
+					writerSchema);
+			BinaryCodecs codecs = this.binaryCodecs.get();
+			codecs.decoder = DecoderFactory.get().binaryDecoder(payload, offset, payload.length - offset,
+					codecs.decoder);
+			if (this.recordReuseEnabled) {
+				result = reader.read(codecs.lastReader == reader ? codecs.lastRecord : null, codecs.decoder);
+				codecs.lastReader = reader;
+				codecs.lastRecord = result;
+			}
+			else {
+				result = reader.read(null, codecs.decoder);
+			}
 		}
 		catch (IOException e) {
 			throw new MessageConversionException(message, "Failed to read payload", e);
@@ -96,6 +154,36 @@ public abstract class AbstractAvroMessageConverter extends AbstractMessageConver
 		return result;
 	}
 
+	private DatumReader<Object> getCachedDatumReader(Class<Object> type, Schema schema, Schema writerSchema) {
+		DatumKey key = new DatumKey(type, schema, writerSchema);
+		DatumReader<Object> reader = this.datumReaders.get(key);
+		if (reader == null) {
+			reader = getDatumReader(type, schema, writerSchema);
+			if (this.datumReaders.size() < MAX_CACHE_SIZE) {
+				DatumReader<Object> existing = this.datumReaders.putIfAbsent(key, reader);
+				if (existing != null) {
+					reader = existing;
+				}
+			}
+		}
+		return reader;
+	}
+
+	private DatumWriter<Object> getCachedDatumWriter(Class<Object> type, Schema schema) {
+		DatumKey key = new DatumKey(type, schema, null);
+		DatumWriter<Object> writer = this.datumWriters.get(key);
+		if (writer == null) {
+			writer = getDatumWriter(type, schema);
+			if (this.datumWriters.size() < MAX_CACHE_SIZE) {
+				DatumWriter<Object> existing = this.datumWriters.putIfAbsent(key, writer);
+				if (existing != null) {
+					writer = existing;
+				}
+			}
+		}
+		return writer;
+	}
+
 	private DatumWriter<Object> getDatumWriter(Class<Object> type, Schema schema) {
 		DatumWriter<Object> writer;
 		this.logger.debug("Finding correct DatumWriter for type " + type.getName());
@@ -165,22 +253,33 @@ public abstract class AbstractAvroMessageConverter extends AbstractMessageConver
 
 	@Override
 	protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		try {
 			MimeType hintedContentType = null;
 			if (conversionHint instanceof MimeType) {
 				hintedContentType = (MimeType) conversionHint;
 			}
 			Schema schema = resolveSchemaForWriting(payload, headers, hintedContentType);
-			DatumWriter<Object> writer = getDatumWriter((Class<Object>) payload.getClass(), schema);
-			Encoder encoder = EncoderFactory.get().binaryEncoder(baos, null);
-			writer.write(payload, encoder);
-			encoder.flush();
+			DatumWriter<Object> writer = getCachedDatumWriter((Class<Object>) payload.getClass(), schema);
+			BinaryCodecs codecs = this.binaryCodecs.get();
+			if (codecs.output == null) {
+				codecs.output = new ByteArrayOutputStream();
+			}
+			// reconfiguring the encoder flushes anything left by a failed write, so reset
+			// the buffer afterwards
+			codecs.encoder = EncoderFactory.get().binaryEncoder(codecs.output, codecs.encoder);
+			codecs.output.reset();
+			writeSchemaPrefix(schema, codecs.output);
+			writer.write(payload, codecs.encoder);
+			codecs.encoder.flush();
+			byte[] result = codecs.output.toByteArray();
+			if (result.length > MAX_RETAINED_BUFFER_SIZE) {
+				codecs.output = null;
+			}
+			return result;
 		}
 		catch (IOException e) {
 			throw new MessageConversionException("Failed to write payload", e);
 		}
-		return baos.toByteArray();
 	}
 
 	protected abstract Schema resolveSchemaForWriting(Object payload, MessageHeaders headers,
@@ -189,4 +288,93 @@ public abstract class AbstractAvroMessageConverter extends AbstractMessageConver
 	protected abstract Schema resolveWriterSchemaForDeserialization(MimeType mimeType);
 
 	protected abstract Schema resolveReaderSchemaForDeserialization(Class<?> targetClass);
+
+	/**
+	 * Write the bytes that precede the binary encoding of a payload and identify its
+	 * schema. Nothing is written by default, as the schema is identified by the content
+	 * type.
+	 * @param schema the schema the payload is written with
+	 * @param output the stream the payload is written to
+	 * @throws IOException if the prefix cannot be written
+	 * @since 1.3
+	 */
+	protected void writeSchemaPrefix(Schema schema, OutputStream output) throws IOException {
+	}
+
+	/**
+	 * @return the length of the prefix written by
+	 * {@link #writeSchemaPrefix(Schema, OutputStream)}, 0 by default
+	 * @since 1.3
+	 */
+	protected int getSchemaPrefixLength() {
+		return 0;
+	}
+
+	/**
+	 * Resolve the writer schema of a payload from the prefix preceding its binary
+	 * encoding.
+	 * @param payload the payload of the message
+	 * @param mimeType the content type of the message, if any
+	 * @return the writer schema, or null if the payload is not prefixed and the writer
+	 * schema is resolved from the content type instead, which is the default
+	 * @since 1.3
+	 */
+	protected Schema resolveWriterSchemaFromPrefix(byte[] payload, MimeType mimeType) {
+		return null;
+	}
+
+	private static final class DatumKey {
+
+		private final Class<?> type;
+
+		private final Schema schema;
+
+		private final Schema writerSchema;
+
+		private DatumKey(Class<?> type, Schema schema, Schema writerSchema) {
+			this.type = type;
+			this.schema = schema;
+			this.writerSchema = writerSchema;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof DatumKey)) {
+				return false;
+			}
+			DatumKey other = (DatumKey) o;
+			return this.type == other.type && ObjectUtils.nullSafeEquals(this.schema, other.schema)
+					&& ObjectUtils.nullSafeEquals(this.writerSchema, other.writerSchema);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = this.type.hashCode();
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.schema);
+			return 31 * result + ObjectUtils.nullSafeHashCode(this.writerSchema);
+		}
+
+	}
+
+	/**
+	 * Binary encoder and decoder, and the output buffer of the encoder, reused for the
+	 * messages converted on a thread, along with the last record read if records are
+	 * reused.
+	 */
+	private static final class BinaryCodecs {
+
+		private ByteArrayOutputStream output;
+
+		private BinaryEncoder encoder;
+
+		private BinaryDecoder decoder;
+
+		private DatumReader<Object> lastReader;
+
+		private Object lastRecord;
+
+	}
 }
@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.stream.schema.avro;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -25,6 +26,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.cloud.stream.binder.StringConvertingContentTypeResolver;
+import org.springframework.cloud.stream.schema.client.AsyncSchemaRegistryClient;
 import org.springframework.cloud.stream.schema.client.SchemaRegistryClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -47,7 +49,8 @@ public class AvroMessageConverterAutoConfiguration {
 	@Bean
 	@ConditionalOnMissingBean(AvroSchemaRegistryClientMessageConverter.class)
 	public AvroSchemaRegistryClientMessageConverter avroSchemaMessageConverter(
-			SchemaRegistryClient schemaRegistryClient) {
+			SchemaRegistryClient schemaRegistryClient,
+			ObjectProvider<AsyncSchemaRegistryClient> asyncSchemaRegistryClient) {
 		AvroSchemaRegistryClientMessageConverter avroSchemaRegistryClientMessageConverter = new AvroSchemaRegistryClientMessageConverter(
 				schemaRegistryClient);
 		avroSchemaRegistryClientMessageConverter.setDynamicSchemaGenerationEnabled(
@@ -62,6 +65,12 @@ public class AvroMessageConverterAutoConfiguration {
 					this.avroMessageConverterProperties.getSchemaLocations());
 		}
 		avroSchemaRegistryClientMessageConverter.setPrefix(this.avroMessageConverterProperties.getPrefix());
+		avroSchemaRegistryClientMessageConverter.setRecordReuseEnabled(
+				this.avroMessageConverterProperties.isRecordReuseEnabled());
+		avroSchemaRegistryClientMessageConverter.setSchemaIdPrefixEnabled(
+				this.avroMessageConverterProperties.isSchemaIdPrefixEnabled());
+		avroSchemaRegistryClientMessageConverter.setAsyncSchemaRegistryClient(
+				asyncSchemaRegistryClient.getIfAvailable());
 		avroSchemaRegistryClientMessageConverter.setCacheManager(cacheManager());
 		return avroSchemaRegistryClientMessageConverter;
 	}
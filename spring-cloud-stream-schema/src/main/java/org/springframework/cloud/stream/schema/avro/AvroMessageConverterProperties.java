@@ -34,6 +34,18 @@ public class AvroMessageConverterProperties {
 
 	private String prefix = "vnd";
 
+	/**
+	 * Whether records read on a thread are reused for the next message of the same type
+	 * and schemas. Only safe if payloads are not kept after processing.
+	 */
+	private boolean recordReuseEnabled;
+
+	/**
+	 * Whether payloads are prefixed with a magic byte and the 4-byte id of their schema,
+	 * instead of identifying the schema by the content type.
+	 */
+	private boolean schemaIdPrefixEnabled;
+
 	public Resource getReaderSchema() {
 		return this.readerSchema;
 	}
@@ -67,4 +79,20 @@ public class AvroMessageConverterProperties {
 	public void setPrefix(String prefix) {
 		this.prefix = prefix;
 	}
+
+	public boolean isRecordReuseEnabled() {
+		return this.recordReuseEnabled;
+	}
+
+	public void setRecordReuseEnabled(boolean recordReuseEnabled) {
+		this.recordReuseEnabled = recordReuseEnabled;
+	}
+
+	public boolean isSchemaIdPrefixEnabled() {
+		return this.schemaIdPrefixEnabled;
+	}
+
+	public void setSchemaIdPrefixEnabled(boolean schemaIdPrefixEnabled) {
+		this.schemaIdPrefixEnabled = schemaIdPrefixEnabled;
+	}
 }
@@ -17,11 +17,16 @@
 package org.springframework.cloud.stream.schema.avro;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaParseException;
 import org.apache.avro.generic.GenericContainer;
 import org.apache.avro.reflect.ReflectData;
 
@@ -33,13 +38,19 @@ import org.springframework.cloud.stream.schema.ParsedSchema;
 import org.springframework.cloud.stream.schema.SchemaNotFoundException;
 import org.springframework.cloud.stream.schema.SchemaReference;
 import org.springframework.cloud.stream.schema.SchemaRegistrationResponse;
+import org.springframework.cloud.stream.schema.client.AsyncSchemaRegistryClient;
+import org.springframework.cloud.stream.schema.client.CachingRegistryClient;
 import org.springframework.cloud.stream.schema.client.SchemaRegistryClient;
 import org.springframework.core.io.Resource;
 import org.springframework.integration.support.MutableMessageHeaders;
 import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
 import org.springframework.util.Assert;
 import org.springframework.util.MimeType;
 import org.springframework.util.ObjectUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
 
 /**
  * A {@link org.springframework.messaging.converter.MessageConverter} for Apache Avro,
@@ -66,6 +77,11 @@ import org.springframework.util.ObjectUtils;
  * When converting from a message, the converter will parse the content-type and use it to
  * fetch and cache the writer schema using the provided {@link SchemaRegistryClient}.
  *
+ * Alternatively, if the schema id prefix is enabled, the payload is preceded by a magic
+ * byte and the 4-byte id of the schema in the registry, as framed by the Confluent
+ * serializers, and the content type is left unchanged. Converting from a message then
+ * fetches the writer schema by id, unless the content type is a versioned one as above.
+ *
  * @author Marius Bogoevici
  * @author Vinicius Carvalho
  * @author Oleg Zhurakousky
@@ -86,6 +102,18 @@ public class AvroSchemaRegistryClientMessageConverter extends AbstractAvroMessag
 
 	public static final String REFERENCE_CACHE_NAME = CACHE_PREFIX + ".referenceCache";
 
+	/**
+	 * The first byte of payloads prefixed with a schema id.
+	 */
+	public static final byte SCHEMA_ID_PREFIX_MAGIC_BYTE = 0x0;
+
+	private static final int SCHEMA_ID_PREFIX_LENGTH = 5;
+
+	/**
+	 * Maximum number of entries in each of the writer schema caches of the converter.
+	 */
+	private static final int MAX_WRITER_SCHEMA_CACHE_SIZE = 1024;
+
 	private Pattern versionedSchema;
 
 	private boolean dynamicSchemaGenerationEnabled;
@@ -100,6 +128,29 @@ public class AvroSchemaRegistryClientMessageConverter extends AbstractAvroMessag
 
 	private String prefix = "vnd";
 
+	private String versionedSubtypePrefix = "vnd.";
+
+	private boolean schemaIdPrefixEnabled;
+
+	private AsyncSchemaRegistryClient asyncSchemaRegistryClient;
+
+	/**
+	 * Writer schemas by the content type of inbound messages. Since a content type
+	 * designates an immutable version of a schema, this avoids matching, building a
+	 * reference and looking up caches for each message.
+	 */
+	private final ConcurrentMap<MimeType, Schema> writerSchemasByContentType = new ConcurrentHashMap<>();
+
+	/**
+	 * Writer schemas by the id prefixed to inbound payloads.
+	 */
+	private final ConcurrentMap<Integer, Schema> writerSchemasById = new ConcurrentHashMap<>();
+
+	/**
+	 * Ids of the schemas of outbound payloads, if prefixed.
+	 */
+	private final ConcurrentMap<Schema, Integer> schemaIdsForWriting = new ConcurrentHashMap<>();
+
 	/**
 	 * @deprecated as of release 1.2.2 in favor of
 	 * {@link #AvroSchemaRegistryClientMessageConverter(SchemaRegistryClient, CacheManager)}
@@ -160,6 +211,122 @@ public class AvroSchemaRegistryClientMessageConverter extends AbstractAvroMessag
 		Assert.isTrue(!PREFIX_VALIDATION_PATTERN.matcher(this.prefix).matches(),
 				"Invalid prefix:" + this.prefix);
 		this.prefix = prefix;
+		this.versionedSubtypePrefix = prefix + ".";
+	}
+
+	public boolean isSchemaIdPrefixEnabled() {
+		return this.schemaIdPrefixEnabled;
+	}
+
+	/**
+	 * Set whether outbound payloads are prefixed with a magic byte and the 4-byte id of
+	 * their schema in the registry, instead of identifying it by the content type, and
+	 * whether inbound payloads are expected to be prefixed, unless they have a versioned
+	 * content type. Default 'false'.
+	 * @param schemaIdPrefixEnabled true if payloads are prefixed with the schema id
+	 * @since 1.3
+	 */
+	public void setSchemaIdPrefixEnabled(boolean schemaIdPrefixEnabled) {
+		this.schemaIdPrefixEnabled = schemaIdPrefixEnabled;
+	}
+
+	/**
+	 * Set the client used to prefetch writer schemas without blocking the caller.
+	 * @param asyncSchemaRegistryClient the asynchronous client
+	 * @since 1.3
+	 * @see #prefetchWriterSchema(SchemaReference)
+	 * @see #prefetchWriterSchema(int)
+	 */
+	public void setAsyncSchemaRegistryClient(AsyncSchemaRegistryClient asyncSchemaRegistryClient) {
+		this.asyncSchemaRegistryClient = asyncSchemaRegistryClient;
+	}
+
+	/**
+	 * Fetch and parse a writer schema in the background, so that messages with the
+	 * corresponding versioned content type are converted without waiting for the
+	 * registry. Requires an {@link AsyncSchemaRegistryClient}.
+	 * @param schemaReference the reference of the schema
+	 * @return a future completed with the schema
+	 * @since 1.3
+	 */
+	public ListenableFuture<Schema> prefetchWriterSchema(SchemaReference schemaReference) {
+		return prefetch(getAsyncSchemaRegistryClient().fetch(schemaReference), this.writerSchemasByContentType,
+				versionedContentType(schemaReference));
+	}
+
+	/**
+	 * Fetch and parse a writer schema in the background, so that payloads prefixed with
+	 * its id are converted without waiting for the registry. Requires an
+	 * {@link AsyncSchemaRegistryClient}.
+	 * @param id the id of the schema
+	 * @return a future completed with the schema
+	 * @since 1.3
+	 */
+	public ListenableFuture<Schema> prefetchWriterSchema(int id) {
+		return prefetch(getAsyncSchemaRegistryClient().fetch(id), this.writerSchemasById, id);
+	}
+
+	private AsyncSchemaRegistryClient getAsyncSchemaRegistryClient() {
+		Assert.state(this.asyncSchemaRegistryClient != null, "No AsyncSchemaRegistryClient configured");
+		return this.asyncSchemaRegistryClient;
+	}
+
+	private MimeType versionedContentType(SchemaReference schemaReference) {
+		return new MimeType("application", this.prefix + "." + schemaReference.getSubject() + ".v"
+				+ schemaReference.getVersion() + "+avro");
+	}
+
+	/**
+	 * Parse the writer schemas that a {@link CachingRegistryClient} fetched on
+	 * initialization, so that the first messages of each version are converted without
+	 * waiting.
+	 */
+	private void parsePrefetchedSchemas(CachingRegistryClient client) {
+		for (Map.Entry<SchemaReference, String> schema : client.getPrefetchedSchemas().entrySet()) {
+			if (this.writerSchemasByContentType.size() >= MAX_WRITER_SCHEMA_CACHE_SIZE) {
+				return;
+			}
+			if (AVRO_FORMAT.equals(schema.getKey().getFormat())) {
+				try {
+					this.writerSchemasByContentType.putIfAbsent(versionedContentType(schema.getKey()),
+							new Schema.Parser().parse(schema.getValue()));
+				}
+				catch (SchemaParseException e) {
+					if (this.logger.isWarnEnabled()) {
+						this.logger.warn("Failed to parse prefetched schema " + schema.getKey(), e);
+					}
+				}
+			}
+		}
+	}
+
+	private <K> ListenableFuture<Schema> prefetch(ListenableFuture<String> fetched,
+			final ConcurrentMap<K, Schema> writerSchemas, final K key) {
+		final SettableListenableFuture<Schema> result = new SettableListenableFuture<>();
+		fetched.addCallback(new ListenableFutureCallback<String>() {
+
+			@Override
+			public void onSuccess(String definition) {
+				try {
+					Schema schema = new Schema.Parser().parse(definition);
+					if (!(AvroSchemaRegistryClientMessageConverter.this.cacheManager instanceof NoOpCacheManager)
+							&& writerSchemas.size() < MAX_WRITER_SCHEMA_CACHE_SIZE) {
+						writerSchemas.putIfAbsent(key, schema);
+					}
+					result.set(schema);
+				}
+				catch (RuntimeException e) {
+					result.setException(e);
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable e) {
+				result.setException(e);
+			}
+
+		});
+		return result;
 	}
 
 	@Override
@@ -196,6 +363,10 @@ public class AvroSchemaRegistryClientMessageConverter extends AbstractAvroMessag
 				}
 			}
 		}
+		if (this.schemaRegistryClient instanceof CachingRegistryClient
+				&& !(this.cacheManager instanceof NoOpCacheManager)) {
+			parsePrefetchedSchemas((CachingRegistryClient) this.schemaRegistryClient);
+		}
 		if (this.cacheManager instanceof NoOpCacheManager) {
 			logger.warn("Schema caching is effectively disabled "
 					+ "since configured cache manager is a NoOpCacheManager. If this was not "
@@ -229,6 +400,28 @@ public class AvroSchemaRegistryClientMessageConverter extends AbstractAvroMessag
 
 		Schema schema;
 		schema = extractSchemaForWriting(payload);
+		if (this.schemaIdPrefixEnabled) {
+			if (!this.schemaIdsForWriting.containsKey(schema)) {
+				SchemaRegistrationResponse registration = getRegistration(schema);
+				if (this.schemaIdsForWriting.size() < MAX_WRITER_SCHEMA_CACHE_SIZE) {
+					this.schemaIdsForWriting.putIfAbsent(schema, registration.getId());
+				}
+			}
+			return schema;
+		}
+
+		SchemaReference schemaReference = getRegistration(schema).getSchemaReference();
+
+		if (headers instanceof MutableMessageHeaders) {
+			headers.put(MessageHeaders.CONTENT_TYPE,
+					"application/vnd." + schemaReference.getSubject() + ".v"
+							+ schemaReference.getVersion() + "+avro");
+		}
+
+		return schema;
+	}
+
+	private SchemaRegistrationResponse getRegistration(Schema schema) {
 		ParsedSchema parsedSchema = this.cacheManager.getCache(REFERENCE_CACHE_NAME)
 				.get(schema, ParsedSchema.class);
 
@@ -244,19 +437,53 @@ public class AvroSchemaRegistryClientMessageConverter extends AbstractAvroMessag
 			parsedSchema.setRegistration(response);
 
 		}
+		return parsedSchema.getRegistration();
+	}
 
-		SchemaReference schemaReference = parsedSchema.getRegistration()
-				.getSchemaReference();
-
-		if (headers instanceof MutableMessageHeaders) {
-			headers.put(MessageHeaders.CONTENT_TYPE,
-					"application/vnd." + schemaReference.getSubject() + ".v"
-							+ schemaReference.getVersion() + "+avro");
+	@Override
+	protected void writeSchemaPrefix(Schema schema, OutputStream output) throws IOException {
+		if (this.schemaIdPrefixEnabled) {
+			Integer id = this.schemaIdsForWriting.get(schema);
+			int schemaId = id != null ? id : getRegistration(schema).getId();
+			output.write(SCHEMA_ID_PREFIX_MAGIC_BYTE);
+			output.write(schemaId >>> 24);
+			output.write(schemaId >>> 16);
+			output.write(schemaId >>> 8);
+			output.write(schemaId);
 		}
+	}
+
+	@Override
+	protected int getSchemaPrefixLength() {
+		return this.schemaIdPrefixEnabled ? SCHEMA_ID_PREFIX_LENGTH : 0;
+	}
 
+	@Override
+	protected Schema resolveWriterSchemaFromPrefix(byte[] payload, MimeType mimeType) {
+		if (!this.schemaIdPrefixEnabled || isVersionedContentType(mimeType)) {
+			return null;
+		}
+		if (payload.length < SCHEMA_ID_PREFIX_LENGTH || payload[0] != SCHEMA_ID_PREFIX_MAGIC_BYTE) {
+			throw new MessageConversionException("Payload is not prefixed with a schema id");
+		}
+		int id = ((payload[1] & 0xff) << 24) | ((payload[2] & 0xff) << 16) | ((payload[3] & 0xff) << 8)
+				| (payload[4] & 0xff);
+		Schema schema = this.writerSchemasById.get(id);
+		if (schema == null) {
+			schema = new Schema.Parser().parse(this.schemaRegistryClient.fetch(id));
+			if (!(this.cacheManager instanceof NoOpCacheManager)
+					&& this.writerSchemasById.size() < MAX_WRITER_SCHEMA_CACHE_SIZE) {
+				this.writerSchemasById.putIfAbsent(id, schema);
+			}
+		}
 		return schema;
 	}
 
+	private boolean isVersionedContentType(MimeType mimeType) {
+		// a cheap check, as the subtype is matched against the full pattern when used
+		return mimeType != null && mimeType.getSubtype().startsWith(this.versionedSubtypePrefix);
+	}
+
 	private SchemaReference extractSchemaReference(MimeType mimeType) {
 		SchemaReference schemaReference = null;
 		Matcher schemaMatcher = this.versionedSchema.matcher(mimeType.toString());
@@ -271,29 +498,41 @@ public class AvroSchemaRegistryClientMessageConverter extends AbstractAvroMessag
 	@Override
 	protected Schema resolveWriterSchemaForDeserialization(MimeType mimeType) {
 		if (this.readerSchema == null) {
-			Schema schema = null;
-			ParsedSchema parsedSchema = null;
-			SchemaReference schemaReference = extractSchemaReference(mimeType);
-			if (schemaReference != null) {
-				parsedSchema = cacheManager.getCache(REFERENCE_CACHE_NAME)
-						.get(schemaReference, ParsedSchema.class);
-				if (parsedSchema == null) {
-					String schemaContent = this.schemaRegistryClient
-							.fetch(schemaReference);
-					schema = new Schema.Parser().parse(schemaContent);
-					parsedSchema = new ParsedSchema(schema);
-					cacheManager.getCache(REFERENCE_CACHE_NAME)
-							.putIfAbsent(schemaReference, parsedSchema);
+			Schema schema = this.writerSchemasByContentType.get(mimeType);
+			if (schema == null) {
+				schema = fetchWriterSchema(mimeType);
+				if (!(this.cacheManager instanceof NoOpCacheManager)
+						&& this.writerSchemasByContentType.size() < MAX_WRITER_SCHEMA_CACHE_SIZE) {
+					this.writerSchemasByContentType.putIfAbsent(mimeType, schema);
 				}
-
 			}
-			return parsedSchema.getSchema();
+			return schema;
 		}
 		else {
 			return this.readerSchema;
 		}
 	}
 
+	private Schema fetchWriterSchema(MimeType mimeType) {
+		Schema schema = null;
+		ParsedSchema parsedSchema = null;
+		SchemaReference schemaReference = extractSchemaReference(mimeType);
+		if (schemaReference != null) {
+			parsedSchema = cacheManager.getCache(REFERENCE_CACHE_NAME)
+					.get(schemaReference, ParsedSchema.class);
+			if (parsedSchema == null) {
+				String schemaContent = this.schemaRegistryClient
+						.fetch(schemaReference);
+				schema = new Schema.Parser().parse(schemaContent);
+				parsedSchema = new ParsedSchema(schema);
+				cacheManager.getCache(REFERENCE_CACHE_NAME)
+						.putIfAbsent(schemaReference, parsedSchema);
+			}
+
+		}
+		return parsedSchema.getSchema();
+	}
+
 	@Override
 	protected Schema resolveReaderSchemaForDeserialization(Class<?> targetClass) {
 		return this.readerSchema;
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.schema.client;
+
+import org.springframework.cloud.stream.schema.SchemaReference;
+import org.springframework.cloud.stream.schema.SchemaRegistrationResponse;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * A variant of {@link SchemaRegistryClient} that does not block the calling thread,
+ * allowing schemas to be fetched ahead of their use.
+ *
+ * @since 1.3
+ */
+public interface AsyncSchemaRegistryClient {
+
+	ListenableFuture<SchemaRegistrationResponse> register(String subject, String format, String schema);
+
+	ListenableFuture<String> fetch(SchemaReference schemaReference);
+
+	ListenableFuture<String> fetch(int id);
+
+}
@@ -16,52 +16,303 @@
 
 package org.springframework.cloud.stream.schema.client;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.Cacheable;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.stream.schema.SchemaNotFoundException;
 import org.springframework.cloud.stream.schema.SchemaReference;
 import org.springframework.cloud.stream.schema.SchemaRegistrationResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
 
 /**
+ * A {@link SchemaRegistryClient} that caches the schemas fetched by a delegate, and
+ * those it registers, by reference and by id. The caches are bounded and can expire
+ * entries, as well as cache the fact that a schema does not exist. Concurrent requests
+ * for the same missing schema result in a single call to the delegate.
+ * <p>
+ * Optionally, the cached schemas are kept in a snapshot file, from which the caches are
+ * populated on initialization, and the versions of a set of subjects are fetched on
+ * initialization, so that the first messages after a restart do not wait for the
+ * registry. The snapshot is saved on initialization, then by a background thread, shortly
+ * after schemas are added to the caches, and when the client is destroyed.
+ *
  * @author Vinicius Carvalho
  */
-public class CachingRegistryClient implements SchemaRegistryClient {
+public class CachingRegistryClient implements SchemaRegistryClient, InitializingBean, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(CachingRegistryClient.class);
+
+	/**
+	 * The default maximum number of schemas cached by reference, and by id.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	/**
+	 * The time to wait after a schema is added to the caches before saving the snapshot,
+	 * so that schemas added in quick succession are saved at once, in milliseconds.
+	 */
+	private static final long SNAPSHOT_SAVE_DELAY = 1000;
+
+	private final SchemaRegistryClient delegate;
 
-	private static final String CACHE_PREFIX = "org.springframework.cloud.stream.schema.client";
+	private final SchemaCache<SchemaReference> schemasByReference;
 
-	private static final String ID_CACHE = CACHE_PREFIX + ".schemaByIdCache";
+	private final SchemaCache<Integer> schemasById;
 
-	private static final String REF_CACHE = CACHE_PREFIX + ".schemaByReferenceCache";
+	private final int maxSize;
 
-	private SchemaRegistryClient delegate;
+	private volatile SchemaSnapshot snapshot;
 
-	@Autowired
-	private CacheManager cacheManager;
+	private volatile ScheduledExecutorService snapshotExecutor;
+
+	private final AtomicBoolean snapshotSaveScheduled = new AtomicBoolean();
+
+	private String[] prefetchSubjects = new String[0];
+
+	private String prefetchFormat = "avro";
 
 	public CachingRegistryClient(SchemaRegistryClient delegate) {
+		this(delegate, DEFAULT_MAX_SIZE, 0, 0);
+	}
+
+	/**
+	 * @param delegate the client fetching and registering schemas
+	 * @param maxSize the maximum number of schemas cached by reference, and by id
+	 * @param timeToLive the time after which cached schemas are fetched again, in
+	 * milliseconds, or 0 if they are cached indefinitely
+	 * @param negativeTimeToLive the time for which a schema that was not found is not
+	 * fetched again, in milliseconds, or 0 if it is fetched on every request
+	 * @since 1.3
+	 */
+	public CachingRegistryClient(SchemaRegistryClient delegate, int maxSize, long timeToLive,
+			long negativeTimeToLive) {
 		Assert.notNull(delegate, "The delegate cannot be null");
 		this.delegate = delegate;
+		this.maxSize = maxSize;
+		this.schemasByReference = new SchemaByReferenceCache(maxSize, timeToLive, negativeTimeToLive);
+		this.schemasById = new SchemaByIdCache(maxSize, timeToLive, negativeTimeToLive);
+	}
+
+	/**
+	 * Set the file in which the cached schemas are kept across restarts. It is read on
+	 * initialization, and rewritten asynchronously after schemas are fetched or
+	 * registered.
+	 * @param snapshotFile the snapshot file, or null for none
+	 * @since 1.3
+	 */
+	public void setSnapshotFile(File snapshotFile) {
+		this.snapshot = snapshotFile != null ? new SchemaSnapshot(snapshotFile) : null;
+	}
+
+	/**
+	 * Set the subjects whose versions are fetched on initialization, starting with
+	 * version 1 and stopping at the first version that does not exist.
+	 * @param prefetchSubjects the subjects to fetch
+	 * @since 1.3
+	 */
+	public void setPrefetchSubjects(String... prefetchSubjects) {
+		Assert.notNull(prefetchSubjects, "'prefetchSubjects' cannot be null");
+		this.prefetchSubjects = prefetchSubjects;
+	}
+
+	/**
+	 * @param prefetchFormat the format of the schemas fetched on initialization,
+	 * {@code avro} by default
+	 * @since 1.3
+	 */
+	public void setPrefetchFormat(String prefetchFormat) {
+		Assert.hasText(prefetchFormat, "'prefetchFormat' cannot be empty");
+		this.prefetchFormat = prefetchFormat;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		SchemaSnapshot snapshot = this.snapshot;
+		if (snapshot != null) {
+			Map<SchemaReference, String> schemasByReference = new HashMap<>();
+			Map<Integer, String> schemasById = new HashMap<>();
+			snapshot.load(schemasByReference, schemasById);
+			for (Map.Entry<SchemaReference, String> schema : schemasByReference.entrySet()) {
+				this.schemasByReference.put(schema.getKey(), schema.getValue());
+			}
+			for (Map.Entry<Integer, String> schema : schemasById.entrySet()) {
+				this.schemasById.put(schema.getKey(), schema.getValue());
+			}
+		}
+		for (String subject : this.prefetchSubjects) {
+			prefetch(subject);
+		}
+		if (snapshot != null) {
+			// later saves are done asynchronously, once the executor is set
+			saveSnapshot(snapshot);
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("schema-snapshot-");
+			threadFactory.setDaemon(true);
+			this.snapshotExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		ScheduledExecutorService snapshotExecutor = this.snapshotExecutor;
+		if (snapshotExecutor != null) {
+			this.snapshotExecutor = null;
+			snapshotExecutor.shutdownNow();
+			if (this.snapshotSaveScheduled.get()) {
+				saveSnapshot(this.snapshot);
+			}
+		}
 	}
 
 	@Override
 	public SchemaRegistrationResponse register(String subject, String format, String schema) {
-		SchemaRegistrationResponse response = delegate.register(subject, format, schema);
-		cacheManager.getCache(ID_CACHE).put(response.getSchemaReference(), schema);
-		cacheManager.getCache(REF_CACHE).put(response.getId(), schema);
+		SchemaRegistrationResponse response = this.delegate.register(subject, format, schema);
+		this.schemasByReference.put(response.getSchemaReference(), schema);
+		this.schemasById.put(response.getId(), schema);
 		return response;
 	}
 
 	@Override
-	@Cacheable(cacheNames = REF_CACHE)
 	public String fetch(SchemaReference schemaReference) {
-		return delegate.fetch(schemaReference);
+		return this.schemasByReference.get(schemaReference);
 	}
 
 	@Override
-	@Cacheable(cacheNames = ID_CACHE)
 	public String fetch(int id) {
-		return delegate.fetch(id);
+		return this.schemasById.get(id);
+	}
+
+	/**
+	 * @return the statistics of the cache of schemas by reference
+	 * @since 1.3
+	 */
+	public SchemaCacheStatistics getReferenceCacheStatistics() {
+		return this.schemasByReference.getStatistics();
+	}
+
+	/**
+	 * @return the statistics of the cache of schemas by id
+	 * @since 1.3
+	 */
+	public SchemaCacheStatistics getIdCacheStatistics() {
+		return this.schemasById.getStatistics();
+	}
+
+	/**
+	 * Return the schemas of the prefetched subjects that are currently cached, so that
+	 * users of this client can process them ahead of use without fetching them again.
+	 * @return the cached definitions of the prefetched subjects, by reference
+	 * @since 1.3
+	 * @see #setPrefetchSubjects(String...)
+	 */
+	public Map<SchemaReference, String> getPrefetchedSchemas() {
+		List<String> subjects = Arrays.asList(this.prefetchSubjects);
+		Map<SchemaReference, String> prefetchedSchemas = new HashMap<>();
+		for (Map.Entry<SchemaReference, String> schema : this.schemasByReference.getDefinitions().entrySet()) {
+			SchemaReference reference = schema.getKey();
+			if (subjects.contains(reference.getSubject()) && this.prefetchFormat.equals(reference.getFormat())) {
+				// the caller gets its own copies of the mutable references
+				prefetchedSchemas.put(new SchemaReference(reference.getSubject(), reference.getVersion(),
+						reference.getFormat()), schema.getValue());
+			}
+		}
+		return prefetchedSchemas;
+	}
+
+	private void prefetch(String subject) {
+		// bounded, as versions beyond the size of the cache would evict each other
+		for (int version = 1; version <= this.maxSize; version++) {
+			try {
+				fetch(new SchemaReference(subject, version, this.prefetchFormat));
+			}
+			catch (RuntimeException e) {
+				if (!SchemaNotFoundException.isNotFound(e)) {
+					logger.warn("Failed to prefetch version " + version + " of subject '" + subject + "'", e);
+				}
+				return;
+			}
+		}
+	}
+
+	private void scheduleSnapshotSave() {
+		ScheduledExecutorService snapshotExecutor = this.snapshotExecutor;
+		if (snapshotExecutor != null && this.snapshotSaveScheduled.compareAndSet(false, true)) {
+			try {
+				snapshotExecutor.schedule(new Runnable() {
+
+					@Override
+					public void run() {
+						saveSnapshot(CachingRegistryClient.this.snapshot);
+					}
+
+				}, SNAPSHOT_SAVE_DELAY, TimeUnit.MILLISECONDS);
+			}
+			catch (RejectedExecutionException e) {
+				// the client is being destroyed
+			}
+		}
+	}
+
+	private void saveSnapshot(SchemaSnapshot snapshot) {
+		// cleared before reading the caches, so that concurrent additions are saved next
+		this.snapshotSaveScheduled.set(false);
+		snapshot.save(this.schemasByReference.getDefinitions(), this.schemasById.getDefinitions());
+	}
+
+	private final class SchemaByReferenceCache extends SchemaCache<SchemaReference> {
+
+		private SchemaByReferenceCache(int maxSize, long timeToLive, long negativeTimeToLive) {
+			super(maxSize, timeToLive, negativeTimeToLive);
+		}
+
+		@Override
+		protected String load(SchemaReference schemaReference) {
+			return CachingRegistryClient.this.delegate.fetch(schemaReference);
+		}
+
+		@Override
+		protected void loaded(SchemaReference schemaReference, String definition) {
+			scheduleSnapshotSave();
+		}
+
+		@Override
+		protected SchemaReference storeKey(SchemaReference schemaReference) {
+			// references are mutable, so the cache keeps its own copies
+			return new SchemaReference(schemaReference.getSubject(), schemaReference.getVersion(),
+					schemaReference.getFormat());
+		}
+
+	}
+
+	private final class SchemaByIdCache extends SchemaCache<Integer> {
+
+		private SchemaByIdCache(int maxSize, long timeToLive, long negativeTimeToLive) {
+			super(maxSize, timeToLive, negativeTimeToLive);
+		}
+
+		@Override
+		protected String load(Integer id) {
+			return CachingRegistryClient.this.delegate.fetch(id);
+		}
+
+		@Override
+		protected void loaded(Integer id, String definition) {
+			scheduleSnapshotSave();
+		}
+
 	}
 
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.schema.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * {@link PublicMetrics} for the caches of a {@link CachingRegistryClient}. For each cache,
+ * with {@code <cache>} being {@code reference} or {@code id}, the gauges
+ * {@code spring.cloud.stream.schemaRegistryClient.cache.<cache>.hits},
+ * {@code .misses}, {@code .hitRate}, {@code .loadSuccesses}, {@code .loadFailures},
+ * {@code .evictions} and {@code .size} report the cache statistics, and
+ * {@code .averageLoadTime} the average time to fetch a schema from the registry, in
+ * milliseconds. No metrics are reported if the client does not cache.
+ *
+ * @since 1.3
+ */
+public class CachingRegistryClientMetrics implements PublicMetrics {
+
+	private static final String PREFIX = "spring.cloud.stream.schemaRegistryClient.cache.";
+
+	private final SchemaRegistryClient schemaRegistryClient;
+
+	public CachingRegistryClientMetrics(SchemaRegistryClient schemaRegistryClient) {
+		this.schemaRegistryClient = schemaRegistryClient;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		if (!(this.schemaRegistryClient instanceof CachingRegistryClient)) {
+			return Collections.emptyList();
+		}
+		CachingRegistryClient client = (CachingRegistryClient) this.schemaRegistryClient;
+		Collection<Metric<?>> metrics = new ArrayList<>();
+		addMetrics(metrics, PREFIX + "reference.", client.getReferenceCacheStatistics());
+		addMetrics(metrics, PREFIX + "id.", client.getIdCacheStatistics());
+		return metrics;
+	}
+
+	private static void addMetrics(Collection<Metric<?>> metrics, String prefix, SchemaCacheStatistics statistics) {
+		metrics.add(new Metric<Long>(prefix + "hits", statistics.getHitCount()));
+		metrics.add(new Metric<Long>(prefix + "misses", statistics.getMissCount()));
+		metrics.add(new Metric<Double>(prefix + "hitRate", statistics.getHitRate()));
+		metrics.add(new Metric<Long>(prefix + "loadSuccesses", statistics.getLoadSuccessCount()));
+		metrics.add(new Metric<Long>(prefix + "loadFailures", statistics.getLoadFailureCount()));
+		metrics.add(new Metric<Double>(prefix + "averageLoadTime", statistics.getAverageLoadTime() / 1000000.0));
+		metrics.add(new Metric<Long>(prefix + "evictions", statistics.getEvictionCount()));
+		metrics.add(new Metric<Integer>(prefix + "size", statistics.getSize()));
+	}
+
+}
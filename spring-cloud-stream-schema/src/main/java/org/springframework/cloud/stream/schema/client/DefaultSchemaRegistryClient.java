@@ -36,7 +36,17 @@ public class DefaultSchemaRegistryClient implements SchemaRegistryClient {
 	private String endpoint = "http://localhost:8990";
 
 	public DefaultSchemaRegistryClient() {
-		this.template = new RestTemplate();
+		this(new RestTemplate());
+	}
+
+	/**
+	 * @param template the template used to call the schema server, e.g. configured with
+	 * a pooled request factory and timeouts
+	 * @since 1.3
+	 */
+	public DefaultSchemaRegistryClient(RestTemplate template) {
+		Assert.notNull(template, "'template' cannot be null");
+		this.template = template;
 	}
 
 	public void setEndpoint(String endpoint) {
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.schema.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.cloud.stream.schema.SchemaNotFoundException;
+import org.springframework.util.Assert;
+
+/**
+ * A bounded cache of schema definitions, loading missing entries through
+ * {@link #load(Object)}. Concurrent requests for an entry that is being loaded wait for
+ * that load instead of starting their own. Entries can expire a fixed time after being
+ * loaded, and failures to find a schema can be cached as well, for a separate time.
+ * When the cache is full, the entry loaded the longest time ago is evicted.
+ *
+ * @since 1.3
+ */
+abstract class SchemaCache<K> {
+
+	private static final Runnable NO_OP = new Runnable() {
+
+		@Override
+		public void run() {
+		}
+
+	};
+
+	private final ConcurrentMap<K, Entry> entries = new ConcurrentHashMap<>();
+
+	private final int maxSize;
+
+	private final long timeToLiveNanos;
+
+	private final long negativeTimeToLiveNanos;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong loadSuccessCount = new AtomicLong();
+
+	private final AtomicLong loadFailureCount = new AtomicLong();
+
+	private final AtomicLong totalLoadTime = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * @param maxSize the maximum number of entries
+	 * @param timeToLive the time after which loaded entries expire, in milliseconds, or 0
+	 * if they do not expire
+	 * @param negativeTimeToLive the time for which a schema that was not found is not
+	 * looked up again, in milliseconds, or 0 if it is looked up on every request
+	 */
+	SchemaCache(int maxSize, long timeToLive, long negativeTimeToLive) {
+		Assert.isTrue(maxSize > 0, "'maxSize' must be greater than 0");
+		Assert.isTrue(timeToLive >= 0, "'timeToLive' cannot be negative");
+		Assert.isTrue(negativeTimeToLive >= 0, "'negativeTimeToLive' cannot be negative");
+		this.maxSize = maxSize;
+		this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+		this.negativeTimeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(negativeTimeToLive);
+	}
+
+	protected abstract String load(K key);
+
+	/**
+	 * Called after a schema definition has been added to the cache, either loaded or put.
+	 * @param key the key of the entry
+	 * @param definition the schema definition
+	 */
+	protected void loaded(K key, String definition) {
+	}
+
+	/**
+	 * Return the key under which an entry is stored, which must be equal to the given
+	 * key. Mutable keys should be copied.
+	 * @param key the key of the entry
+	 * @return the key to store the entry under
+	 */
+	protected K storeKey(K key) {
+		return key;
+	}
+
+	String get(final K key) {
+		while (true) {
+			Entry entry = this.entries.get(key);
+			if (entry != null && !entry.isExpired(System.nanoTime())) {
+				// includes requests waiting for a load started by another thread
+				this.hitCount.incrementAndGet();
+				return entry.get();
+			}
+			Entry loadingEntry = new Entry(new FutureTask<>(new Callable<String>() {
+
+				@Override
+				public String call() throws Exception {
+					return load(key);
+				}
+
+			}));
+			boolean installed = entry == null ? this.entries.putIfAbsent(storeKey(key), loadingEntry) == null
+					: this.entries.replace(key, entry, loadingEntry);
+			if (installed) {
+				this.missCount.incrementAndGet();
+				return load(key, loadingEntry);
+			}
+		}
+	}
+
+	void put(K key, String definition) {
+		Entry entry = new Entry(new FutureTask<>(NO_OP, definition));
+		entry.task.run();
+		entry.definition = definition;
+		entry.expireAfter(this.timeToLiveNanos);
+		this.entries.put(storeKey(key), entry);
+		evictIfNecessary();
+		loaded(key, definition);
+	}
+
+	int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * @return the schema definitions currently cached, excluding the ones that are
+	 * being loaded, that expired, or that were not found
+	 */
+	Map<K, String> getDefinitions() {
+		Map<K, String> definitions = new HashMap<>();
+		long now = System.nanoTime();
+		for (Map.Entry<K, Entry> entry : this.entries.entrySet()) {
+			String definition = entry.getValue().definition;
+			if (definition != null && !entry.getValue().isExpired(now)) {
+				definitions.put(entry.getKey(), definition);
+			}
+		}
+		return definitions;
+	}
+
+	SchemaCacheStatistics getStatistics() {
+		return new SchemaCacheStatistics(this.hitCount.get(), this.missCount.get(), this.loadSuccessCount.get(),
+				this.loadFailureCount.get(), this.totalLoadTime.get(), this.evictionCount.get(), size());
+	}
+
+	private String load(K key, Entry entry) {
+		long start = System.nanoTime();
+		entry.task.run();
+		this.totalLoadTime.addAndGet(System.nanoTime() - start);
+		String definition;
+		try {
+			definition = entry.get();
+			this.loadSuccessCount.incrementAndGet();
+			entry.definition = definition;
+			entry.expireAfter(this.timeToLiveNanos);
+			evictIfNecessary();
+		}
+		catch (Throwable e) {
+			// errors too, so that a failed load is never cached indefinitely
+			this.loadFailureCount.incrementAndGet();
+			if (this.negativeTimeToLiveNanos > 0 && SchemaNotFoundException.isNotFound(e)) {
+				entry.expireAfter(this.negativeTimeToLiveNanos);
+				evictIfNecessary();
+			}
+			else {
+				this.entries.remove(key, entry);
+			}
+			throw e;
+		}
+		loaded(key, definition);
+		return definition;
+	}
+
+	private void evictIfNecessary() {
+		while (this.entries.size() > this.maxSize) {
+			Map.Entry<K, Entry> oldest = null;
+			for (Map.Entry<K, Entry> candidate : this.entries.entrySet()) {
+				if (candidate.getValue().isLoaded() && (oldest == null
+						|| candidate.getValue().loadedAt - oldest.getValue().loadedAt < 0)) {
+					oldest = candidate;
+				}
+			}
+			if (oldest == null) {
+				// only entries being loaded, which will evict when done
+				return;
+			}
+			if (this.entries.remove(oldest.getKey(), oldest.getValue())) {
+				this.evictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	private static final class Entry {
+
+		private final FutureTask<String> task;
+
+		/**
+		 * The definition, once loaded successfully.
+		 */
+		private volatile String definition;
+
+		private volatile boolean loaded;
+
+		private volatile long loadedAt;
+
+		private volatile long expiresAt;
+
+		private volatile boolean expiring;
+
+		private Entry(FutureTask<String> task) {
+			this.task = task;
+		}
+
+		private void expireAfter(long timeToLiveNanos) {
+			this.loadedAt = System.nanoTime();
+			if (timeToLiveNanos > 0) {
+				this.expiresAt = this.loadedAt + timeToLiveNanos;
+				this.expiring = true;
+			}
+			this.loaded = true;
+		}
+
+		private boolean isLoaded() {
+			return this.loaded;
+		}
+
+		private boolean isExpired(long now) {
+			return this.expiring && now - this.expiresAt >= 0;
+		}
+
+		private String get() {
+			try {
+				return this.task.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for a schema to be loaded", e);
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException("Failed to load schema", cause);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.schema.client;
+
+/**
+ * A snapshot of the statistics of a schema cache of a {@link CachingRegistryClient}.
+ * Requests that waited for a load started by another request count as hits.
+ *
+ * @since 1.3
+ */
+public final class SchemaCacheStatistics {
+
+	private final long hitCount;
+
+	private final long missCount;
+
+	private final long loadSuccessCount;
+
+	private final long loadFailureCount;
+
+	private final long totalLoadTime;
+
+	private final long evictionCount;
+
+	private final int size;
+
+	SchemaCacheStatistics(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+			long totalLoadTime, long evictionCount, int size) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.loadSuccessCount = loadSuccessCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadTime = totalLoadTime;
+		this.evictionCount = evictionCount;
+		this.size = size;
+	}
+
+	public long getHitCount() {
+		return this.hitCount;
+	}
+
+	public long getMissCount() {
+		return this.missCount;
+	}
+
+	public double getHitRate() {
+		long requestCount = this.hitCount + this.missCount;
+		return requestCount == 0 ? 1.0 : (double) this.hitCount / requestCount;
+	}
+
+	public long getLoadSuccessCount() {
+		return this.loadSuccessCount;
+	}
+
+	public long getLoadFailureCount() {
+		return this.loadFailureCount;
+	}
+
+	/**
+	 * @return the time spent loading schemas from the registry, in nanoseconds
+	 */
+	public long getTotalLoadTime() {
+		return this.totalLoadTime;
+	}
+
+	/**
+	 * @return the average time spent loading a schema from the registry, in nanoseconds
+	 */
+	public double getAverageLoadTime() {
+		long loadCount = this.loadSuccessCount + this.loadFailureCount;
+		return loadCount == 0 ? 0.0 : (double) this.totalLoadTime / loadCount;
+	}
+
+	public long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	public int getSize() {
+		return this.size;
+	}
+
+	@Override
+	public String toString() {
+		return "SchemaCacheStatistics{hitCount=" + this.hitCount + ", missCount=" + this.missCount
+				+ ", loadSuccessCount=" + this.loadSuccessCount + ", loadFailureCount=" + this.loadFailureCount
+				+ ", totalLoadTime=" + this.totalLoadTime + ", evictionCount=" + this.evictionCount + ", size="
+				+ this.size + "}";
+	}
+
+}
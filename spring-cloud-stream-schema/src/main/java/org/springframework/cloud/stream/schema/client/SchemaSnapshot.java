@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.schema.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.stream.schema.SchemaReference;
+import org.springframework.util.Assert;
+
+/**
+ * A file in which the schemas cached by a {@link CachingRegistryClient}, by reference and
+ * by id, are saved as JSON so that they can be resolved without contacting the registry
+ * after a restart. The file is replaced atomically when saved, and a file that cannot be
+ * read is ignored.
+ *
+ * @since 1.3
+ */
+final class SchemaSnapshot {
+
+	private static final Log logger = LogFactory.getLog(SchemaSnapshot.class);
+
+	private static final TypeReference<Map<String, List<Map<String, Object>>>> CONTENT_TYPE =
+			new TypeReference<Map<String, List<Map<String, Object>>>>() {
+			};
+
+	private static final String REFERENCES = "references";
+
+	private static final String IDS = "ids";
+
+	private final File file;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	SchemaSnapshot(File file) {
+		Assert.notNull(file, "The snapshot file cannot be null");
+		this.file = file.getAbsoluteFile();
+	}
+
+	File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Read the schemas saved in the snapshot file, if it exists and can be read.
+	 * @param schemasByReference the map to add the schemas by reference to
+	 * @param schemasById the map to add the schemas by id to
+	 */
+	void load(Map<SchemaReference, String> schemasByReference, Map<Integer, String> schemasById) {
+		if (!this.file.isFile()) {
+			return;
+		}
+		Map<SchemaReference, String> references = new HashMap<>();
+		Map<Integer, String> ids = new HashMap<>();
+		try {
+			Map<String, List<Map<String, Object>>> content = this.objectMapper.readValue(this.file, CONTENT_TYPE);
+			if (content.get(REFERENCES) != null) {
+				for (Map<String, Object> entry : content.get(REFERENCES)) {
+					references.put(new SchemaReference((String) entry.get("subject"),
+							((Number) entry.get("version")).intValue(), (String) entry.get("format")),
+							definition(entry));
+				}
+			}
+			if (content.get(IDS) != null) {
+				for (Map<String, Object> entry : content.get(IDS)) {
+					ids.put(((Number) entry.get("id")).intValue(), definition(entry));
+				}
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			logger.warn("Ignoring schema snapshot " + this.file + " that cannot be read", e);
+			return;
+		}
+		schemasByReference.putAll(references);
+		schemasById.putAll(ids);
+	}
+
+	/**
+	 * Write the given schemas to the snapshot file. Failures are logged, as the snapshot
+	 * is only an optimization.
+	 * @param schemasByReference the schemas by reference
+	 * @param schemasById the schemas by id
+	 */
+	synchronized void save(Map<SchemaReference, String> schemasByReference, Map<Integer, String> schemasById) {
+		Map<String, List<Map<String, Object>>> content = new LinkedHashMap<>();
+		List<Map<String, Object>> references = new ArrayList<>();
+		for (Map.Entry<SchemaReference, String> schema : schemasByReference.entrySet()) {
+			Map<String, Object> entry = new LinkedHashMap<>();
+			entry.put("subject", schema.getKey().getSubject());
+			entry.put("format", schema.getKey().getFormat());
+			entry.put("version", schema.getKey().getVersion());
+			entry.put("definition", schema.getValue());
+			references.add(entry);
+		}
+		content.put(REFERENCES, references);
+		List<Map<String, Object>> ids = new ArrayList<>();
+		for (Map.Entry<Integer, String> schema : schemasById.entrySet()) {
+			Map<String, Object> entry = new LinkedHashMap<>();
+			entry.put("id", schema.getKey());
+			entry.put("definition", schema.getValue());
+			ids.add(entry);
+		}
+		content.put(IDS, ids);
+		File directory = this.file.getParentFile();
+		File temporaryFile = null;
+		try {
+			if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Cannot create directory " + directory);
+			}
+			temporaryFile = File.createTempFile(this.file.getName(), ".tmp", directory);
+			this.objectMapper.writeValue(temporaryFile, content);
+			move(temporaryFile, this.file);
+		}
+		catch (IOException | RuntimeException e) {
+			if (temporaryFile != null && !temporaryFile.delete()) {
+				temporaryFile.deleteOnExit();
+			}
+			logger.warn("Failed to save schema snapshot " + this.file, e);
+		}
+	}
+
+	private static String definition(Map<String, Object> entry) {
+		String definition = (String) entry.get("definition");
+		Assert.notNull(definition, "Schema definition missing from snapshot entry " + entry);
+		return definition;
+	}
+
+	private static void move(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+}
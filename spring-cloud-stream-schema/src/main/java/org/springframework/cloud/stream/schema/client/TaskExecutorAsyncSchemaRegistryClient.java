@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.schema.client;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.stream.schema.SchemaReference;
+import org.springframework.cloud.stream.schema.SchemaRegistrationResponse;
+import org.springframework.core.task.AsyncListenableTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * An {@link AsyncSchemaRegistryClient} that calls a {@link SchemaRegistryClient} on the
+ * threads of a task executor. If the delegate is a {@link CachingRegistryClient}, the
+ * schemas fetched are then available to its synchronous callers without waiting.
+ * <p>
+ * Unless an executor is provided, the client uses a fixed pool of daemon threads that
+ * is shut down when the client is destroyed.
+ *
+ * @since 1.3
+ */
+public class TaskExecutorAsyncSchemaRegistryClient implements AsyncSchemaRegistryClient, DisposableBean {
+
+	/**
+	 * The default number of threads calling the delegate, if no executor is provided.
+	 */
+	public static final int DEFAULT_POOL_SIZE = 2;
+
+	private final SchemaRegistryClient delegate;
+
+	private final AsyncListenableTaskExecutor taskExecutor;
+
+	private final ThreadPoolTaskExecutor ownTaskExecutor;
+
+	public TaskExecutorAsyncSchemaRegistryClient(SchemaRegistryClient delegate) {
+		this(delegate, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * @param delegate the client fetching and registering schemas
+	 * @param poolSize the number of threads calling the delegate
+	 */
+	public TaskExecutorAsyncSchemaRegistryClient(SchemaRegistryClient delegate, int poolSize) {
+		Assert.notNull(delegate, "The delegate cannot be null");
+		Assert.isTrue(poolSize > 0, "'poolSize' must be greater than 0");
+		this.delegate = delegate;
+		this.ownTaskExecutor = new ThreadPoolTaskExecutor();
+		this.ownTaskExecutor.setCorePoolSize(poolSize);
+		this.ownTaskExecutor.setMaxPoolSize(poolSize);
+		this.ownTaskExecutor.setDaemon(true);
+		this.ownTaskExecutor.setThreadNamePrefix("schema-registry-client-");
+		this.ownTaskExecutor.initialize();
+		this.taskExecutor = this.ownTaskExecutor;
+	}
+
+	/**
+	 * @param delegate the client fetching and registering schemas
+	 * @param taskExecutor the executor calling the delegate, which is not shut down by
+	 * this client
+	 */
+	public TaskExecutorAsyncSchemaRegistryClient(SchemaRegistryClient delegate,
+			AsyncListenableTaskExecutor taskExecutor) {
+		Assert.notNull(delegate, "The delegate cannot be null");
+		Assert.notNull(taskExecutor, "The task executor cannot be null");
+		this.delegate = delegate;
+		this.taskExecutor = taskExecutor;
+		this.ownTaskExecutor = null;
+	}
+
+	@Override
+	public ListenableFuture<SchemaRegistrationResponse> register(final String subject, final String format,
+			final String schema) {
+		return this.taskExecutor.submitListenable(new Callable<SchemaRegistrationResponse>() {
+
+			@Override
+			public SchemaRegistrationResponse call() throws Exception {
+				return TaskExecutorAsyncSchemaRegistryClient.this.delegate.register(subject, format, schema);
+			}
+
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> fetch(SchemaReference schemaReference) {
+		// references are mutable, so the task works on its own copy
+		final SchemaReference reference = new SchemaReference(schemaReference.getSubject(),
+				schemaReference.getVersion(), schemaReference.getFormat());
+		return this.taskExecutor.submitListenable(new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				return TaskExecutorAsyncSchemaRegistryClient.this.delegate.fetch(reference);
+			}
+
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> fetch(final int id) {
+		return this.taskExecutor.submitListenable(new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				return TaskExecutorAsyncSchemaRegistryClient.this.delegate.fetch(id);
+			}
+
+		});
+	}
+
+	@Override
+	public void destroy() {
+		if (this.ownTaskExecutor != null) {
+			this.ownTaskExecutor.shutdown();
+		}
+	}
+
+}
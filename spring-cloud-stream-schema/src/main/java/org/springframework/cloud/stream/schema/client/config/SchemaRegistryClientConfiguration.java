@@ -16,14 +16,22 @@
 
 package org.springframework.cloud.stream.schema.client.config;
 
+import java.io.File;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cloud.stream.schema.client.AsyncSchemaRegistryClient;
 import org.springframework.cloud.stream.schema.client.CachingRegistryClient;
+import org.springframework.cloud.stream.schema.client.CachingRegistryClientMetrics;
 import org.springframework.cloud.stream.schema.client.DefaultSchemaRegistryClient;
 import org.springframework.cloud.stream.schema.client.SchemaRegistryClient;
+import org.springframework.cloud.stream.schema.client.TaskExecutorAsyncSchemaRegistryClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
 
 /**
  * @author Marius Bogoevici
@@ -37,17 +45,43 @@ public class SchemaRegistryClientConfiguration {
 	private SchemaRegistryClientProperties schemaRegistryClientProperties;
 
 	@Bean
-	public SchemaRegistryClient schemaRegistryClient() {
-		DefaultSchemaRegistryClient defaultSchemaRegistryClient = new DefaultSchemaRegistryClient();
+	public SchemaRegistryClient schemaRegistryClient(ObjectProvider<RestTemplateBuilder> restTemplateBuilder) {
+		// detects a pooled request factory, such as Apache HttpClient, if on the classpath
+		RestTemplateBuilder builder = restTemplateBuilder.getIfAvailable();
+		RestTemplate restTemplate = (builder != null ? builder : new RestTemplateBuilder())
+				.setConnectTimeout(schemaRegistryClientProperties.getConnectTimeout())
+				.setReadTimeout(schemaRegistryClientProperties.getReadTimeout())
+				.build();
+		DefaultSchemaRegistryClient defaultSchemaRegistryClient = new DefaultSchemaRegistryClient(restTemplate);
 
 		if (StringUtils.hasText(schemaRegistryClientProperties.getEndpoint())) {
 			defaultSchemaRegistryClient.setEndpoint(schemaRegistryClientProperties.getEndpoint());
 		}
 
-		SchemaRegistryClient client = (schemaRegistryClientProperties.isCached())
-				? new CachingRegistryClient(defaultSchemaRegistryClient) : defaultSchemaRegistryClient;
-
+		if (!schemaRegistryClientProperties.isCached()) {
+			return defaultSchemaRegistryClient;
+		}
+		CachingRegistryClient client = new CachingRegistryClient(defaultSchemaRegistryClient,
+				schemaRegistryClientProperties.getCacheMaxSize(),
+				schemaRegistryClientProperties.getCacheTimeToLive(),
+				schemaRegistryClientProperties.getCacheNegativeTimeToLive());
+		if (StringUtils.hasText(schemaRegistryClientProperties.getCacheSnapshotFile())) {
+			client.setSnapshotFile(new File(schemaRegistryClientProperties.getCacheSnapshotFile()));
+		}
+		client.setPrefetchSubjects(schemaRegistryClientProperties.getPrefetchSubjects());
+		client.setPrefetchFormat(schemaRegistryClientProperties.getPrefetchFormat());
 		return client;
 	}
 
+	@Bean
+	public AsyncSchemaRegistryClient asyncSchemaRegistryClient(SchemaRegistryClient schemaRegistryClient) {
+		return new TaskExecutorAsyncSchemaRegistryClient(schemaRegistryClient,
+				schemaRegistryClientProperties.getAsyncPoolSize());
+	}
+
+	@Bean
+	public CachingRegistryClientMetrics schemaRegistryClientMetrics(SchemaRegistryClient schemaRegistryClient) {
+		return new CachingRegistryClientMetrics(schemaRegistryClient);
+	}
+
 }
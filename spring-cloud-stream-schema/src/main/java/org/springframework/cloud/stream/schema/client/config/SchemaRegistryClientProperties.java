@@ -17,6 +17,8 @@
 package org.springframework.cloud.stream.schema.client.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.stream.schema.client.CachingRegistryClient;
+import org.springframework.cloud.stream.schema.client.TaskExecutorAsyncSchemaRegistryClient;
 
 /**
  * @author Marius Bogoevici
@@ -27,7 +29,55 @@ public class SchemaRegistryClientProperties {
 
 	private String endpoint;
 
-	private boolean cached = false;
+	private boolean cached = true;
+
+	/**
+	 * Maximum number of schemas cached by reference, and by id, if the client caches.
+	 */
+	private int cacheMaxSize = CachingRegistryClient.DEFAULT_MAX_SIZE;
+
+	/**
+	 * Time after which cached schemas are fetched again, in milliseconds, 0 to cache them
+	 * indefinitely.
+	 */
+	private long cacheTimeToLive;
+
+	/**
+	 * Time for which a schema that was not found is not fetched again, in milliseconds, 0
+	 * to fetch it on every request.
+	 */
+	private long cacheNegativeTimeToLive;
+
+	/**
+	 * File in which the cached schemas are kept across restarts, if the client caches.
+	 */
+	private String cacheSnapshotFile;
+
+	/**
+	 * Subjects whose versions are fetched on startup, if the client caches.
+	 */
+	private String[] prefetchSubjects = new String[0];
+
+	/**
+	 * Format of the schemas fetched on startup.
+	 */
+	private String prefetchFormat = "avro";
+
+	/**
+	 * Timeout for connecting to the schema server, in milliseconds, 0 for none.
+	 */
+	private int connectTimeout = 5000;
+
+	/**
+	 * Timeout for reading a response from the schema server, in milliseconds, 0 for
+	 * none.
+	 */
+	private int readTimeout = 10000;
+
+	/**
+	 * Number of threads used by the asynchronous client.
+	 */
+	private int asyncPoolSize = TaskExecutorAsyncSchemaRegistryClient.DEFAULT_POOL_SIZE;
 
 	public String getEndpoint() {
 		return this.endpoint;
@@ -44,4 +94,77 @@ public class SchemaRegistryClientProperties {
 	public void setCached(boolean cached) {
 		this.cached = cached;
 	}
+
+	public int getCacheMaxSize() {
+		return this.cacheMaxSize;
+	}
+
+	public void setCacheMaxSize(int cacheMaxSize) {
+		this.cacheMaxSize = cacheMaxSize;
+	}
+
+	public long getCacheTimeToLive() {
+		return this.cacheTimeToLive;
+	}
+
+	public void setCacheTimeToLive(long cacheTimeToLive) {
+		this.cacheTimeToLive = cacheTimeToLive;
+	}
+
+	public long getCacheNegativeTimeToLive() {
+		return this.cacheNegativeTimeToLive;
+	}
+
+	public void setCacheNegativeTimeToLive(long cacheNegativeTimeToLive) {
+		this.cacheNegativeTimeToLive = cacheNegativeTimeToLive;
+	}
+
+	public String getCacheSnapshotFile() {
+		return this.cacheSnapshotFile;
+	}
+
+	public void setCacheSnapshotFile(String cacheSnapshotFile) {
+		this.cacheSnapshotFile = cacheSnapshotFile;
+	}
+
+	public String[] getPrefetchSubjects() {
+		return this.prefetchSubjects;
+	}
+
+	public void setPrefetchSubjects(String[] prefetchSubjects) {
+		this.prefetchSubjects = prefetchSubjects;
+	}
+
+	public String getPrefetchFormat() {
+		return this.prefetchFormat;
+	}
+
+	public void setPrefetchFormat(String prefetchFormat) {
+		this.prefetchFormat = prefetchFormat;
+	}
+
+	public int getConnectTimeout() {
+		return this.connectTimeout;
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return this.readTimeout;
+	}
+
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	public int getAsyncPoolSize() {
+		return this.asyncPoolSize;
+	}
+
+	public void setAsyncPoolSize(int asyncPoolSize) {
+		this.asyncPoolSize = asyncPoolSize;
+	}
+
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.schema.avro;
+
+import java.util.Collections;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+
+import org.springframework.cloud.stream.samples.Status;
+import org.springframework.cloud.stream.schema.avro.AvroSchemaMessageConverter;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.MimeType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @since 1.3
+ */
+public class AvroMessageConverterReuseTests {
+
+	private static final MessageHeaders AVRO_HEADERS = new MessageHeaders(Collections.<String, Object>singletonMap(
+			MessageHeaders.CONTENT_TYPE, "application/avro"));
+
+	@Test
+	public void testSpecificRecords() {
+		AvroSchemaMessageConverter converter = new AvroSchemaMessageConverter();
+		Message<?> first = converter.toMessage(status("1"), AVRO_HEADERS);
+		Message<?> second = converter.toMessage(status("2"), AVRO_HEADERS);
+		Status firstStatus = (Status) converter.fromMessage(first, Status.class);
+		Status secondStatus = (Status) converter.fromMessage(second, Status.class);
+		assertThat(firstStatus).isEqualTo(status("1"));
+		assertThat(secondStatus).isEqualTo(status("2"));
+		assertThat(firstStatus).isNotSameAs(secondStatus);
+	}
+
+	@Test
+	public void testReflectRecords() {
+		AvroSchemaMessageConverter converter = new AvroSchemaMessageConverter();
+		for (int i = 0; i < 3; i++) {
+			User1 user = new User1();
+			user.setName("user" + i);
+			user.setFavoriteNumber(i);
+			User1 result = (User1) converter.fromMessage(converter.toMessage(user, AVRO_HEADERS), User1.class);
+			assertThat(result.getName()).isEqualTo("user" + i);
+			assertThat(result.getFavoriteNumber()).isEqualTo(i);
+			assertThat(result.getFavoriteColor()).isNull();
+		}
+	}
+
+	@Test
+	public void testRecordReuse() throws Exception {
+		AvroSchemaMessageConverter converter = new AvroSchemaMessageConverter(new MimeType("application", "avro"));
+		converter.setSchemaLocation(new ClassPathResource("schemas/users_v1.schema"));
+		converter.setRecordReuseEnabled(true);
+		Message<?> first = converter.toMessage(user(converter.getSchema(), "foo"), AVRO_HEADERS);
+		Message<?> second = converter.toMessage(user(converter.getSchema(), "bar"), AVRO_HEADERS);
+		GenericRecord firstUser = (GenericRecord) converter.fromMessage(first, GenericRecord.class);
+		assertThat(firstUser.get("name").toString()).isEqualTo("foo");
+		GenericRecord secondUser = (GenericRecord) converter.fromMessage(second, GenericRecord.class);
+		assertThat(secondUser).isSameAs(firstUser);
+		assertThat(secondUser.get("name").toString()).isEqualTo("bar");
+	}
+
+	@Test
+	public void testWriteAfterFailedWrite() throws Exception {
+		AvroSchemaMessageConverter converter = new AvroSchemaMessageConverter();
+		converter.setSchemaLocation(new ClassPathResource("schemas/users_v1.schema"));
+		byte[] expected = (byte[]) converter.toMessage(user(converter.getSchema(), "foo"), AVRO_HEADERS)
+				.getPayload();
+		GenericRecord invalid = user(converter.getSchema(), "bar");
+		invalid.put("favoriteNumber", "not a number");
+		try {
+			converter.toMessage(invalid, AVRO_HEADERS);
+			fail("Exception expected");
+		}
+		catch (RuntimeException e) {
+			// expected
+		}
+		assertThat((byte[]) converter.toMessage(user(converter.getSchema(), "foo"), AVRO_HEADERS).getPayload())
+				.isEqualTo(expected);
+		GenericRecord result = (GenericRecord) converter.fromMessage(
+				converter.toMessage(user(converter.getSchema(), "foo"), AVRO_HEADERS), GenericRecord.class);
+		assertThat(result.get("name").toString()).isEqualTo("foo");
+	}
+
+	private static Status status(String id) {
+		return Status.newBuilder().setId(id).setText("text" + id).setTimestamp(1000L).build();
+	}
+
+	private static GenericRecord user(Schema schema, String name) {
+		GenericRecord user = new GenericData.Record(schema);
+		user.put("name", name);
+		user.put("favoriteNumber", 42);
+		user.put("favoriteColor", "blue");
+		return user;
+	}
+
+}
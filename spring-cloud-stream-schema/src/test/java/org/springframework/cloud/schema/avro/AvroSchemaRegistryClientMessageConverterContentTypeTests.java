@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.schema.avro;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.junit.Test;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.cloud.stream.samples.Status;
+import org.springframework.cloud.stream.schema.SchemaNotFoundException;
+import org.springframework.cloud.stream.schema.SchemaReference;
+import org.springframework.cloud.stream.schema.avro.AvroSchemaMessageConverter;
+import org.springframework.cloud.stream.schema.avro.AvroSchemaRegistryClientMessageConverter;
+import org.springframework.cloud.stream.schema.client.CachingRegistryClient;
+import org.springframework.cloud.stream.schema.client.SchemaRegistryClient;
+import org.springframework.cloud.stream.schema.client.TaskExecutorAsyncSchemaRegistryClient;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @since 1.3
+ */
+public class AvroSchemaRegistryClientMessageConverterContentTypeTests {
+
+	private static final SchemaReference STATUS_REFERENCE = new SchemaReference("status", 3, "avro");
+
+	@Test
+	public void testWriterSchemaIsResolvedOncePerContentType() throws Exception {
+		SchemaRegistryClient schemaRegistryClient = mockSchemaRegistryClient();
+		CacheManager cacheManager = new ConcurrentMapCacheManager();
+		AvroSchemaRegistryClientMessageConverter converter = createConverter(schemaRegistryClient, cacheManager);
+		Status first = (Status) converter.fromMessage(statusMessage("1"), Status.class);
+		cacheManager.getCache(AvroSchemaRegistryClientMessageConverter.REFERENCE_CACHE_NAME).clear();
+		Status second = (Status) converter.fromMessage(statusMessage("2"), Status.class);
+		assertThat(first.getId().toString()).isEqualTo("1");
+		assertThat(second.getId().toString()).isEqualTo("2");
+		verify(schemaRegistryClient, times(1)).fetch(STATUS_REFERENCE);
+	}
+
+	@Test
+	public void testNoOpCacheManagerDisablesCaching() throws Exception {
+		SchemaRegistryClient schemaRegistryClient = mockSchemaRegistryClient();
+		AvroSchemaRegistryClientMessageConverter converter = createConverter(schemaRegistryClient,
+				new NoOpCacheManager());
+		converter.fromMessage(statusMessage("1"), Status.class);
+		converter.fromMessage(statusMessage("2"), Status.class);
+		verify(schemaRegistryClient, times(2)).fetch(STATUS_REFERENCE);
+	}
+
+	@Test
+	public void testWriterSchemaIsPrefetched() throws Exception {
+		SchemaRegistryClient schemaRegistryClient = mockSchemaRegistryClient();
+		AvroSchemaRegistryClientMessageConverter converter = createConverter(schemaRegistryClient,
+				new ConcurrentMapCacheManager());
+		converter.setAsyncSchemaRegistryClient(
+				new TaskExecutorAsyncSchemaRegistryClient(schemaRegistryClient, new SimpleAsyncTaskExecutor()));
+		Schema schema = converter.prefetchWriterSchema(STATUS_REFERENCE).get(10, TimeUnit.SECONDS);
+		assertThat(schema).isEqualTo(Status.getClassSchema());
+		Status status = (Status) converter.fromMessage(statusMessage("1"), Status.class);
+		assertThat(status.getId().toString()).isEqualTo("1");
+		verify(schemaRegistryClient, times(1)).fetch(STATUS_REFERENCE);
+	}
+
+	@Test
+	public void testWriterSchemasOfSubjectsArePrefetchedOnInitialization() throws Exception {
+		SchemaRegistryClient schemaRegistryClient = mockSchemaRegistryClient();
+		for (int version = 1; version < STATUS_REFERENCE.getVersion(); version++) {
+			when(schemaRegistryClient.fetch(new SchemaReference("status", version, "avro")))
+					.thenReturn(Status.getClassSchema().toString());
+		}
+		SchemaReference missingReference = new SchemaReference("status", STATUS_REFERENCE.getVersion() + 1, "avro");
+		when(schemaRegistryClient.fetch(missingReference)).thenThrow(new SchemaNotFoundException("not found"));
+		CachingRegistryClient cachingRegistryClient = new CachingRegistryClient(schemaRegistryClient);
+		cachingRegistryClient.setPrefetchSubjects("status");
+		cachingRegistryClient.afterPropertiesSet();
+		verify(schemaRegistryClient, times(1)).fetch(missingReference);
+		AvroSchemaRegistryClientMessageConverter converter = createConverter(cachingRegistryClient,
+				new ConcurrentMapCacheManager());
+		Status status = (Status) converter.fromMessage(statusMessage("1"), Status.class);
+		assertThat(status.getId().toString()).isEqualTo("1");
+		// parsed from the schemas prefetched by the client, without fetching them again
+		assertThat(cachingRegistryClient.getReferenceCacheStatistics().getHitCount()).isEqualTo(0);
+		verify(schemaRegistryClient, times(1)).fetch(STATUS_REFERENCE);
+		verify(schemaRegistryClient, times(1)).fetch(missingReference);
+	}
+
+	private static SchemaRegistryClient mockSchemaRegistryClient() {
+		SchemaRegistryClient schemaRegistryClient = mock(SchemaRegistryClient.class);
+		when(schemaRegistryClient.fetch(STATUS_REFERENCE)).thenReturn(Status.getClassSchema().toString());
+		return schemaRegistryClient;
+	}
+
+	private static AvroSchemaRegistryClientMessageConverter createConverter(
+			SchemaRegistryClient schemaRegistryClient, CacheManager cacheManager) throws Exception {
+		AvroSchemaRegistryClientMessageConverter converter = new AvroSchemaRegistryClientMessageConverter(
+				schemaRegistryClient, cacheManager);
+		converter.afterPropertiesSet();
+		return converter;
+	}
+
+	private static Message<?> statusMessage(String id) {
+		Status status = Status.newBuilder().setId(id).setText("text").setTimestamp(1L).build();
+		Object payload = new AvroSchemaMessageConverter().toMessage(status, null).getPayload();
+		return MessageBuilder.withPayload(payload)
+				.setHeader(MessageHeaders.CONTENT_TYPE, "application/vnd.status.v3+avro").build();
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.schema.avro;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cloud.stream.samples.Status;
+import org.springframework.cloud.stream.schema.SchemaReference;
+import org.springframework.cloud.stream.schema.SchemaRegistrationResponse;
+import org.springframework.cloud.stream.schema.avro.AvroSchemaMessageConverter;
+import org.springframework.cloud.stream.schema.avro.AvroSchemaRegistryClientMessageConverter;
+import org.springframework.cloud.stream.schema.client.SchemaRegistryClient;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @since 1.3
+ */
+public class AvroSchemaRegistryClientMessageConverterSchemaIdPrefixTests {
+
+	private static final SchemaReference STATUS_REFERENCE = new SchemaReference("status", 3, "avro");
+
+	private static final int STATUS_ID = 258;
+
+	private final SchemaRegistryClient schemaRegistryClient = mock(SchemaRegistryClient.class);
+
+	@Test
+	public void testPayloadIsPrefixedWithSchemaId() throws Exception {
+		byte[] encoded = (byte[]) new AvroSchemaMessageConverter().toMessage(status("1"), null).getPayload();
+		byte[] prefixed = (byte[]) createConverter().toMessage(status("1"), null).getPayload();
+		assertThat(Arrays.copyOfRange(prefixed, 0, 5)).containsExactly(0, 0, 0, 1, 2);
+		assertThat(Arrays.copyOfRange(prefixed, 5, prefixed.length)).isEqualTo(encoded);
+	}
+
+	@Test
+	public void testContentTypeIsNotVersioned() throws Exception {
+		Message<?> message = createConverter().toMessage(status("1"),
+				new MessageHeaders(null));
+		assertThat(String.valueOf(message.getHeaders().get(MessageHeaders.CONTENT_TYPE)))
+				.doesNotContain("vnd.status");
+		verify(this.schemaRegistryClient, times(1)).register(eq("status"), eq("avro"), anyString());
+	}
+
+	@Test
+	public void testWriterSchemaIsResolvedById() throws Exception {
+		AvroSchemaRegistryClientMessageConverter converter = createConverter();
+		for (String id : new String[] { "1", "2" }) {
+			byte[] payload = (byte[]) converter.toMessage(status(id), null).getPayload();
+			Status status = (Status) converter.fromMessage(MessageBuilder.withPayload(payload).build(),
+					Status.class);
+			assertThat(status.getId().toString()).isEqualTo(id);
+		}
+		verify(this.schemaRegistryClient, times(1)).fetch(STATUS_ID);
+		verify(this.schemaRegistryClient, times(1)).register(eq("status"), eq("avro"), anyString());
+	}
+
+	@Test
+	public void testVersionedContentTypeIsStillSupported() throws Exception {
+		byte[] payload = (byte[]) new AvroSchemaMessageConverter().toMessage(status("1"), null).getPayload();
+		Message<?> message = MessageBuilder.withPayload(payload)
+				.setHeader(MessageHeaders.CONTENT_TYPE, "application/vnd.status.v3+avro").build();
+		Status status = (Status) createConverter().fromMessage(message, Status.class);
+		assertThat(status.getId().toString()).isEqualTo("1");
+		verify(this.schemaRegistryClient, never()).fetch(anyInt());
+	}
+
+	@Test
+	public void testPayloadWithoutPrefixIsRejected() throws Exception {
+		byte[] payload = (byte[]) new AvroSchemaMessageConverter().toMessage(status("1"), null).getPayload();
+		try {
+			createConverter().fromMessage(MessageBuilder.withPayload(payload).build(), Status.class);
+			fail("MessageConversionException expected");
+		}
+		catch (MessageConversionException e) {
+			assertThat(e.getMessage()).contains("schema id");
+		}
+	}
+
+	private AvroSchemaRegistryClientMessageConverter createConverter() throws Exception {
+		SchemaRegistrationResponse registration = new SchemaRegistrationResponse();
+		registration.setId(STATUS_ID);
+		registration.setSchemaReference(STATUS_REFERENCE);
+		when(this.schemaRegistryClient.register(eq("status"), eq("avro"), anyString())).thenReturn(registration);
+		when(this.schemaRegistryClient.fetch(STATUS_ID)).thenReturn(Status.getClassSchema().toString());
+		when(this.schemaRegistryClient.fetch(STATUS_REFERENCE)).thenReturn(Status.getClassSchema().toString());
+		AvroSchemaRegistryClientMessageConverter converter = new AvroSchemaRegistryClientMessageConverter(
+				this.schemaRegistryClient, new ConcurrentMapCacheManager());
+		converter.setSchemaIdPrefixEnabled(true);
+		converter.afterPropertiesSet();
+		return converter;
+	}
+
+	private static Status status(String id) {
+		return Status.newBuilder().setId(id).setText("text").setTimestamp(1L).build();
+	}
+
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.schema.client;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.stream.schema.SchemaNotFoundException;
+import org.springframework.cloud.stream.schema.SchemaReference;
+import org.springframework.cloud.stream.schema.SchemaRegistrationResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @since 1.3
+ */
+public class CachingRegistryClientTests {
+
+	private static final SchemaReference REFERENCE = new SchemaReference("user", 1, "avro");
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final SchemaRegistryClient delegate = mock(SchemaRegistryClient.class);
+
+	@Test
+	public void testFetchIsCached() {
+		when(this.delegate.fetch(REFERENCE)).thenReturn("schema");
+		when(this.delegate.fetch(1)).thenReturn("schema1");
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate);
+		for (int i = 0; i < 3; i++) {
+			assertThat(client.fetch(new SchemaReference("user", 1, "avro"))).isEqualTo("schema");
+			assertThat(client.fetch(1)).isEqualTo("schema1");
+		}
+		verify(this.delegate, times(1)).fetch(REFERENCE);
+		verify(this.delegate, times(1)).fetch(1);
+		SchemaCacheStatistics statistics = client.getReferenceCacheStatistics();
+		assertThat(statistics.getHitCount()).isEqualTo(2);
+		assertThat(statistics.getMissCount()).isEqualTo(1);
+		assertThat(statistics.getLoadSuccessCount()).isEqualTo(1);
+		assertThat(statistics.getSize()).isEqualTo(1);
+	}
+
+	@Test
+	public void testCachedReferenceIsNotAffectedByMutation() {
+		when(this.delegate.fetch(any(SchemaReference.class))).thenReturn("schema");
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate);
+		SchemaReference reference = new SchemaReference("user", 1, "avro");
+		client.fetch(reference);
+		reference.setVersion(2);
+		assertThat(client.fetch(REFERENCE)).isEqualTo("schema");
+		verify(this.delegate, times(1)).fetch(any(SchemaReference.class));
+	}
+
+	@Test
+	public void testRegisterPopulatesCaches() {
+		SchemaRegistrationResponse response = new SchemaRegistrationResponse();
+		response.setId(7);
+		response.setSchemaReference(REFERENCE);
+		when(this.delegate.register("user", "avro", "schema")).thenReturn(response);
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate);
+		assertThat(client.register("user", "avro", "schema")).isSameAs(response);
+		assertThat(client.fetch(REFERENCE)).isEqualTo("schema");
+		assertThat(client.fetch(7)).isEqualTo("schema");
+		verify(this.delegate, never()).fetch(any(SchemaReference.class));
+		verify(this.delegate, never()).fetch(anyInt());
+	}
+
+	@Test
+	public void testConcurrentMissesAreCollapsed() throws Exception {
+		final CountDownLatch fetching = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		when(this.delegate.fetch(REFERENCE)).thenAnswer(new Answer<String>() {
+
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				fetching.countDown();
+				release.await(10, TimeUnit.SECONDS);
+				return "schema";
+			}
+
+		});
+		final CachingRegistryClient client = new CachingRegistryClient(this.delegate);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(new Callable<String>() {
+
+					@Override
+					public String call() throws Exception {
+						return client.fetch(new SchemaReference("user", 1, "avro"));
+					}
+
+				}));
+			}
+			assertThat(fetching.await(10, TimeUnit.SECONDS)).isTrue();
+			Thread.sleep(100);
+			release.countDown();
+			for (Future<String> result : results) {
+				assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("schema");
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		verify(this.delegate, times(1)).fetch(REFERENCE);
+		assertThat(client.getReferenceCacheStatistics().getMissCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testTimeToLive() throws Exception {
+		when(this.delegate.fetch(REFERENCE)).thenReturn("schema");
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate, 10, 50, 0);
+		client.fetch(REFERENCE);
+		client.fetch(REFERENCE);
+		verify(this.delegate, times(1)).fetch(REFERENCE);
+		Thread.sleep(100);
+		client.fetch(REFERENCE);
+		verify(this.delegate, times(2)).fetch(REFERENCE);
+	}
+
+	@Test
+	public void testNegativeCaching() {
+		when(this.delegate.fetch(REFERENCE)).thenThrow(new SchemaNotFoundException("not found"));
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate, 10, 0, 60000);
+		for (int i = 0; i < 2; i++) {
+			try {
+				client.fetch(REFERENCE);
+				fail("SchemaNotFoundException expected");
+			}
+			catch (SchemaNotFoundException e) {
+				// expected
+			}
+		}
+		verify(this.delegate, times(1)).fetch(REFERENCE);
+		assertThat(client.getReferenceCacheStatistics().getLoadFailureCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testFailuresAreNotCachedByDefault() {
+		when(this.delegate.fetch(REFERENCE)).thenThrow(new SchemaNotFoundException("not found"))
+				.thenReturn("schema");
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate);
+		try {
+			client.fetch(REFERENCE);
+			fail("SchemaNotFoundException expected");
+		}
+		catch (SchemaNotFoundException e) {
+			// expected
+		}
+		assertThat(client.fetch(REFERENCE)).isEqualTo("schema");
+		assertThat(client.getReferenceCacheStatistics().getSize()).isEqualTo(1);
+	}
+
+	@Test
+	public void testErrorsAreNotCached() {
+		when(this.delegate.fetch(REFERENCE)).thenThrow(new StackOverflowError()).thenReturn("schema");
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate, 10, 0, 1000);
+		try {
+			client.fetch(REFERENCE);
+			fail("StackOverflowError expected");
+		}
+		catch (StackOverflowError e) {
+			// expected
+		}
+		assertThat(client.fetch(REFERENCE)).isEqualTo("schema");
+		assertThat(client.getReferenceCacheStatistics().getLoadFailureCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testMaxSize() {
+		when(this.delegate.fetch(anyInt())).thenReturn("schema");
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate, 2, 0, 0);
+		client.fetch(1);
+		client.fetch(2);
+		client.fetch(3);
+		SchemaCacheStatistics statistics = client.getIdCacheStatistics();
+		assertThat(statistics.getSize()).isEqualTo(2);
+		assertThat(statistics.getEvictionCount()).isEqualTo(1);
+		client.fetch(1);
+		verify(this.delegate, times(2)).fetch(1);
+	}
+
+	@Test
+	public void testMetrics() {
+		when(this.delegate.fetch(REFERENCE)).thenReturn("schema");
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate);
+		client.fetch(REFERENCE);
+		client.fetch(REFERENCE);
+		List<String> names = new ArrayList<>();
+		for (Metric<?> metric : new CachingRegistryClientMetrics(client).metrics()) {
+			names.add(metric.getName());
+			if (metric.getName().equals("spring.cloud.stream.schemaRegistryClient.cache.reference.hits")) {
+				assertThat(metric.getValue()).isEqualTo(1L);
+			}
+		}
+		assertThat(names).contains("spring.cloud.stream.schemaRegistryClient.cache.reference.hits",
+				"spring.cloud.stream.schemaRegistryClient.cache.reference.averageLoadTime",
+				"spring.cloud.stream.schemaRegistryClient.cache.id.misses");
+		assertThat(new CachingRegistryClientMetrics(this.delegate).metrics()).isEqualTo(Collections.emptyList());
+	}
+
+	@Test
+	public void testSnapshotResolvesSchemasAfterRestart() throws Exception {
+		File snapshotFile = new File(this.temporaryFolder.getRoot(), "snapshots/schemas.json");
+		when(this.delegate.fetch(REFERENCE)).thenReturn("schema");
+		when(this.delegate.fetch(1)).thenReturn("schema1");
+		when(this.delegate.register("user", "avro", "schema2"))
+				.thenReturn(registration(new SchemaReference("user", 2, "avro"), 2));
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate);
+		client.setSnapshotFile(snapshotFile);
+		client.afterPropertiesSet();
+		client.fetch(REFERENCE);
+		client.fetch(1);
+		client.register("user", "avro", "schema2");
+		client.destroy();
+		assertThat(snapshotFile).exists();
+
+		SchemaRegistryClient offline = mock(SchemaRegistryClient.class);
+		when(offline.fetch(any(SchemaReference.class))).thenThrow(new IllegalStateException("offline"));
+		when(offline.fetch(anyInt())).thenThrow(new IllegalStateException("offline"));
+		CachingRegistryClient restarted = new CachingRegistryClient(offline);
+		restarted.setSnapshotFile(snapshotFile);
+		restarted.afterPropertiesSet();
+		assertThat(restarted.fetch(new SchemaReference("user", 1, "avro"))).isEqualTo("schema");
+		assertThat(restarted.fetch(new SchemaReference("user", 2, "avro"))).isEqualTo("schema2");
+		assertThat(restarted.fetch(1)).isEqualTo("schema1");
+		assertThat(restarted.fetch(2)).isEqualTo("schema2");
+		verify(offline, never()).fetch(any(SchemaReference.class));
+		verify(offline, never()).fetch(anyInt());
+	}
+
+	@Test
+	public void testSnapshotIsSavedAsynchronouslyFromCache() throws Exception {
+		File snapshotFile = new File(this.temporaryFolder.getRoot(), "schemas.json");
+		when(this.delegate.fetch(1)).thenReturn("one");
+		when(this.delegate.fetch(2)).thenReturn("two");
+		when(this.delegate.fetch(3)).thenReturn("three");
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate, 2, 0, 0);
+		client.setSnapshotFile(snapshotFile);
+		client.afterPropertiesSet();
+		try {
+			client.fetch(1);
+			client.fetch(2);
+			client.fetch(3);
+			String content = "";
+			for (int i = 0; i < 100 && !content.contains("three"); i++) {
+				Thread.sleep(100);
+				content = new String(Files.readAllBytes(snapshotFile.toPath()), StandardCharsets.UTF_8);
+			}
+			// the evicted schema is not kept in the snapshot
+			assertThat(content).contains("two", "three").doesNotContain("one");
+		}
+		finally {
+			client.destroy();
+		}
+	}
+
+	@Test
+	public void testUnreadableSnapshotIsIgnored() throws Exception {
+		File snapshotFile = this.temporaryFolder.newFile("schemas.json");
+		Files.write(snapshotFile.toPath(), "{\"references\":[{\"subject\":".getBytes(StandardCharsets.UTF_8));
+		when(this.delegate.fetch(REFERENCE)).thenReturn("schema");
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate);
+		client.setSnapshotFile(snapshotFile);
+		client.afterPropertiesSet();
+		assertThat(client.fetch(REFERENCE)).isEqualTo("schema");
+		client.destroy();
+
+		CachingRegistryClient restarted = new CachingRegistryClient(mock(SchemaRegistryClient.class));
+		restarted.setSnapshotFile(snapshotFile);
+		restarted.afterPropertiesSet();
+		assertThat(restarted.fetch(REFERENCE)).isEqualTo("schema");
+	}
+
+	@Test
+	public void testPrefetchFetchesVersionsUntilMissing() throws Exception {
+		File snapshotFile = new File(this.temporaryFolder.getRoot(), "schemas.json");
+		when(this.delegate.fetch(new SchemaReference("user", 1, "avro"))).thenReturn("schema1");
+		when(this.delegate.fetch(new SchemaReference("user", 2, "avro"))).thenReturn("schema2");
+		when(this.delegate.fetch(new SchemaReference("user", 3, "avro")))
+				.thenThrow(new SchemaNotFoundException("missing"));
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate);
+		client.setSnapshotFile(snapshotFile);
+		client.setPrefetchSubjects("user");
+		client.afterPropertiesSet();
+		verify(this.delegate, times(3)).fetch(any(SchemaReference.class));
+		assertThat(client.getReferenceCacheStatistics().getSize()).isEqualTo(2);
+		assertThat(client.fetch(new SchemaReference("user", 2, "avro"))).isEqualTo("schema2");
+		verify(this.delegate, times(3)).fetch(any(SchemaReference.class));
+		assertThat(new String(Files.readAllBytes(snapshotFile.toPath()), StandardCharsets.UTF_8))
+				.contains("schema1", "schema2");
+	}
+
+	@Test
+	public void testPrefetchedSchemasAreTheCachedSchemasOfPrefetchedSubjects() {
+		when(this.delegate.fetch(new SchemaReference("user", 1, "avro"))).thenReturn("schema1");
+		when(this.delegate.fetch(new SchemaReference("user", 2, "avro")))
+				.thenThrow(new SchemaNotFoundException("missing"));
+		when(this.delegate.fetch(new SchemaReference("order", 1, "avro"))).thenReturn("order1");
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate);
+		client.setPrefetchSubjects("user");
+		client.afterPropertiesSet();
+		client.fetch(new SchemaReference("order", 1, "avro"));
+		assertThat(client.getPrefetchedSchemas()).hasSize(1)
+				.containsEntry(new SchemaReference("user", 1, "avro"), "schema1");
+		verify(this.delegate, times(3)).fetch(any(SchemaReference.class));
+	}
+
+	@Test
+	public void testPrefetchFailureDoesNotPreventStartup() {
+		when(this.delegate.fetch(any(SchemaReference.class))).thenThrow(new IllegalStateException("unavailable"));
+		CachingRegistryClient client = new CachingRegistryClient(this.delegate);
+		client.setPrefetchSubjects("user", "order");
+		client.afterPropertiesSet();
+		verify(this.delegate, times(2)).fetch(any(SchemaReference.class));
+		assertThat(client.getReferenceCacheStatistics().getSize()).isEqualTo(0);
+	}
+
+	private static SchemaRegistrationResponse registration(SchemaReference reference, int id) {
+		SchemaRegistrationResponse response = new SchemaRegistrationResponse();
+		response.setSchemaReference(reference);
+		response.setId(id);
+		return response;
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.schema.client;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.springframework.cloud.stream.schema.SchemaNotFoundException;
+import org.springframework.cloud.stream.schema.SchemaReference;
+import org.springframework.cloud.stream.schema.SchemaRegistrationResponse;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @since 1.3
+ */
+public class TaskExecutorAsyncSchemaRegistryClientTests {
+
+	private static final SchemaReference REFERENCE = new SchemaReference("user", 1, "avro");
+
+	private final SchemaRegistryClient delegate = mock(SchemaRegistryClient.class);
+
+	@Test
+	public void testFetchAndRegister() throws Exception {
+		SchemaRegistrationResponse response = new SchemaRegistrationResponse();
+		response.setId(1);
+		response.setSchemaReference(REFERENCE);
+		when(this.delegate.register("user", "avro", "schema")).thenReturn(response);
+		when(this.delegate.fetch(REFERENCE)).thenReturn("schema");
+		when(this.delegate.fetch(1)).thenReturn("schema1");
+		TaskExecutorAsyncSchemaRegistryClient client = new TaskExecutorAsyncSchemaRegistryClient(this.delegate);
+		try {
+			assertThat(client.register("user", "avro", "schema").get(10, TimeUnit.SECONDS)).isSameAs(response);
+			assertThat(client.fetch(new SchemaReference("user", 1, "avro")).get(10, TimeUnit.SECONDS))
+					.isEqualTo("schema");
+			assertThat(client.fetch(1).get(10, TimeUnit.SECONDS)).isEqualTo("schema1");
+		}
+		finally {
+			client.destroy();
+		}
+	}
+
+	@Test
+	public void testFailureCompletesFuture() throws Exception {
+		when(this.delegate.fetch(REFERENCE)).thenThrow(new SchemaNotFoundException("missing"));
+		TaskExecutorAsyncSchemaRegistryClient client = new TaskExecutorAsyncSchemaRegistryClient(this.delegate,
+				new SimpleAsyncTaskExecutor());
+		try {
+			client.fetch(REFERENCE).get(10, TimeUnit.SECONDS);
+			fail("ExecutionException expected");
+		}
+		catch (ExecutionException e) {
+			assertThat(e.getCause()).isInstanceOf(SchemaNotFoundException.class);
+		}
+	}
+
+	@Test
+	public void testPrefetchedSchemaIsCached() throws Exception {
+		when(this.delegate.fetch(REFERENCE)).thenReturn("schema");
+		CachingRegistryClient cachingClient = new CachingRegistryClient(this.delegate);
+		TaskExecutorAsyncSchemaRegistryClient client = new TaskExecutorAsyncSchemaRegistryClient(cachingClient,
+				new SimpleAsyncTaskExecutor());
+		client.fetch(REFERENCE).get(10, TimeUnit.SECONDS);
+		assertThat(cachingClient.fetch(REFERENCE)).isEqualTo("schema");
+		verify(this.delegate, times(1)).fetch(REFERENCE);
+	}
+
+	@Test
+	public void testDestroyShutsDownOwnExecutor() {
+		TaskExecutorAsyncSchemaRegistryClient client = new TaskExecutorAsyncSchemaRegistryClient(this.delegate, 1);
+		client.destroy();
+		try {
+			client.fetch(1);
+			fail("TaskRejectedException expected");
+		}
+		catch (TaskRejectedException e) {
+			// expected
+		}
+	}
+
+}
@@ -159,6 +159,25 @@ public abstract class AbstractBinder<T, C extends ConsumerProperties, P extends
 		return MessageSerializationUtils.serializePayload(originalPayload, this.codec);
 	}
 
+	/**
+	 * Serialize the payload of a message and embed some of its headers into a single,
+	 * exactly sized, byte array.
+	 * @param message the message
+	 * @param format the format of the embedded headers
+	 * @param headers the names of the headers to embed
+	 * @return the message values, with the new payload and the headers of the serialized
+	 * message
+	 * @throws Exception if the headers cannot be embedded
+	 * @since 1.3
+	 */
+	protected final MessageValues serializePayloadAndEmbedHeaders(Message<?> message, EmbeddedHeadersFormat format,
+			String... headers) throws Exception {
+		MessageValues messageValues = MessageSerializationUtils.withSerializedContentType(message);
+		messageValues.setPayload(EmbeddedHeaderUtils.serializeAndEmbedHeaders(messageValues, this.codec, format,
+				headers));
+		return messageValues;
+	}
+
 	protected final MessageValues deserializePayloadIfNecessary(Message<?> message) {
 		return MessageSerializationUtils.deserializePayload(new MessageValues(message), this.contentTypeResolver, this.codec);
 	}
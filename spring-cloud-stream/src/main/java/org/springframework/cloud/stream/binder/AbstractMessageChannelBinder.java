@@ -16,6 +16,12 @@
 
 package org.springframework.cloud.stream.binder;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
@@ -26,6 +32,7 @@ import org.springframework.cloud.stream.provisioning.ProducerDestination;
 import org.springframework.cloud.stream.provisioning.ProvisioningException;
 import org.springframework.cloud.stream.provisioning.ProvisioningProvider;
 import org.springframework.context.Lifecycle;
+import org.springframework.context.support.AbstractApplicationContext;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.channel.FixedSubscriberChannel;
@@ -40,8 +47,10 @@ import org.springframework.integration.support.ErrorMessageStrategy;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
-import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
 import org.springframework.util.Assert;
 import org.springframework.util.MimeType;
 import org.springframework.util.MimeTypeUtils;
@@ -136,13 +145,26 @@ public abstract class AbstractMessageChannelBinder<C extends ConsumerProperties,
 		if (producerMessageHandler instanceof Lifecycle) {
 			((Lifecycle) producerMessageHandler).start();
 		}
-		((SubscribableChannel) outputChannel).subscribe(
-				new SendingHandler(producerMessageHandler, !this.supportsHeadersNatively && HeaderMode.embeddedHeaders
-						.equals(producerProperties.getHeaderMode()), this.headersToEmbed,
-						producerProperties.isUseNativeEncoding()));
+		SendingHandler sendingHandler = new SendingHandler(producerMessageHandler,
+				!this.supportsHeadersNatively && HeaderMode.embeddedHeaders.equals(producerProperties.getHeaderMode()),
+				this.headersToEmbed, producerProperties.getEmbeddedHeadersFormat(),
+				producerProperties.isUseNativeEncoding());
+		Lifecycle bindingLifecycle = producerMessageHandler instanceof Lifecycle ? (Lifecycle) producerMessageHandler
+				: null;
+		if (producerProperties.isBatchingEnabled()) {
+			if (producerMessageHandler instanceof BatchMessageHandler) {
+				sendingHandler.enableBatching(producerProperties);
+				// the sending handler must be stopped first, so that pending messages are flushed
+				bindingLifecycle = sendingHandler;
+			}
+			else if (this.logger.isDebugEnabled()) {
+				this.logger.debug("Batching is not supported by the producer for '" + destination
+						+ "', messages will be sent individually");
+			}
+		}
+		((SubscribableChannel) outputChannel).subscribe(sendingHandler);
 
-		return new DefaultBinding<MessageChannel>(destination, null, outputChannel,
-				producerMessageHandler instanceof Lifecycle ? (Lifecycle) producerMessageHandler : null) {
+		return new DefaultBinding<MessageChannel>(destination, null, outputChannel, bindingLifecycle) {
 
 			@Override
 			public void afterUnbind() {
@@ -172,6 +194,10 @@ public abstract class AbstractMessageChannelBinder<C extends ConsumerProperties,
 	 * the message must be sent</li>
 	 * </ul>
 	 * <p>
+	 * If the returned instance is a {@link BatchMessageHandler} and batching is enabled
+	 * through {@link ProducerProperties#isBatchingEnabled()}, outbound messages will be
+	 * accumulated and sent in batches.
+	 * <p>
 	 *
 	 * @param destination the name of the target destination
 	 * @param producerProperties the producer properties
@@ -218,7 +244,7 @@ public abstract class AbstractMessageChannelBinder<C extends ConsumerProperties,
 					properties);
 			final boolean extractEmbeddedHeaders = HeaderMode.embeddedHeaders.equals(
 					properties.getHeaderMode()) && !this.supportsHeadersNatively;
-			ReceivingHandler rh = new ReceivingHandler(extractEmbeddedHeaders);
+			ReceivingHandler rh = new ReceivingHandler(extractEmbeddedHeaders, properties.isByteBufferPayload());
 			rh.setOutputChannel(inputChannel);
 			final FixedSubscriberChannel bridge = new FixedSubscriberChannel(rh);
 			bridge.setBeanName("bridge." + name);
@@ -454,8 +480,11 @@ public abstract class AbstractMessageChannelBinder<C extends ConsumerProperties,
 
 		private final boolean extractEmbeddedHeaders;
 
-		private ReceivingHandler(boolean extractEmbeddedHeaders) {
+		private final boolean byteBufferPayload;
+
+		private ReceivingHandler(boolean extractEmbeddedHeaders, boolean byteBufferPayload) {
 			this.extractEmbeddedHeaders = extractEmbeddedHeaders;
+			this.byteBufferPayload = byteBufferPayload;
 		}
 
 		@Override
@@ -468,8 +497,10 @@ public abstract class AbstractMessageChannelBinder<C extends ConsumerProperties,
 			MessageValues messageValues;
 			if (this.extractEmbeddedHeaders) {
 				try {
+					// extract a view of the payload, so that it is not copied if it is going to be
+					// deserialized anyway
 					messageValues = EmbeddedHeaderUtils.extractHeaders((Message<byte[]>) requestMessage,
-							true);
+							true, true);
 				}
 				catch (Exception e) {
 					AbstractMessageChannelBinder.this.logger.error(
@@ -479,6 +510,9 @@ public abstract class AbstractMessageChannelBinder<C extends ConsumerProperties,
 					messageValues = new MessageValues(requestMessage);
 				}
 				messageValues = deserializePayloadIfNecessary(messageValues);
+				if (!this.byteBufferPayload) {
+					messageValues.setPayload(EmbeddedHeaderUtils.materializePayload(messageValues.getPayload()));
+				}
 			}
 			else {
 				MimeType contentType = AbstractMessageChannelBinder.this.contentTypeResolver.resolve(requestMessage.getHeaders());
@@ -505,50 +539,154 @@ public abstract class AbstractMessageChannelBinder<C extends ConsumerProperties,
 
 		private final String[] embeddedHeaders;
 
+		private final EmbeddedHeadersFormat embeddedHeadersFormat;
+
 		private final MessageHandler delegate;
 
 		private final boolean useNativeEncoding;
 
+		private final Object batchMonitor = new Object();
+
+		/**
+		 * Held while a batch is sent, so that batches are sent one at a time, and in the
+		 * order they were taken. It is acquired while holding the batch monitor.
+		 */
+		private final Lock sendLock = new ReentrantLock();
+
+		private BatchMessageHandler batchDelegate;
+
+		private int batchSize;
+
+		private int batchBufferLimit;
+
+		private int batchTimeout;
+
+		private List<Message<?>> batch;
+
+		private int batchBytes;
+
+		private ScheduledFuture<?> scheduledFlush;
+
+		private boolean stopped;
+
 		private SendingHandler(MessageHandler delegate, boolean embedHeaders,
-				String[] headersToEmbed, boolean useNativeEncoding) {
+				String[] headersToEmbed, EmbeddedHeadersFormat embeddedHeadersFormat, boolean useNativeEncoding) {
 			this.delegate = delegate;
 			this.setBeanFactory(AbstractMessageChannelBinder.this.getBeanFactory());
 			this.embedHeaders = embedHeaders;
 			this.embeddedHeaders = headersToEmbed;
+			this.embeddedHeadersFormat = embeddedHeadersFormat;
 			this.useNativeEncoding = useNativeEncoding;
 		}
 
+		private void enableBatching(ProducerProperties producerProperties) {
+			this.batchDelegate = (BatchMessageHandler) this.delegate;
+			this.batchSize = producerProperties.getBatchSize();
+			this.batchBufferLimit = producerProperties.getBatchBufferLimit();
+			this.batchTimeout = producerProperties.getBatchTimeout();
+			this.batch = new ArrayList<>(this.batchSize);
+		}
+
 		@Override
 		protected void handleMessageInternal(Message<?> message) throws Exception {
 			Message<?> messageToSend = (this.useNativeEncoding) ? message
 					: serializeAndEmbedHeadersIfApplicable(message);
-			this.delegate.handleMessage(messageToSend);
+			if (this.batchDelegate != null) {
+				addToBatch(messageToSend);
+			}
+			else {
+				this.delegate.handleMessage(messageToSend);
+			}
 		}
 
-		private Message<?> serializeAndEmbedHeadersIfApplicable(Message<?> message) throws Exception {
-			MessageValues transformed = serializePayloadIfNecessary(message);
-			byte[] payload;
-			if (this.embedHeaders) {
-				Object contentType = transformed.get(MessageHeaders.CONTENT_TYPE);
-				// transform content type headers to String, so that they can be properly
-				// embedded in JSON
-				if (contentType instanceof MimeType) {
-					transformed.put(MessageHeaders.CONTENT_TYPE, contentType.toString());
+		private void addToBatch(Message<?> message) {
+			List<Message<?>> fullBatch = null;
+			synchronized (this.batchMonitor) {
+				this.batch.add(message);
+				if (message.getPayload() instanceof byte[]) {
+					this.batchBytes += ((byte[]) message.getPayload()).length;
 				}
-				Object originalContentType = transformed.get(BinderHeaders.BINDER_ORIGINAL_CONTENT_TYPE);
-				if (originalContentType instanceof MimeType) {
-					transformed.put(BinderHeaders.BINDER_ORIGINAL_CONTENT_TYPE, originalContentType.toString());
+				if (this.batch.size() >= this.batchSize || this.batchBytes >= this.batchBufferLimit
+						|| this.stopped) {
+					// once stopped, messages are sent directly, as no flush can be scheduled
+					fullBatch = takeBatch();
+					this.sendLock.lock();
+				}
+				else if (this.scheduledFlush == null) {
+					this.scheduledFlush = getTaskScheduler().schedule(new Runnable() {
+
+						@Override
+						public void run() {
+							flush();
+						}
+
+					}, new Date(System.currentTimeMillis() + this.batchTimeout));
 				}
-				payload = EmbeddedHeaderUtils.embedHeaders(transformed, this.embeddedHeaders);
 			}
-			else {
-				payload = (byte[]) transformed.getPayload();
+			if (fullBatch != null) {
+				sendBatchAndUnlock(fullBatch);
+			}
+		}
+
+		private List<Message<?>> takeBatch() {
+			if (this.scheduledFlush != null) {
+				this.scheduledFlush.cancel(false);
+				this.scheduledFlush = null;
+			}
+			List<Message<?>> fullBatch = this.batch;
+			this.batch = new ArrayList<>(this.batchSize);
+			this.batchBytes = 0;
+			return fullBatch;
+		}
+
+		private void flush() {
+			List<Message<?>> pendingBatch;
+			synchronized (this.batchMonitor) {
+				pendingBatch = takeBatch();
+				if (pendingBatch.isEmpty()) {
+					return;
+				}
+				this.sendLock.lock();
+			}
+			sendBatchAndUnlock(pendingBatch);
+		}
+
+		private void sendBatchAndUnlock(List<Message<?>> messages) {
+			try {
+				this.batchDelegate.handleMessages(messages);
+			}
+			catch (Exception e) {
+				// the messages have already been accepted from their senders, so failures are
+				// reported once per batch to the global error channel
+				MessagingException exception = new MessagingException(new GenericMessage<>(messages),
+						"Failed to send a batch of " + messages.size() + " messages", e);
+				AbstractApplicationContext applicationContext = AbstractMessageChannelBinder.this
+						.getApplicationContext();
+				if (applicationContext.containsBean(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)) {
+					applicationContext.getBean(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME, MessageChannel.class)
+							.send(new ErrorMessage(exception));
+				}
+				else {
+					AbstractMessageChannelBinder.this.logger.error(exception.getMessage(), e);
+				}
+			}
+			finally {
+				this.sendLock.unlock();
 			}
-			return getMessageBuilderFactory().withPayload(payload).copyHeaders(transformed.getHeaders()).build();
+		}
+
+		private Message<?> serializeAndEmbedHeadersIfApplicable(Message<?> message) throws Exception {
+			MessageValues transformed = this.embedHeaders
+					? serializePayloadAndEmbedHeaders(message, this.embeddedHeadersFormat, this.embeddedHeaders)
+					: serializePayloadIfNecessary(message);
+			return transformed.toMessage(getMessageBuilderFactory());
 		}
 
 		@Override
 		public void start() {
+			synchronized (this.batchMonitor) {
+				this.stopped = false;
+			}
 			if (this.delegate instanceof Lifecycle) {
 				((Lifecycle) this.delegate).start();
 			}
@@ -556,6 +694,12 @@ public abstract class AbstractMessageChannelBinder<C extends ConsumerProperties,
 
 		@Override
 		public void stop() {
+			if (this.batchDelegate != null) {
+				synchronized (this.batchMonitor) {
+					this.stopped = true;
+				}
+				flush();
+			}
 			if (this.delegate instanceof Lifecycle) {
 				((Lifecycle) this.delegate).stop();
 			}
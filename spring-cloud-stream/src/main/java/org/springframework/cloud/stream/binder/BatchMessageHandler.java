@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+import java.util.List;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+/**
+ * A {@link MessageHandler} that is able to send several messages to the target
+ * middleware in a single operation.
+ * <p>
+ * If the producer message handler created by an {@link AbstractMessageChannelBinder}
+ * implements this interface and {@link ProducerProperties#isBatchingEnabled()} is set,
+ * outbound messages are accumulated by the binder and handed over as batches. Otherwise,
+ * messages are sent one by one through {@link #handleMessage(Message)}.
+ *
+ * @since 1.3
+ */
+public interface BatchMessageHandler extends MessageHandler {
+
+	/**
+	 * Send a batch of messages. The messages are already serialized and have their
+	 * headers embedded, if applicable. The binder does not call this method concurrently
+	 * for the same binding, and calls it in the order in which the batches are completed.
+	 *
+	 * @param messages the messages to send, in the order in which they were produced
+	 * @throws MessagingException if the batch could not be sent
+	 */
+	void handleMessages(List<Message<?>> messages) throws MessagingException;
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+import java.util.Arrays;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link PartitionSelectorStrategy} that places a number of virtual nodes for each
+ * partition on a hash ring, and selects the partition that owns the first virtual node
+ * following the hash of the key. When the partition count grows from {@code n} to
+ * {@code n + 1}, about {@code 1/(n + 1)} of the keys move, all of them to the new
+ * partition. More virtual nodes result in a more even distribution of the keys, at the
+ * cost of memory and of the time for building the ring.
+ * <p>
+ * Keys and virtual nodes are hashed with MurmurHash3 instead of
+ * {@link Object#hashCode()}, see {@link PartitionKeyHashing} for how the different key
+ * types are hashed.
+ *
+ * @since 1.3
+ */
+public class ConsistentHashRingPartitionSelector implements PartitionSelectorStrategy {
+
+	/**
+	 * The default number of virtual nodes per partition.
+	 */
+	public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+	private final int virtualNodes;
+
+	private volatile Ring ring;
+
+	public ConsistentHashRingPartitionSelector() {
+		this(DEFAULT_VIRTUAL_NODES);
+	}
+
+	/**
+	 * @param virtualNodes the number of virtual nodes per partition
+	 */
+	public ConsistentHashRingPartitionSelector(int virtualNodes) {
+		Assert.isTrue(virtualNodes > 0, "'virtualNodes' must be greater than zero");
+		this.virtualNodes = virtualNodes;
+	}
+
+	@Override
+	public int selectPartition(Object key, int partitionCount) {
+		Ring ring = this.ring;
+		if (ring == null || ring.partitionCount != partitionCount) {
+			// the partition count of a binding does not change, so the ring is built once
+			ring = new Ring(partitionCount, this.virtualNodes);
+			this.ring = ring;
+		}
+		return ring.select(PartitionKeyHashing.hashKey(key));
+	}
+
+	private static final class Ring {
+
+		private final int partitionCount;
+
+		private final long[] hashes;
+
+		private final int[] partitions;
+
+		private Ring(int partitionCount, int virtualNodes) {
+			this.partitionCount = partitionCount;
+			int size = partitionCount * virtualNodes;
+			long[] nodes = new long[size];
+			long[] sortedHashes = new long[size];
+			for (int partition = 0; partition < partitionCount; partition++) {
+				for (int node = 0; node < virtualNodes; node++) {
+					long hash = PartitionKeyHashing.hash64(((long) partition << 32) | node);
+					sortedHashes[partition * virtualNodes + node] = hash;
+					nodes[partition * virtualNodes + node] = hash;
+				}
+			}
+			Arrays.sort(sortedHashes);
+			this.hashes = sortedHashes;
+			this.partitions = new int[size];
+			for (int i = 0; i < size; i++) {
+				int index = Arrays.binarySearch(sortedHashes, nodes[i]);
+				this.partitions[index] = i / virtualNodes;
+			}
+		}
+
+		private int select(long hash) {
+			int index = Arrays.binarySearch(this.hashes, hash);
+			if (index < 0) {
+				index = -index - 1;
+				if (index == this.hashes.length) {
+					index = 0;
+				}
+			}
+			return this.partitions[index];
+		}
+	}
+
+}
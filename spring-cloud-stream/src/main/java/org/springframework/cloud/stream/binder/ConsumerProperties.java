@@ -47,6 +47,14 @@ public class ConsumerProperties {
 
 	private HeaderMode headerMode = HeaderMode.embeddedHeaders;
 
+	private boolean byteBufferPayload = false;
+
+	private boolean batchingEnabled = false;
+
+	private int batchSize = 100;
+
+	private int batchTimeout = 1000;
+
 	@Min(value = 1, message = "Concurrency should be greater than zero.")
 	public int getConcurrency() {
 		return concurrency;
@@ -125,4 +133,38 @@ public class ConsumerProperties {
 	public void setHeaderMode(HeaderMode headerMode) {
 		this.headerMode = headerMode;
 	}
+
+	public boolean isByteBufferPayload() {
+		return this.byteBufferPayload;
+	}
+
+	public void setByteBufferPayload(boolean byteBufferPayload) {
+		this.byteBufferPayload = byteBufferPayload;
+	}
+
+	public boolean isBatchingEnabled() {
+		return this.batchingEnabled;
+	}
+
+	public void setBatchingEnabled(boolean batchingEnabled) {
+		this.batchingEnabled = batchingEnabled;
+	}
+
+	@Min(value = 1, message = "Batch size should be greater than zero.")
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	@Min(value = 1, message = "Batch timeout should be greater than zero.")
+	public int getBatchTimeout() {
+		return this.batchTimeout;
+	}
+
+	public void setBatchTimeout(int batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
 }
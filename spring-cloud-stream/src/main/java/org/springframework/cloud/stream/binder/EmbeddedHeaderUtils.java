@@ -18,16 +18,20 @@ package org.springframework.cloud.stream.binder;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 import javax.xml.bind.DatatypeConverter;
 
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.codec.Codec;
 import org.springframework.integration.support.json.Jackson2JsonObjectMapper;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.MimeType;
 import org.springframework.util.ObjectUtils;
 
 /**
@@ -39,6 +43,19 @@ import org.springframework.util.ObjectUtils;
  * <p>
  * Previously, there was no leading 0xff; the value length was 1 byte and only String
  * header values were supported (no JSON conversion).
+ * <p>
+ * Since 1.3, headers may also be embedded in a binary format (see
+ * {@link EmbeddedHeadersFormat#binary}):
+ * {@code 0xff, 0xff, n(1), [ [hdrId(1), [lenHdr(1), hdr], type(1), value] ... ]}. A
+ * non-zero header id identifies one of the {@link BinderHeaders#STANDARD_HEADERS}, in
+ * which case the name is omitted; an id of 0 is followed by the name length and the
+ * name. The type indicates the encoding of the value: {@code String}, {@link MimeType},
+ * JSON and {@code byte[]} values are prefixed by their length (int), while
+ * {@code Integer}, {@code Long}, {@code Boolean} and {@link UUID} values have a fixed
+ * size. All three formats are detected automatically when extracting headers.
+ * <p>
+ * When extracting headers, JSON, String, MimeType and byte[] values are decoded only when
+ * they are first accessed.
  *
  * @author Eric Bottard
  * @author Gary Russell
@@ -51,6 +68,45 @@ public abstract class EmbeddedHeaderUtils {
 
 	private static final Jackson2JsonObjectMapper objectMapper = new Jackson2JsonObjectMapper();
 
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Header names that are encoded as a single byte in the binary format, indexed by id.
+	 * The ids are part of the wire format, so new entries must only be appended.
+	 */
+	private static final String[] BINARY_HEADER_DICTIONARY = new String[] {
+			null,
+			IntegrationMessageHeaderAccessor.CORRELATION_ID,
+			IntegrationMessageHeaderAccessor.SEQUENCE_SIZE,
+			IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER,
+			MessageHeaders.CONTENT_TYPE,
+			BinderHeaders.BINDER_ORIGINAL_CONTENT_TYPE
+	};
+
+	private static final Map<String, Byte> BINARY_HEADER_IDS = new HashMap<>();
+
+	private static final byte TYPE_STRING = 1;
+
+	private static final byte TYPE_INTEGER = 2;
+
+	private static final byte TYPE_LONG = 3;
+
+	private static final byte TYPE_BOOLEAN = 4;
+
+	private static final byte TYPE_UUID = 5;
+
+	private static final byte TYPE_MIME_TYPE = 6;
+
+	private static final byte TYPE_BYTES = 7;
+
+	private static final byte TYPE_JSON = 8;
+
+	static {
+		for (int i = 1; i < BINARY_HEADER_DICTIONARY.length; i++) {
+			BINARY_HEADER_IDS.put(BINARY_HEADER_DICTIONARY[i], (byte) i);
+		}
+	}
+
 	public static String decodeExceptionMessage(Message<?> requestMessage) {
 		return "Could not convert message: " + DatatypeConverter.printHexBinary((byte[]) requestMessage.getPayload());
 	}
@@ -60,38 +116,118 @@ public abstract class EmbeddedHeaderUtils {
 	 * been embedded into the new message payload.
 	 */
 	public static byte[] embedHeaders(MessageValues original, String... headers) throws Exception {
-		byte[][] headerValues = new byte[headers.length][];
-		int n = 0;
-		int headerCount = 0;
-		int headersLength = 0;
-		for (String header : headers) {
-			Object value = original.get(header) == null ? null : original.get(header);
+		return embedHeaders(original, EmbeddedHeadersFormat.json, headers);
+	}
+
+	/**
+	 * Return a new message where some of the original headers of {@code original} have
+	 * been embedded into the new message payload, using the given format.
+	 * @since 1.3
+	 */
+	public static byte[] embedHeaders(MessageValues original, EmbeddedHeadersFormat format, String... headers)
+			throws Exception {
+		return serializeAndEmbedHeaders(original, null, format, headers);
+	}
+
+	/**
+	 * Serialize the payload of {@code original} and embed some of its headers, in a
+	 * single pass: the size of the embedded headers is computed first and the payload is
+	 * serialized directly after them, so that only one array is allocated for the new
+	 * payload.
+	 *
+	 * @param original the message values, with a payload that is not serialized yet
+	 * @param codec the codec used for serializing payloads that are neither
+	 * {@code byte[]} nor {@code String}
+	 * @param format the format of the embedded headers
+	 * @param headers the names of the headers to embed
+	 * @return the new payload
+	 * @since 1.3
+	 * @see MessageSerializationUtils#serializePayload(Object, Codec)
+	 */
+	public static byte[] serializeAndEmbedHeaders(MessageValues original, Codec codec, EmbeddedHeadersFormat format,
+			String... headers) throws Exception {
+		HeaderRegion headerRegion = EmbeddedHeadersFormat.binary.equals(format) ? binaryHeaderRegion(original, headers)
+				: jsonHeaderRegion(original, headers);
+		byte[] newPayload = MessageSerializationUtils.serializePayload(original.getPayload(), codec,
+				headerRegion.length);
+		headerRegion.write(ByteBuffer.wrap(newPayload));
+		return newPayload;
+	}
+
+	private static HeaderRegion jsonHeaderRegion(Map<String, Object> original, String... headers) throws Exception {
+		HeaderRegion headerRegion = new HeaderRegion(headers, false);
+		// 0xff, n(1), [ [lenHdr(1), hdr, lenValue(4), value] ... ]
+		headerRegion.length = 2;
+		for (int i = 0; i < headers.length; i++) {
+			Object value = original.get(headers[i]);
 			if (value != null) {
-				String json = objectMapper.toJson(value);
-				headerValues[n] = json.getBytes("UTF-8");
-				headerCount++;
-				headersLength += header.length() + headerValues[n++].length;
-			}
-			else {
-				headerValues[n++] = null;
+				headerRegion.headerCount++;
+				headerRegion.nameBytes[i] = headers[i].getBytes(UTF_8);
+				headerRegion.types[i] = TYPE_JSON;
+				headerRegion.encodedValues[i] = objectMapper.toJson(value).getBytes(UTF_8);
+				headerRegion.length += 5 + headerRegion.nameBytes[i].length + headerRegion.encodedValues[i].length;
 			}
 		}
-		// 0xff, n(1), [ [lenHdr(1), hdr, lenValue(4), value] ... ]
-		byte[] newPayload = new byte[((byte[]) original.getPayload()).length + headersLength + headerCount * 5 + 2];
-		ByteBuffer byteBuffer = ByteBuffer.wrap(newPayload);
-		byteBuffer.put((byte) 0xff); // signal new format
-		byteBuffer.put((byte) headerCount);
+		return headerRegion;
+	}
+
+	private static HeaderRegion binaryHeaderRegion(Map<String, Object> original, String... headers)
+			throws Exception {
+		HeaderRegion headerRegion = new HeaderRegion(headers, true);
+		// 0xff, 0xff, n(1), [ [hdrId(1), [lenHdr(1), hdr], type(1), value] ... ]
+		headerRegion.length = 3;
 		for (int i = 0; i < headers.length; i++) {
-			if (headerValues[i] != null) {
-				byteBuffer.put((byte) headers[i].length());
-				byteBuffer.put(headers[i].getBytes("UTF-8"));
-				byteBuffer.putInt(headerValues[i].length);
-				byteBuffer.put(headerValues[i]);
+			Object value = original.get(headers[i]);
+			if (value == null) {
+				continue;
+			}
+			headerRegion.headerCount++;
+			headerRegion.values[i] = value;
+			if (BINARY_HEADER_IDS.containsKey(headers[i])) {
+				headerRegion.length += 1;
+			}
+			else {
+				headerRegion.nameBytes[i] = headers[i].getBytes(UTF_8);
+				headerRegion.length += 2 + headerRegion.nameBytes[i].length;
+			}
+			if (value instanceof String) {
+				headerRegion.types[i] = TYPE_STRING;
+				headerRegion.encodedValues[i] = ((String) value).getBytes(UTF_8);
+			}
+			else if (value instanceof Integer) {
+				headerRegion.types[i] = TYPE_INTEGER;
+				headerRegion.length += 4;
+			}
+			else if (value instanceof Long) {
+				headerRegion.types[i] = TYPE_LONG;
+				headerRegion.length += 8;
+			}
+			else if (value instanceof Boolean) {
+				headerRegion.types[i] = TYPE_BOOLEAN;
+				headerRegion.length += 1;
+			}
+			else if (value instanceof UUID) {
+				headerRegion.types[i] = TYPE_UUID;
+				headerRegion.length += 16;
+			}
+			else if (value instanceof MimeType) {
+				headerRegion.types[i] = TYPE_MIME_TYPE;
+				headerRegion.encodedValues[i] = value.toString().getBytes(UTF_8);
+			}
+			else if (value instanceof byte[]) {
+				headerRegion.types[i] = TYPE_BYTES;
+				headerRegion.encodedValues[i] = (byte[]) value;
+			}
+			else {
+				headerRegion.types[i] = TYPE_JSON;
+				headerRegion.encodedValues[i] = objectMapper.toJson(value).getBytes(UTF_8);
+			}
+			headerRegion.length += 1;
+			if (headerRegion.encodedValues[i] != null) {
+				headerRegion.length += 4 + headerRegion.encodedValues[i].length;
 			}
 		}
-
-		byteBuffer.put((byte[]) original.getPayload());
-		return byteBuffer.array();
+		return headerRegion;
 	}
 
 	/**
@@ -104,32 +240,73 @@ public abstract class EmbeddedHeaderUtils {
 	 * copied
 	 */
 	public static MessageValues extractHeaders(Message<byte[]> message, boolean copyRequestHeaders) throws Exception {
-		return extractHeaders(message.getPayload(), copyRequestHeaders, message.getHeaders());
+		return extractHeaders(message.getPayload(), copyRequestHeaders, message.getHeaders(), false);
+	}
+
+	/**
+	 * Return a message where headers, that were originally embedded into the payload,
+	 * have been promoted back to actual headers. If {@code payloadView} is true, the
+	 * payload of the result is a read-only {@link ByteBuffer} view of the original
+	 * payload that excludes the embedded headers, so that the payload bytes are not
+	 * copied; use {@link #materializePayload(Object)} if a {@code byte[]} is needed.
+	 *
+	 * @param message the message to extract headers
+	 * @param copyRequestHeaders boolean value to specify if the request headers should be
+	 * copied
+	 * @param payloadView whether to return the payload as a {@link ByteBuffer} view
+	 * @since 1.3
+	 */
+	public static MessageValues extractHeaders(Message<byte[]> message, boolean copyRequestHeaders,
+			boolean payloadView) throws Exception {
+		return extractHeaders(message.getPayload(), copyRequestHeaders, message.getHeaders(), payloadView);
+	}
+
+	/**
+	 * Return the content of a payload as a byte array. {@link ByteBuffer} payloads, such
+	 * as the views created by {@link #extractHeaders(Message, boolean, boolean)}, are
+	 * copied; other payloads are returned as-is.
+	 *
+	 * @param payload the payload
+	 * @return the payload bytes, or the original payload if it is not a {@link ByteBuffer}
+	 * @since 1.3
+	 */
+	public static Object materializePayload(Object payload) {
+		if (payload instanceof ByteBuffer) {
+			ByteBuffer view = ((ByteBuffer) payload).duplicate();
+			byte[] bytes = new byte[view.remaining()];
+			view.get(bytes);
+			return bytes;
+		}
+		return payload;
 	}
 
 	private static MessageValues extractHeaders(byte[] payload, boolean copyRequestHeaders,
-			MessageHeaders requestHeaders) throws Exception {
+			MessageHeaders requestHeaders, boolean payloadView) throws Exception {
 		ByteBuffer byteBuffer = ByteBuffer.wrap(payload);
 		int headerCount = byteBuffer.get() & 0xff;
 		if (headerCount < 255) {
-			return oldExtractHeaders(byteBuffer, payload, headerCount, copyRequestHeaders, requestHeaders);
+			return oldExtractHeaders(byteBuffer, payload, headerCount, copyRequestHeaders, requestHeaders,
+					payloadView);
+		}
+		headerCount = byteBuffer.get() & 0xff;
+		if (headerCount == 255) {
+			return extractBinaryHeaders(byteBuffer, payload, copyRequestHeaders, requestHeaders, payloadView);
 		}
 		else {
-			headerCount = byteBuffer.get() & 0xff;
-			Map<String, Object> headers = new HashMap<String, Object>();
+			EmbeddedHeadersMap headers = new EmbeddedHeadersMap();
+			int headersStart = byteBuffer.position();
 			for (int i = 0; i < headerCount; i++) {
 				int len = byteBuffer.get() & 0xff;
 				String headerName = new String(payload, byteBuffer.position(), len, "UTF-8");
 				byteBuffer.position(byteBuffer.position() + len);
 				len = byteBuffer.getInt();
-				String headerValue = new String(payload, byteBuffer.position(), len, "UTF-8");
-				Object headerContent = objectMapper.fromJson(headerValue, Object.class);
-				headers.put(headerName, headerContent);
+				// the JSON value is parsed only if the header is accessed
+				headers.putEncoded(headerName, payload, byteBuffer.position(), len, TYPE_JSON);
 				byteBuffer.position(byteBuffer.position() + len);
 			}
-			byte[] newPayload = new byte[byteBuffer.remaining()];
-			byteBuffer.get(newPayload);
-			return buildMessageValues(newPayload, headers, copyRequestHeaders, requestHeaders);
+			headers.detach(payload, headersStart, byteBuffer.position());
+			return buildMessageValues(remainingPayload(byteBuffer, payloadView), headers, copyRequestHeaders,
+					requestHeaders);
 		}
 	}
 
@@ -143,12 +320,83 @@ public abstract class EmbeddedHeaderUtils {
 	 * @throws Exception
 	 */
 	public static MessageValues extractHeaders(byte[] payload) throws Exception {
-		return extractHeaders(payload, false, null);
+		return extractHeaders(payload, false, null, false);
+	}
+
+	private static MessageValues extractBinaryHeaders(ByteBuffer byteBuffer, byte[] payload,
+			boolean copyRequestHeaders, MessageHeaders requestHeaders, boolean payloadView) throws Exception {
+		int headerCount = byteBuffer.get() & 0xff;
+		EmbeddedHeadersMap headers = new EmbeddedHeadersMap();
+		int headersStart = byteBuffer.position();
+		for (int i = 0; i < headerCount; i++) {
+			String headerName;
+			int headerId = byteBuffer.get() & 0xff;
+			if (headerId == 0) {
+				int len = byteBuffer.get() & 0xff;
+				headerName = new String(payload, byteBuffer.position(), len, UTF_8);
+				byteBuffer.position(byteBuffer.position() + len);
+			}
+			else if (headerId < BINARY_HEADER_DICTIONARY.length) {
+				headerName = BINARY_HEADER_DICTIONARY[headerId];
+			}
+			else {
+				throw new IllegalArgumentException("Unknown embedded header id: " + headerId);
+			}
+			byte type = byteBuffer.get();
+			// fixed size values are cheaper to decode than to hold in encoded form
+			switch (type) {
+			case TYPE_INTEGER:
+				headers.put(headerName, byteBuffer.getInt());
+				break;
+			case TYPE_LONG:
+				headers.put(headerName, byteBuffer.getLong());
+				break;
+			case TYPE_BOOLEAN:
+				headers.put(headerName, byteBuffer.get() != 0);
+				break;
+			case TYPE_UUID:
+				headers.put(headerName, new UUID(byteBuffer.getLong(), byteBuffer.getLong()));
+				break;
+			case TYPE_STRING:
+			case TYPE_MIME_TYPE:
+			case TYPE_JSON:
+			case TYPE_BYTES:
+				int len = byteBuffer.getInt();
+				headers.putEncoded(headerName, payload, byteBuffer.position(), len, type);
+				byteBuffer.position(byteBuffer.position() + len);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown embedded header type: " + type);
+			}
+		}
+		headers.detach(payload, headersStart, byteBuffer.position());
+		return buildMessageValues(remainingPayload(byteBuffer, payloadView), headers, copyRequestHeaders,
+				requestHeaders);
+	}
+
+	/**
+	 * Decode a variable length header value, extracted by
+	 * {@link #extractHeaders(Message, boolean)}.
+	 */
+	static Object decodeValue(byte[] source, int offset, int length, byte type) throws Exception {
+		switch (type) {
+		case TYPE_STRING:
+			return new String(source, offset, length, UTF_8);
+		case TYPE_MIME_TYPE:
+			return MimeType.valueOf(new String(source, offset, length, UTF_8));
+		case TYPE_JSON:
+			return objectMapper.fromJson(new String(source, offset, length, UTF_8), Object.class);
+		case TYPE_BYTES:
+			return Arrays.copyOfRange(source, offset, offset + length);
+		default:
+			throw new IllegalArgumentException("Unknown embedded header type: " + type);
+		}
 	}
 
 	private static MessageValues oldExtractHeaders(ByteBuffer byteBuffer, byte[] bytes, int headerCount,
-			boolean copyRequestHeaders, MessageHeaders requestHeaders) throws UnsupportedEncodingException {
-		Map<String, Object> headers = new HashMap<String, Object>();
+			boolean copyRequestHeaders, MessageHeaders requestHeaders, boolean payloadView)
+			throws UnsupportedEncodingException {
+		EmbeddedHeadersMap headers = new EmbeddedHeadersMap();
 		for (int i = 0; i < headerCount; i++) {
 			int len = byteBuffer.get();
 			String headerName = new String(bytes, byteBuffer.position(), len, "UTF-8");
@@ -164,12 +412,20 @@ public abstract class EmbeddedHeaderUtils {
 				headers.put(headerName, headerValue);
 			}
 		}
+		return buildMessageValues(remainingPayload(byteBuffer, payloadView), headers, copyRequestHeaders,
+				requestHeaders);
+	}
+
+	private static Object remainingPayload(ByteBuffer byteBuffer, boolean payloadView) {
+		if (payloadView) {
+			return byteBuffer.slice().asReadOnlyBuffer();
+		}
 		byte[] newPayload = new byte[byteBuffer.remaining()];
 		byteBuffer.get(newPayload);
-		return buildMessageValues(newPayload, headers, copyRequestHeaders, requestHeaders);
+		return newPayload;
 	}
 
-	private static MessageValues buildMessageValues(byte[] payload, Map<String, Object> headers,
+	private static MessageValues buildMessageValues(Object payload, EmbeddedHeadersMap headers,
 			boolean copyRequestHeaders, MessageHeaders requestHeaders) {
 		MessageValues messageValues = new MessageValues(payload, headers);
 		if (copyRequestHeaders && requestHeaders != null) {
@@ -193,4 +449,84 @@ public abstract class EmbeddedHeaderUtils {
 		return headersToMap;
 	}
 
+	/**
+	 * The encoded form of the headers to embed, computed before the new payload is
+	 * allocated, so that the payload can be sized exactly. Variable length values are
+	 * encoded up-front.
+	 */
+	private static final class HeaderRegion {
+
+		private final String[] headers;
+
+		private final boolean binary;
+
+		private final Object[] values;
+
+		private final byte[][] nameBytes;
+
+		private final byte[] types;
+
+		private final byte[][] encodedValues;
+
+		private int headerCount;
+
+		private int length;
+
+		private HeaderRegion(String[] headers, boolean binary) {
+			this.headers = headers;
+			this.binary = binary;
+			this.values = new Object[headers.length];
+			this.nameBytes = new byte[headers.length][];
+			this.types = new byte[headers.length];
+			this.encodedValues = new byte[headers.length][];
+		}
+
+		private void write(ByteBuffer byteBuffer) {
+			byteBuffer.put((byte) 0xff); // signal new format
+			if (this.binary) {
+				byteBuffer.put((byte) 0xff); // signal binary format
+			}
+			byteBuffer.put((byte) this.headerCount);
+			for (int i = 0; i < this.headers.length; i++) {
+				if (this.types[i] == 0) {
+					continue;
+				}
+				if (!this.binary) {
+					byteBuffer.put((byte) this.nameBytes[i].length);
+					byteBuffer.put(this.nameBytes[i]);
+					byteBuffer.putInt(this.encodedValues[i].length);
+					byteBuffer.put(this.encodedValues[i]);
+					continue;
+				}
+				if (this.nameBytes[i] == null) {
+					byteBuffer.put(BINARY_HEADER_IDS.get(this.headers[i]));
+				}
+				else {
+					byteBuffer.put((byte) 0);
+					byteBuffer.put((byte) this.nameBytes[i].length);
+					byteBuffer.put(this.nameBytes[i]);
+				}
+				byteBuffer.put(this.types[i]);
+				switch (this.types[i]) {
+				case TYPE_INTEGER:
+					byteBuffer.putInt((Integer) this.values[i]);
+					break;
+				case TYPE_LONG:
+					byteBuffer.putLong((Long) this.values[i]);
+					break;
+				case TYPE_BOOLEAN:
+					byteBuffer.put((byte) (((Boolean) this.values[i]) ? 1 : 0));
+					break;
+				case TYPE_UUID:
+					byteBuffer.putLong(((UUID) this.values[i]).getMostSignificantBits());
+					byteBuffer.putLong(((UUID) this.values[i]).getLeastSignificantBits());
+					break;
+				default:
+					byteBuffer.putInt(this.encodedValues[i].length);
+					byteBuffer.put(this.encodedValues[i]);
+				}
+			}
+		}
+	}
+
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+/**
+ * The wire format used for embedding headers into the payload when the
+ * {@link HeaderMode#embeddedHeaders} header mode is in effect. Consumers detect the
+ * format automatically, so this setting only affects producers.
+ *
+ * @since 1.3
+ * @see EmbeddedHeaderUtils
+ */
+public enum EmbeddedHeadersFormat {
+
+	/**
+	 * Header values are encoded as JSON. This format can be read by all 1.2+ consumers.
+	 */
+	json,
+
+	/**
+	 * Header values are encoded in a compact, typed binary form and standard header names
+	 * are replaced by single-byte identifiers. Requires 1.3+ consumers.
+	 */
+	binary
+}
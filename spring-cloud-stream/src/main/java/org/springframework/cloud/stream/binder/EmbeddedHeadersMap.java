@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A header map for headers extracted by {@link EmbeddedHeaderUtils}, that keeps the
+ * values which are expensive to decode in their encoded form until they are first
+ * accessed. Header names are always decoded eagerly. Once all the headers are added, the
+ * encoded values are moved to a copy of the region of the frame holding them, so that the
+ * map does not keep the whole frame reachable. Not thread-safe.
+ *
+ * @since 1.3
+ * @see LazyMessageHeaders
+ */
+final class EmbeddedHeadersMap extends AbstractMap<String, Object> {
+
+	private final Map<String, Object> headers;
+
+	EmbeddedHeadersMap() {
+		this.headers = new HashMap<>();
+	}
+
+	private EmbeddedHeadersMap(Map<String, Object> headers) {
+		this.headers = new HashMap<>(headers);
+	}
+
+	/**
+	 * Add a header whose value is decoded on first access.
+	 */
+	void putEncoded(String name, byte[] source, int offset, int length, byte type) {
+		this.headers.put(name, new EncodedValue(source, offset, length, type));
+	}
+
+	/**
+	 * Move the pending values to a copy of the region of the source they were added from,
+	 * so that the source, including the payload, is not retained by this map.
+	 * @param source the source the pending values were added from
+	 * @param from the start of the region holding the pending values
+	 * @param to the end of the region holding the pending values
+	 */
+	void detach(byte[] source, int from, int to) {
+		byte[] region = null;
+		for (Entry<String, Object> entry : this.headers.entrySet()) {
+			if (entry.getValue() instanceof EncodedValue) {
+				if (region == null) {
+					region = Arrays.copyOfRange(source, from, to);
+				}
+				entry.setValue(((EncodedValue) entry.getValue()).relocate(region, from));
+			}
+		}
+	}
+
+	/**
+	 * Return a copy of this map which does not decode any of the pending values.
+	 */
+	EmbeddedHeadersMap copy() {
+		return new EmbeddedHeadersMap(this.headers);
+	}
+
+	@Override
+	public Object get(Object key) {
+		Object value = this.headers.get(key);
+		if (value instanceof EncodedValue) {
+			value = ((EncodedValue) value).decode((String) key);
+			this.headers.put((String) key, value);
+		}
+		return value;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return this.headers.containsKey(key);
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		Object previous = get(key);
+		this.headers.put(key, value);
+		return previous;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		Object previous = get(key);
+		this.headers.remove(key);
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return this.headers.size();
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return this.headers.keySet();
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		decodeAll();
+		return this.headers.entrySet();
+	}
+
+	/**
+	 * Decode all the pending values.
+	 */
+	void decodeAll() {
+		for (Entry<String, Object> entry : this.headers.entrySet()) {
+			if (entry.getValue() instanceof EncodedValue) {
+				entry.setValue(((EncodedValue) entry.getValue()).decode(entry.getKey()));
+			}
+		}
+	}
+
+	private static final class EncodedValue {
+
+		private final byte[] source;
+
+		private final int offset;
+
+		private final int length;
+
+		private final byte type;
+
+		private EncodedValue(byte[] source, int offset, int length, byte type) {
+			this.source = source;
+			this.offset = offset;
+			this.length = length;
+			this.type = type;
+		}
+
+		private EncodedValue relocate(byte[] region, int regionOffset) {
+			return new EncodedValue(region, this.offset - regionOffset, this.length, this.type);
+		}
+
+		private Object decode(String name) {
+			try {
+				return EmbeddedHeaderUtils.decodeValue(this.source, this.offset, this.length, this.type);
+			}
+			catch (Exception e) {
+				throw new IllegalStateException("Could not decode embedded header '" + name + "'", e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+/**
+ * A {@link PartitionSelectorStrategy} based on the jump consistent hash algorithm
+ * (Lamping and Veach, "A Fast, Minimal Memory, Consistent Hash Algorithm"). When the
+ * partition count grows from {@code n} to {@code n + 1}, only about {@code 1/(n + 1)} of
+ * the keys move, and all of them to the new partition.
+ * <p>
+ * Keys are hashed with MurmurHash3 instead of {@link Object#hashCode()}, see
+ * {@link PartitionKeyHashing} for how the different key types are hashed.
+ *
+ * @since 1.3
+ */
+public class JumpHashPartitionSelector implements PartitionSelectorStrategy {
+
+	@Override
+	public int selectPartition(Object key, int partitionCount) {
+		return jumpHash(PartitionKeyHashing.hashKey(key), partitionCount);
+	}
+
+	static int jumpHash(long key, int buckets) {
+		long b = -1;
+		long j = 0;
+		while (j < buckets) {
+			b = j;
+			key = key * 2862933555777941757L + 1;
+			j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+		}
+		return (int) b;
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+import java.io.ObjectStreamException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.messaging.MessageHeaders;
+
+/**
+ * {@link MessageHeaders} backed by an {@link EmbeddedHeadersMap}, so that embedded header
+ * values that are never read by the application are never decoded. Operations that
+ * expose all the values (e.g. {@link #entrySet()}, or copying the headers into a new
+ * message) decode all pending values.
+ * <p>
+ * Instances are serialized as regular {@link MessageHeaders}. Since
+ * {@link MessageHeaders#equals(Object)} compares the internal maps, equality with other
+ * {@link MessageHeaders} instances must be tested on this instance.
+ *
+ * @since 1.3
+ */
+@SuppressWarnings("serial")
+final class LazyMessageHeaders extends MessageHeaders {
+
+	private final EmbeddedHeadersMap headers;
+
+	LazyMessageHeaders(EmbeddedHeadersMap headers) {
+		super(null, ID_VALUE_NONE, -1L);
+		this.headers = headers;
+		this.headers.put(ID, getIdGenerator().generateId());
+		this.headers.put(TIMESTAMP, System.currentTimeMillis());
+	}
+
+	@Override
+	protected Map<String, Object> getRawHeaders() {
+		synchronized (this.headers) {
+			this.headers.decodeAll();
+			return this.headers;
+		}
+	}
+
+	@Override
+	public UUID getId() {
+		return get(ID, UUID.class);
+	}
+
+	@Override
+	public Long getTimestamp() {
+		return get(TIMESTAMP, Long.class);
+	}
+
+	@Override
+	public Object getReplyChannel() {
+		return get(REPLY_CHANNEL);
+	}
+
+	@Override
+	public Object getErrorChannel() {
+		return get(ERROR_CHANNEL);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Class<T> type) {
+		Object value = get(key);
+		if (value == null) {
+			return null;
+		}
+		if (!type.isAssignableFrom(value.getClass())) {
+			throw new IllegalArgumentException("Incorrect type specified for header '" +
+					key + "'. Expected [" + type + "] but actual type is [" + value.getClass() + "]");
+		}
+		return (T) value;
+	}
+
+	@Override
+	public Object get(Object key) {
+		synchronized (this.headers) {
+			return this.headers.get(key);
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		synchronized (this.headers) {
+			return this.headers.containsKey(key);
+		}
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		return decodeAll().containsValue(value);
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return decodeAll().entrySet();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public Set<String> keySet() {
+		synchronized (this.headers) {
+			return Collections.unmodifiableSet(this.headers.keySet());
+		}
+	}
+
+	@Override
+	public int size() {
+		synchronized (this.headers) {
+			return this.headers.size();
+		}
+	}
+
+	@Override
+	public Collection<Object> values() {
+		return decodeAll().values();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return this == other
+				|| (other instanceof MessageHeaders && decodeAll().equals(new HashMap<>((MessageHeaders) other)));
+	}
+
+	@Override
+	public int hashCode() {
+		return decodeAll().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return decodeAll().toString();
+	}
+
+	private Object writeReplace() throws ObjectStreamException {
+		return new DecodedMessageHeaders(decodeAll());
+	}
+
+	private Map<String, Object> decodeAll() {
+		synchronized (this.headers) {
+			this.headers.decodeAll();
+			return Collections.unmodifiableMap(this.headers);
+		}
+	}
+
+	private static final class DecodedMessageHeaders extends MessageHeaders {
+
+		private DecodedMessageHeaders(Map<String, Object> headers) {
+			super(headers, (UUID) headers.get(ID), (Long) headers.get(TIMESTAMP));
+		}
+	}
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A mutable header map on top of the immutable headers of a message, which records only
+ * the headers that are added, modified or removed, instead of copying all the original
+ * headers upfront. Entries of unchanged original headers returned by {@link #entrySet()}
+ * are read-only. Not thread-safe.
+ *
+ * @since 1.3
+ * @see MessageValues
+ */
+final class MessageHeadersOverlay extends AbstractMap<String, Object> {
+
+	private static final Object REMOVED = new Object();
+
+	private final Map<String, Object> original;
+
+	private Map<String, Object> changes;
+
+	MessageHeadersOverlay(Map<String, Object> original) {
+		this.original = original;
+	}
+
+	/**
+	 * Return whether any of the headers has a {@code null} value. Such headers are
+	 * removed when building a message with a
+	 * {@link org.springframework.integration.support.MessageBuilder}.
+	 */
+	boolean containsNullValues() {
+		if (this.changes != null && this.changes.containsValue(null)) {
+			return true;
+		}
+		return this.original.containsValue(null);
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (this.changes != null && this.changes.containsKey(key)) {
+			Object value = this.changes.get(key);
+			return value == REMOVED ? null : value;
+		}
+		return this.original.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (this.changes != null && this.changes.containsKey(key)) {
+			return this.changes.get(key) != REMOVED;
+		}
+		return this.original.containsKey(key);
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		Object previous = get(key);
+		changes().put(key, value);
+		return previous;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		Object previous = get(key);
+		if (this.original.containsKey(key)) {
+			changes().put((String) key, REMOVED);
+		}
+		else if (this.changes != null) {
+			this.changes.remove(key);
+		}
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		this.changes = new HashMap<>();
+		for (String key : this.original.keySet()) {
+			this.changes.put(key, REMOVED);
+		}
+	}
+
+	@Override
+	public int size() {
+		int size = this.original.size();
+		if (this.changes != null) {
+			for (Entry<String, Object> change : this.changes.entrySet()) {
+				boolean originalKey = this.original.containsKey(change.getKey());
+				if (change.getValue() == REMOVED) {
+					if (originalKey) {
+						size--;
+					}
+				}
+				else if (!originalKey) {
+					size++;
+				}
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new OverlayIterator();
+			}
+
+			@Override
+			public int size() {
+				return MessageHeadersOverlay.this.size();
+			}
+
+		};
+	}
+
+	private Map<String, Object> changes() {
+		if (this.changes == null) {
+			this.changes = new HashMap<>();
+		}
+		return this.changes;
+	}
+
+	/**
+	 * Iterates over the unchanged original headers first, and then over the added or
+	 * modified ones.
+	 */
+	private final class OverlayIterator implements Iterator<Entry<String, Object>> {
+
+		private final Iterator<Entry<String, Object>> originalIterator = original.entrySet().iterator();
+
+		private Iterator<Entry<String, Object>> changesIterator;
+
+		private Entry<String, Object> next;
+
+		private Entry<String, Object> current;
+
+		private boolean currentIsChange;
+
+		@Override
+		public boolean hasNext() {
+			if (this.next != null) {
+				return true;
+			}
+			while (this.originalIterator.hasNext()) {
+				Entry<String, Object> entry = this.originalIterator.next();
+				if (changes == null || !changes.containsKey(entry.getKey())) {
+					this.next = new SimpleImmutableEntry<>(entry.getKey(), entry.getValue());
+					return true;
+				}
+			}
+			if (changes == null) {
+				return false;
+			}
+			if (this.changesIterator == null) {
+				this.changesIterator = changes.entrySet().iterator();
+			}
+			while (this.changesIterator.hasNext()) {
+				Entry<String, Object> entry = this.changesIterator.next();
+				if (entry.getValue() != REMOVED) {
+					this.next = entry;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public Entry<String, Object> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.current = this.next;
+			this.currentIsChange = this.changesIterator != null;
+			this.next = null;
+			return this.current;
+		}
+
+		@Override
+		public void remove() {
+			if (this.current == null) {
+				throw new IllegalStateException();
+			}
+			if (this.currentIsChange) {
+				// replacing a value is not a structural modification of the changes
+				this.current.setValue(REMOVED);
+			}
+			else if (this.changesIterator == null) {
+				changes().put(this.current.getKey(), REMOVED);
+			}
+			else {
+				throw new IllegalStateException("Cannot remove an entry after the iteration moved past it");
+			}
+			this.current = null;
+		}
+	}
+
+}
@@ -19,9 +19,17 @@ package org.springframework.cloud.stream.binder;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
 import org.springframework.core.serializer.support.SerializationFailedException;
 import org.springframework.integration.codec.Codec;
 import org.springframework.messaging.Message;
@@ -41,6 +49,22 @@ public abstract class MessageSerializationUtils {
 
 	private static final Map<String, Class<?>> payloadTypeCache = new ConcurrentHashMap<>();
 
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Buffers larger than this are not retained between serializations.
+	 */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+	private static final ThreadLocal<EncodingBuffer> encodingBuffer = new ThreadLocal<EncodingBuffer>() {
+
+		@Override
+		protected EncodingBuffer initialValue() {
+			return new EncodingBuffer();
+		}
+
+	};
+
 	/**
 	 * Serialize the message payload unless it is a byte array.
 	 *
@@ -49,6 +73,20 @@ public abstract class MessageSerializationUtils {
 	 * @return the Message with teh serialized payload
 	 */
 	public static MessageValues serializePayload(Message<?> message, Codec codec) {
+		MessageValues messageValues = withSerializedContentType(message);
+		messageValues.setPayload(serializePayload(message.getPayload(), codec));
+		return messageValues;
+	}
+
+	/**
+	 * Return the values of a message with the content type headers that
+	 * {@link #serializePayload(Message, Codec)} would set, but with the payload not
+	 * serialized yet.
+	 *
+	 * @param message the message with the payload to serialize
+	 * @return the message values
+	 */
+	static MessageValues withSerializedContentType(Message<?> message) {
 		Object originalPayload = message.getPayload();
 		Object originalContentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
 
@@ -56,9 +94,7 @@ public abstract class MessageSerializationUtils {
 		// CONTENT_TYPE Header otherwise
 		Object contentType = JavaClassMimeTypeUtils
 				.mimeTypeFromObject(originalPayload, ObjectUtils.nullSafeToString(originalContentType)).toString();
-		Object payload = serializePayload(originalPayload, codec);
 		MessageValues messageValues = new MessageValues(message);
-		messageValues.setPayload(payload);
 		messageValues.put(MessageHeaders.CONTENT_TYPE, contentType);
 		if (originalContentType != null && !originalContentType.toString().equals(contentType.toString())) {
 			messageValues.put(BinderHeaders.BINDER_ORIGINAL_CONTENT_TYPE, originalContentType.toString());
@@ -79,19 +115,98 @@ public abstract class MessageSerializationUtils {
 			return (byte[]) originalPayload;
 		}
 		else {
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			try {
-				if (originalPayload instanceof String) {
-					return ((String) originalPayload).getBytes("UTF-8");
-				}
-				codec.encode(originalPayload, bos);
-				return bos.toByteArray();
+			return serializePayload(originalPayload, codec, 0);
+		}
+	}
+
+	/**
+	 * Serialize the payload object into a new byte array that starts with
+	 * {@code prefixLength} unused bytes, e.g. for embedding headers. The array is
+	 * allocated once, with the exact size required; {@code byte[]} payloads are always
+	 * copied.
+	 *
+	 * @param originalPayload the payload to serialize
+	 * @param codec the codec used for serialization
+	 * @param prefixLength the number of bytes to reserve before the payload
+	 * @return the byte array containing the serialized payload at {@code prefixLength}
+	 * @throws SerializationFailedException thrown when serialization failed
+	 */
+	static byte[] serializePayload(Object originalPayload, Codec codec, int prefixLength) {
+		if (originalPayload instanceof byte[]) {
+			byte[] payload = (byte[]) originalPayload;
+			byte[] result = new byte[prefixLength + payload.length];
+			System.arraycopy(payload, 0, result, prefixLength, payload.length);
+			return result;
+		}
+		if (originalPayload instanceof String) {
+			return encodeUtf8((String) originalPayload, prefixLength);
+		}
+		EncodingBuffer buffer = encodingBuffer.get();
+		if (buffer.inUse) {
+			// the codec serializes payloads recursively
+			buffer = new EncodingBuffer();
+		}
+		buffer.inUse = true;
+		try {
+			codec.encode(originalPayload, buffer);
+			return buffer.toByteArray(prefixLength);
+		}
+		catch (IOException e) {
+			throw new SerializationFailedException(
+					"unable to serialize payload [" + originalPayload.getClass().getName() + "]", e);
+		}
+		finally {
+			buffer.release();
+		}
+	}
+
+	/**
+	 * Encode a string in UTF-8, replacing malformed input as {@link String#getBytes} does,
+	 * into a new array of the exact size that starts with {@code prefixLength} unused
+	 * bytes.
+	 */
+	private static byte[] encodeUtf8(String value, int prefixLength) {
+		int length = utf8Length(value);
+		byte[] result = new byte[prefixLength + length];
+		ByteBuffer target = ByteBuffer.wrap(result, prefixLength, length);
+		CharsetEncoder encoder = UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		encoder.encode(CharBuffer.wrap(value), target, true);
+		encoder.flush(target);
+		return result;
+	}
+
+	/**
+	 * Return the number of bytes of a string encoded in UTF-8, as by
+	 * {@link String#getBytes}, without encoding it.
+	 * @param value the string
+	 * @return the number of bytes
+	 * @since 1.3
+	 */
+	public static int utf8Length(String value) {
+		int length = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				length++;
 			}
-			catch (IOException e) {
-				throw new SerializationFailedException(
-						"unable to serialize payload [" + originalPayload.getClass().getName() + "]", e);
+			else if (c < 0x800) {
+				length += 2;
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				length += 4;
+				i++;
+			}
+			else if (Character.isSurrogate(c)) {
+				// malformed surrogates are replaced by '?', as in String.getBytes()
+				length++;
+			}
+			else {
+				length += 3;
 			}
 		}
+		return length;
 	}
 
 	/**
@@ -105,7 +220,11 @@ public abstract class MessageSerializationUtils {
 	public static MessageValues deserializePayload(MessageValues messageValues, ContentTypeResolver contentTypeResolver,
 												Codec codec) {
 		Object originalPayload = messageValues.getPayload();
-		MimeType contentType = contentTypeResolver.resolve(new MessageHeaders(messageValues.getHeaders()));
+		// only expose the content type to the resolver, so that other headers are not decoded
+		Object contentTypeHeader = messageValues.get(MessageHeaders.CONTENT_TYPE);
+		MimeType contentType = contentTypeResolver.resolve(new MessageHeaders(contentTypeHeader != null
+				? Collections.singletonMap(MessageHeaders.CONTENT_TYPE, contentTypeHeader)
+				: Collections.<String, Object>emptyMap()));
 		Object payload = deserializePayload(originalPayload, contentType, codec);
 		if (payload != null) {
 			messageValues.setPayload(payload);
@@ -130,9 +249,43 @@ public abstract class MessageSerializationUtils {
 				return deserializePayload((byte[]) payload, contentType, payloadTypeCache, codec);
 			}
 		}
+		if (payload instanceof ByteBuffer) {
+			if (contentType == null || MimeTypeUtils.APPLICATION_OCTET_STREAM.equals(contentType)) {
+				return payload;
+			}
+			else {
+				// decode directly from the view, without copying the payload into a byte[] first
+				return deserializePayload((ByteBuffer) payload, contentType, codec);
+			}
+		}
 		return payload;
 	}
 
+	private static Object deserializePayload(ByteBuffer payload, MimeType contentType, Codec codec) {
+		if ("text".equalsIgnoreCase(contentType.getType()) || MimeTypeUtils.APPLICATION_JSON.equals(contentType)) {
+			return UTF_8.decode(payload.duplicate()).toString();
+		}
+		String className = JavaClassMimeTypeUtils.classNameFromMimeType(contentType);
+		try {
+			return codec.decode(new ByteBufferBackedInputStream(payload.duplicate()), resolvePayloadType(className));
+		} // catch all exceptions that could occur during de-serialization
+		catch (Exception e) {
+			String errorMessage = "Unable to deserialize [" + className + "] using the contentType [" + contentType
+					+ "] " + e.getMessage();
+			throw new SerializationFailedException(errorMessage, e);
+		}
+	}
+
+	private static Class<?> resolvePayloadType(String className) throws ClassNotFoundException {
+		// Cache types to avoid unnecessary ClassUtils.forName calls.
+		Class<?> targetType = payloadTypeCache.get(className);
+		if (targetType == null) {
+			targetType = ClassUtils.forName(className, null);
+			payloadTypeCache.put(className, targetType);
+		}
+		return targetType;
+	}
+
 	private static Object deserializePayload(byte[] bytes, MimeType contentType,
 									Map<String, Class<?>> payloadTypeCache, Codec codec) {
 		if ("text".equalsIgnoreCase(contentType.getType()) || MimeTypeUtils.APPLICATION_JSON.equals(contentType)) {
@@ -148,13 +301,7 @@ public abstract class MessageSerializationUtils {
 		else {
 			String className = JavaClassMimeTypeUtils.classNameFromMimeType(contentType);
 			try {
-				// Cache types to avoid unnecessary ClassUtils.forName calls.
-				Class<?> targetType = payloadTypeCache.get(className);
-				if (targetType == null) {
-					targetType = ClassUtils.forName(className, null);
-					payloadTypeCache.put(className, targetType);
-				}
-				return codec.decode(bytes, targetType);
+				return codec.decode(bytes, resolvePayloadType(className));
 			} // catch all exceptions that could occur during de-serialization
 			catch (Exception e) {
 				String errorMessage = "Unable to deserialize [" + className + "] using the contentType [" + contentType
@@ -163,4 +310,31 @@ public abstract class MessageSerializationUtils {
 			}
 		}
 	}
+
+	/**
+	 * A per-thread serialization buffer, which avoids growing a new buffer for every
+	 * serialized payload.
+	 */
+	private static final class EncodingBuffer extends ByteArrayOutputStream {
+
+		private boolean inUse;
+
+		private EncodingBuffer() {
+			super(1024);
+		}
+
+		private byte[] toByteArray(int prefixLength) {
+			byte[] result = new byte[prefixLength + this.count];
+			System.arraycopy(this.buf, 0, result, prefixLength, this.count);
+			return result;
+		}
+
+		private void release() {
+			this.inUse = false;
+			if (this.buf.length > MAX_RETAINED_BUFFER_SIZE) {
+				this.buf = new byte[1024];
+			}
+			reset();
+		}
+	}
 }
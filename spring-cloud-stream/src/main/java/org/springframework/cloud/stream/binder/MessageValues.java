@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,9 +21,12 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.springframework.integration.support.DefaultMessageBuilderFactory;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.support.MessageBuilderFactory;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
 import org.springframework.util.Assert;
 
 /**
@@ -34,24 +37,35 @@ import org.springframework.util.Assert;
  */
 public class MessageValues implements Map<String, Object> {
 
-	private Map<String, Object> headers = new HashMap<>();
+	private final Map<String, Object> headers;
 
 	private Object payload;
 
 	/**
-	 * Create an instance from a {@link Message}.
+	 * Create an instance from a {@link Message}. The headers of the message are not
+	 * copied; only the headers that are subsequently added, modified or removed are
+	 * tracked.
 	 * @param message the message
 	 */
 	public MessageValues(Message<?> message) {
 		this.payload = message.getPayload();
-		for (Map.Entry<String, Object> header : message.getHeaders().entrySet()) {
-			this.headers.put(header.getKey(), header.getValue());
-		}
+		this.headers = new MessageHeadersOverlay(message.getHeaders());
 	}
 
 	public MessageValues(Object payload, Map<String, Object> headers) {
 		this.payload = payload;
-		this.headers.putAll(headers);
+		this.headers = new HashMap<>(headers);
+	}
+
+	/**
+	 * Create an instance for headers extracted from an embedded headers payload. The
+	 * header map is used directly, so that its values are decoded only if accessed.
+	 * @param payload the payload
+	 * @param headers the extracted headers
+	 */
+	MessageValues(Object payload, EmbeddedHeadersMap headers) {
+		this.payload = payload;
+		this.headers = headers;
 	}
 
 	/**
@@ -81,6 +95,9 @@ public class MessageValues implements Map<String, Object> {
 	 * @return the Message
 	 */
 	public Message<?> toMessage(MessageBuilderFactory messageBuilderFactory) {
+		if (messageBuilderFactory.getClass() == DefaultMessageBuilderFactory.class) {
+			return toMessage();
+		}
 		return messageBuilderFactory.withPayload(this.payload).copyHeaders(this.headers).build();
 	}
 
@@ -90,6 +107,18 @@ public class MessageValues implements Map<String, Object> {
 	 * @return the Message
 	 */
 	public Message<?> toMessage() {
+		if (this.headers instanceof EmbeddedHeadersMap && !(this.payload instanceof Throwable)) {
+			// embedded header values that have not been accessed yet remain encoded
+			return new GenericMessage<>(this.payload,
+					new LazyMessageHeaders(((EmbeddedHeadersMap) this.headers).copy()));
+		}
+		if (this.headers instanceof MessageHeadersOverlay
+				&& !((MessageHeadersOverlay) this.headers).containsNullValues()) {
+			// the message headers are created directly from the overlay, which is copied
+			// only once
+			return this.payload instanceof Throwable ? new ErrorMessage((Throwable) this.payload, this.headers)
+					: new GenericMessage<>(this.payload, this.headers);
+		}
 		return MessageBuilder.withPayload(this.payload).copyHeaders(this.headers).build();
 	}
 
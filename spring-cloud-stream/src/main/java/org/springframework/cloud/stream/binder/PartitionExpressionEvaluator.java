@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+import java.lang.reflect.Method;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.SpelMessage;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.messaging.Message;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Evaluates a partition key or partition selector expression as cheaply as possible.
+ * <p>
+ * The expressions {@code payload}, {@code payload.<property>}, {@code headers['<name>']}
+ * and {@code hashCode()} are evaluated directly, without SpEL (properties are read
+ * through their getters, unless a custom property accessor of the evaluation context
+ * applies to the payload type). Other SpEL expressions are compiled after their first
+ * evaluation, and are interpreted if they cannot be compiled, or if the compiled form
+ * fails, e.g. because the types of the evaluated objects change.
+ *
+ * @since 1.3
+ */
+final class PartitionExpressionEvaluator {
+
+	private static final Log logger = LogFactory.getLog(PartitionExpressionEvaluator.class);
+
+	private static final Pattern PAYLOAD_PROPERTY = Pattern.compile("^\\s*payload\\.([A-Za-z_$][\\w$]*)\\s*$");
+
+	private static final Pattern HEADER = Pattern.compile("^\\s*headers\\s*\\[\\s*'([^']*)'\\s*\\]\\s*$");
+
+	private static final Pattern PAYLOAD = Pattern.compile("^\\s*payload\\s*$");
+
+	private static final Pattern HASH_CODE = Pattern.compile("^\\s*hashCode\\(\\s*\\)\\s*$");
+
+	private enum Shape {
+		PAYLOAD, PAYLOAD_PROPERTY, HEADER, HASH_CODE, SPEL
+	}
+
+	private final Expression expression;
+
+	private final EvaluationContext evaluationContext;
+
+	private final Shape shape;
+
+	private final String name;
+
+	private final PropertyGetterResolver getterResolver;
+
+	private volatile boolean compilationAttempted;
+
+	private volatile boolean compiled;
+
+	private volatile boolean direct = true;
+
+	PartitionExpressionEvaluator(Expression expression, EvaluationContext evaluationContext) {
+		this.evaluationContext = evaluationContext;
+		String expressionString = expression.getExpressionString();
+		Matcher matcher;
+		if (!(expression instanceof SpelExpression)) {
+			this.shape = Shape.SPEL;
+			this.name = null;
+			this.expression = expression;
+		}
+		else if (PAYLOAD.matcher(expressionString).matches()) {
+			this.shape = Shape.PAYLOAD;
+			this.name = null;
+			this.expression = expression;
+		}
+		else if ((matcher = PAYLOAD_PROPERTY.matcher(expressionString)).matches()) {
+			this.shape = Shape.PAYLOAD_PROPERTY;
+			this.name = matcher.group(1);
+			this.expression = compilableExpression(expressionString);
+		}
+		else if ((matcher = HEADER.matcher(expressionString)).matches()) {
+			this.shape = Shape.HEADER;
+			this.name = matcher.group(1);
+			this.expression = expression;
+		}
+		else if (HASH_CODE.matcher(expressionString).matches()) {
+			this.shape = Shape.HASH_CODE;
+			this.name = null;
+			this.expression = expression;
+		}
+		else {
+			this.shape = Shape.SPEL;
+			this.name = null;
+			this.expression = compilableExpression(expressionString);
+		}
+		this.getterResolver = this.shape == Shape.PAYLOAD_PROPERTY
+				? new PropertyGetterResolver(this.name, evaluationContext) : null;
+	}
+
+	/**
+	 * Evaluate the expression against the given root object.
+	 * @param root the root object (the message for the key expression, the key for the
+	 * selector expression)
+	 * @param resultType the required result type, or {@code null} if any type is allowed
+	 * @return the result
+	 */
+	<T> T getValue(Object root, Class<T> resultType) {
+		switch (this.shape) {
+		case PAYLOAD:
+			return convert(((Message<?>) root).getPayload(), resultType);
+		case HEADER:
+			return convert(((Message<?>) root).getHeaders().get(this.name), resultType);
+		case HASH_CODE:
+			return convert(root.hashCode(), resultType);
+		case PAYLOAD_PROPERTY:
+			Object payload = ((Message<?>) root).getPayload();
+			Method getter = this.getterResolver.getGetter(payload.getClass());
+			boolean direct = getter != null;
+			if (this.direct != direct) {
+				this.direct = direct;
+			}
+			if (direct) {
+				return convert(ReflectionUtils.invokeMethod(getter, payload), resultType);
+			}
+			return evaluate(root, resultType);
+		default:
+			return evaluate(root, resultType);
+		}
+	}
+
+	/**
+	 * @return whether the expression was last evaluated directly, or in compiled form
+	 */
+	boolean isCompiled() {
+		switch (this.shape) {
+		case SPEL:
+			return this.compiled;
+		case PAYLOAD_PROPERTY:
+			return this.direct || this.compiled;
+		default:
+			return true;
+		}
+	}
+
+	private <T> T evaluate(Object root, Class<T> resultType) {
+		T value;
+		try {
+			value = this.expression.getValue(this.evaluationContext, root, resultType);
+		}
+		catch (SpelEvaluationException e) {
+			if (e.getMessageCode() != SpelMessage.EXCEPTION_RUNNING_COMPILED_EXPRESSION) {
+				throw e;
+			}
+			revertToInterpreted(e);
+			value = this.expression.getValue(this.evaluationContext, root, resultType);
+		}
+		if (!this.compilationAttempted && this.expression instanceof SpelExpression) {
+			// the types used by the compiled code are known after the first evaluation
+			this.compilationAttempted = true;
+			this.compiled = ((SpelExpression) this.expression).compileExpression();
+		}
+		return value;
+	}
+
+	private synchronized void revertToInterpreted(Exception cause) {
+		if (this.compiled && logger.isDebugEnabled()) {
+			logger.debug("Compiled expression '" + this.expression.getExpressionString()
+					+ "' failed, reverting to interpreted mode", cause);
+		}
+		((SpelExpression) this.expression).revertToInterpreted();
+		this.compiled = false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T convert(Object value, Class<T> resultType) {
+		if (resultType == null || value == null || resultType.isInstance(value)) {
+			return (T) value;
+		}
+		return (T) this.evaluationContext.getTypeConverter().convertValue(value, TypeDescriptor.forObject(value),
+				TypeDescriptor.valueOf(resultType));
+	}
+
+	private static Expression compilableExpression(String expressionString) {
+		SpelParserConfiguration configuration = new SpelParserConfiguration(SpelCompilerMode.OFF,
+				ClassUtils.getDefaultClassLoader());
+		return new SpelExpressionParser(configuration).parseExpression(expressionString);
+	}
+
+}
@@ -42,6 +42,10 @@ public class PartitionHandler {
 
 	private final PartitionSelectorStrategy partitionSelectorStrategy;
 
+	private final PartitionExpressionEvaluator partitionKeyExpression;
+
+	private final PartitionExpressionEvaluator partitionSelectorExpression;
+
 	/**
 	 * Construct a {@code PartitionHandler}.
 	 *
@@ -58,6 +62,11 @@ public class PartitionHandler {
 		this.producerProperties = properties;
 		this.partitionKeyExtractorStrategy = partitionKeyExtractorStrategy;
 		this.partitionSelectorStrategy = partitionSelectorStrategy;
+		this.partitionKeyExpression = properties.getPartitionKeyExpression() != null
+				? new PartitionExpressionEvaluator(properties.getPartitionKeyExpression(), evaluationContext) : null;
+		this.partitionSelectorExpression = properties.getPartitionSelectorExpression() != null
+				? new PartitionExpressionEvaluator(properties.getPartitionSelectorExpression(), evaluationContext)
+				: null;
 	}
 
 	/**
@@ -78,12 +87,42 @@ public class PartitionHandler {
 	 * @return the partition
 	 */
 	public int determinePartition(Message<?> message) {
-		Object key = extractKey(message);
+		return selectPartition(extractKey(message));
+	}
+
+	/**
+	 * Determine the partition key of a message, as described in
+	 * {@link #determinePartition(Message)}.
+	 *
+	 * @param message the message
+	 * @return the partition key
+	 * @since 1.3
+	 */
+	public Object extractKey(Message<?> message) {
+		Object key = null;
+		if (this.producerProperties.getPartitionKeyExtractorClass() != null) {
+			key = invokeKeyExtractor(message);
+		}
+		else if (this.partitionKeyExpression != null) {
+			key = this.partitionKeyExpression.getValue(message, null);
+		}
+		Assert.notNull(key, "Partition key cannot be null");
+
+		return key;
+	}
 
+	/**
+	 * Determine the partition for a partition key, as described in
+	 * {@link #determinePartition(Message)}.
+	 *
+	 * @param key the partition key
+	 * @return the partition
+	 * @since 1.3
+	 */
+	public int selectPartition(Object key) {
 		int partition;
-		if (this.producerProperties.getPartitionSelectorExpression() != null) {
-			partition = this.producerProperties.getPartitionSelectorExpression().getValue(
-					this.evaluationContext, key, Integer.class);
+		if (this.partitionSelectorExpression != null) {
+			partition = this.partitionSelectorExpression.getValue(key, Integer.class);
 		}
 		else {
 			partition = this.partitionSelectorStrategy.selectPartition(key, producerProperties.getPartitionCount());
@@ -92,25 +131,49 @@ public class PartitionHandler {
 		return Math.abs(partition % producerProperties.getPartitionCount());
 	}
 
-	private Object extractKey(Message<?> message) {
-		Object key = null;
-		if (this.producerProperties.getPartitionKeyExtractorClass() != null) {
-			key = invokeKeyExtractor(message);
-		}
-		else if (this.producerProperties.getPartitionKeyExpression() != null) {
-			key = this.producerProperties.getPartitionKeyExpression().getValue(this.evaluationContext, message);
-		}
-		Assert.notNull(key, "Partition key cannot be null");
+	/**
+	 * Return whether the partition key expression is evaluated without interpreting
+	 * SpEL, i.e. either directly or in compiled form. SpEL expressions are compiled after
+	 * their first evaluation.
+	 *
+	 * @return {@code true} if the expression is compiled, {@code false} if it is
+	 * interpreted, or if there is no partition key expression
+	 * @since 1.3
+	 */
+	public boolean isPartitionKeyExpressionCompiled() {
+		return this.partitionKeyExpression != null && this.partitionKeyExpression.isCompiled();
+	}
 
-		return key;
+	/**
+	 * Return whether the partition selector expression is evaluated without
+	 * interpreting SpEL, i.e. either directly or in compiled form.
+	 *
+	 * @return {@code true} if the expression is compiled, {@code false} if it is
+	 * interpreted, or if there is no partition selector expression
+	 * @since 1.3
+	 */
+	public boolean isPartitionSelectorExpressionCompiled() {
+		return this.partitionSelectorExpression != null && this.partitionSelectorExpression.isCompiled();
 	}
 
-	private Object invokeKeyExtractor(Message<?> message) {
-		return this.partitionKeyExtractorStrategy.extractKey(message);
+	/**
+	 * @return whether the partition key is determined by an expression
+	 * @since 1.3
+	 */
+	public boolean hasPartitionKeyExpression() {
+		return this.partitionKeyExpression != null;
 	}
 
-	private int invokePartitionSelector(Object key) {
-		return this.partitionSelectorStrategy.selectPartition(key, producerProperties.getPartitionCount());
+	/**
+	 * @return whether the partition is selected by an expression
+	 * @since 1.3
+	 */
+	public boolean hasPartitionSelectorExpression() {
+		return this.partitionSelectorExpression != null;
+	}
+
+	private Object invokeKeyExtractor(Message<?> message) {
+		return this.partitionKeyExtractorStrategy.extractKey(message);
 	}
 
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+/**
+ * Stable 64-bit hashes of partition keys, computed with the 64-bit variant of MurmurHash3
+ * (the first half of MurmurHash3_x64_128, with a seed of 0).
+ * <p>
+ * Keys are hashed in a form that does not depend on the JVM: {@link CharSequence}s as
+ * their UTF-8 bytes, {@code byte[]} as is, integral numbers as their {@code long} value
+ * and {@link UUID}s as their 16 bytes. For other keys the 64-bit mix of
+ * {@link Object#hashCode()} is used, so such keys must have a stable hash code (e.g. an
+ * overridden {@code hashCode()} that is not derived from the identity of the key).
+ *
+ * @since 1.3
+ */
+public final class PartitionKeyHashing {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final long C1 = 0x87c37b91114253d5L;
+
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	private PartitionKeyHashing() {
+	}
+
+	/**
+	 * @param key the partition key
+	 * @return the 64-bit hash of the key
+	 */
+	public static long hashKey(Object key) {
+		if (key instanceof byte[]) {
+			return hash64((byte[]) key);
+		}
+		if (key instanceof CharSequence) {
+			return hash64(key.toString().getBytes(UTF_8));
+		}
+		if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+			return hash64(((Number) key).longValue());
+		}
+		if (key instanceof UUID) {
+			UUID uuid = (UUID) key;
+			return hash64(uuid.getMostSignificantBits() ^ fmix64(uuid.getLeastSignificantBits()));
+		}
+		return fmix64(key.hashCode());
+	}
+
+	static long hash64(long value) {
+		byte[] bytes = new byte[8];
+		for (int i = 0; i < 8; i++) {
+			bytes[i] = (byte) (value >>> (i * 8));
+		}
+		return hash64(bytes);
+	}
+
+	static long hash64(byte[] data) {
+		int length = data.length;
+		int blocks = length / 16;
+		long h1 = 0;
+		long h2 = 0;
+		for (int i = 0; i < blocks; i++) {
+			long k1 = getLong(data, i * 16);
+			long k2 = getLong(data, i * 16 + 8);
+			k1 *= C1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= C2;
+			h1 ^= k1;
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+			k2 *= C2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= C1;
+			h2 ^= k2;
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+		int tail = blocks * 16;
+		long k1 = 0;
+		long k2 = 0;
+		int remaining = length & 15;
+		for (int i = remaining - 1; i >= 8; i--) {
+			k2 ^= (long) (data[tail + i] & 0xff) << ((i - 8) * 8);
+		}
+		if (remaining > 8) {
+			k2 *= C2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= C1;
+			h2 ^= k2;
+		}
+		for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+			k1 ^= (long) (data[tail + i] & 0xff) << (i * 8);
+		}
+		if (remaining > 0) {
+			k1 *= C1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= C2;
+			h1 ^= k1;
+		}
+		h1 ^= length;
+		h2 ^= length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+		h1 += h2;
+		return h1;
+	}
+
+	private static long getLong(byte[] data, int offset) {
+		long value = 0;
+		for (int i = 7; i >= 0; i--) {
+			value = (value << 8) | (data[offset + i] & 0xff);
+		}
+		return value;
+	}
+
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+}
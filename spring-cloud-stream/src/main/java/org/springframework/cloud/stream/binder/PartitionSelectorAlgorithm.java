@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+/**
+ * The built-in {@link PartitionSelectorStrategy} implementations that can be selected
+ * by name through {@link ProducerProperties#setPartitionSelectorAlgorithm}. Both keep
+ * most keys on the same partition when the partition count changes, unlike the default
+ * strategy, which uses {@code key.hashCode() % partitionCount}.
+ *
+ * @since 1.3
+ */
+public enum PartitionSelectorAlgorithm {
+
+	/**
+	 * Jump consistent hashing, see {@link JumpHashPartitionSelector}.
+	 */
+	jumpHash {
+
+		@Override
+		public PartitionSelectorStrategy createPartitionSelector() {
+			return new JumpHashPartitionSelector();
+		}
+
+	},
+
+	/**
+	 * A consistent hash ring with virtual nodes, see
+	 * {@link ConsistentHashRingPartitionSelector}.
+	 */
+	consistentHashRing {
+
+		@Override
+		public PartitionSelectorStrategy createPartitionSelector() {
+			return new ConsistentHashRingPartitionSelector();
+		}
+
+	};
+
+	/**
+	 * @return a new instance of the selector
+	 */
+	public abstract PartitionSelectorStrategy createPartitionSelector();
+
+}
@@ -44,14 +44,26 @@ public class ProducerProperties {
 	@JsonSerialize(using = ExpressionSerializer.class)
 	private Expression partitionSelectorExpression;
 
+	private PartitionSelectorAlgorithm partitionSelectorAlgorithm;
+
 	private int partitionCount = 1;
 
 	private String[] requiredGroups = new String[] {};
 
 	private HeaderMode headerMode = HeaderMode.embeddedHeaders;
 
+	private EmbeddedHeadersFormat embeddedHeadersFormat = EmbeddedHeadersFormat.json;
+
 	private boolean useNativeEncoding = false;
 
+	private boolean batchingEnabled = false;
+
+	private int batchSize = 100;
+
+	private int batchBufferLimit = 10000;
+
+	private int batchTimeout = 5000;
+
 	public Expression getPartitionKeyExpression() {
 		return partitionKeyExpression;
 	}
@@ -88,6 +100,14 @@ public class ProducerProperties {
 		this.partitionSelectorExpression = partitionSelectorExpression;
 	}
 
+	public PartitionSelectorAlgorithm getPartitionSelectorAlgorithm() {
+		return this.partitionSelectorAlgorithm;
+	}
+
+	public void setPartitionSelectorAlgorithm(PartitionSelectorAlgorithm partitionSelectorAlgorithm) {
+		this.partitionSelectorAlgorithm = partitionSelectorAlgorithm;
+	}
+
 	@Min(value = 1, message = "Partition count should be greater than zero.")
 	public int getPartitionCount() {
 		return partitionCount;
@@ -115,6 +135,13 @@ public class ProducerProperties {
 		return (this.partitionSelectorClass == null) || (this.partitionSelectorExpression == null);
 	}
 
+	@AssertTrue(message = "Partition selector algorithm, partition selector class and partition selector expression "
+			+ "properties are mutually exclusive.")
+	public boolean isValidPartitionSelectorAlgorithmProperty() {
+		return (this.partitionSelectorAlgorithm == null)
+				|| (this.partitionSelectorClass == null && this.partitionSelectorExpression == null);
+	}
+
 	public HeaderMode getHeaderMode() {
 		return this.headerMode;
 	}
@@ -123,6 +150,14 @@ public class ProducerProperties {
 		this.headerMode = headerMode;
 	}
 
+	public EmbeddedHeadersFormat getEmbeddedHeadersFormat() {
+		return this.embeddedHeadersFormat;
+	}
+
+	public void setEmbeddedHeadersFormat(EmbeddedHeadersFormat embeddedHeadersFormat) {
+		this.embeddedHeadersFormat = embeddedHeadersFormat;
+	}
+
 	public boolean isUseNativeEncoding() {
 		return this.useNativeEncoding;
 	}
@@ -131,4 +166,39 @@ public class ProducerProperties {
 		this.useNativeEncoding = useNativeEncoding;
 	}
 
+	public boolean isBatchingEnabled() {
+		return this.batchingEnabled;
+	}
+
+	public void setBatchingEnabled(boolean batchingEnabled) {
+		this.batchingEnabled = batchingEnabled;
+	}
+
+	@Min(value = 1, message = "Batch size should be greater than zero.")
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	@Min(value = 1, message = "Batch buffer limit should be greater than zero.")
+	public int getBatchBufferLimit() {
+		return this.batchBufferLimit;
+	}
+
+	public void setBatchBufferLimit(int batchBufferLimit) {
+		this.batchBufferLimit = batchBufferLimit;
+	}
+
+	@Min(value = 1, message = "Batch timeout should be greater than zero.")
+	public int getBatchTimeout() {
+		return this.batchTimeout;
+	}
+
+	public void setBatchTimeout(int batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
+
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Resolves the getter through which a property of an object can be read directly,
+ * instead of by evaluating a SpEL expression. That is not possible if the object has no
+ * such getter, or if a custom property accessor of the evaluation context applies to its
+ * type. Getters are resolved once per type.
+ *
+ * @since 1.3
+ */
+public final class PropertyGetterResolver {
+
+	private static final Method NO_GETTER = ReflectionUtils.findMethod(Object.class, "toString");
+
+	private final String propertyName;
+
+	private final EvaluationContext evaluationContext;
+
+	private final ConcurrentMap<Class<?>, Method> getters = new ConcurrentHashMap<>();
+
+	/**
+	 * @param propertyName the name of the property
+	 * @param evaluationContext the context in which the property would be read by SpEL
+	 */
+	public PropertyGetterResolver(String propertyName, EvaluationContext evaluationContext) {
+		Assert.hasText(propertyName, "'propertyName' cannot be empty");
+		Assert.notNull(evaluationContext, "'evaluationContext' cannot be null");
+		this.propertyName = propertyName;
+		this.evaluationContext = evaluationContext;
+	}
+
+	/**
+	 * @param type the type of the object
+	 * @return the accessible getter of the property, or {@code null} if the property
+	 * must be read by SpEL
+	 */
+	public Method getGetter(Class<?> type) {
+		Method getter = this.getters.get(type);
+		if (getter == null) {
+			getter = NO_GETTER;
+			if (!hasSpecificPropertyAccessor(type)) {
+				PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, this.propertyName);
+				if (descriptor != null && descriptor.getReadMethod() != null) {
+					getter = descriptor.getReadMethod();
+					ReflectionUtils.makeAccessible(getter);
+				}
+			}
+			this.getters.putIfAbsent(type, getter);
+		}
+		return getter != NO_GETTER ? getter : null;
+	}
+
+	private boolean hasSpecificPropertyAccessor(Class<?> type) {
+		for (PropertyAccessor propertyAccessor : this.evaluationContext.getPropertyAccessors()) {
+			Class<?>[] targetClasses = propertyAccessor.getSpecificTargetClasses();
+			if (targetClasses != null) {
+				for (Class<?> targetClass : targetClasses) {
+					if (targetClass.isAssignableFrom(type)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+}
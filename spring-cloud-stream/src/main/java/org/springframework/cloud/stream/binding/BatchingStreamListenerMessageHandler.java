@@ -0,0 +1,321 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binding;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * A {@link StreamListenerMessageHandler} for methods that receive a {@link java.util.List}
+ * of payloads or messages. Inbound messages are accumulated until either the configured
+ * batch size is reached or the batch timeout expires, and the listener method is invoked
+ * once for the entire batch.
+ * <p>
+ * Each element is converted individually to the element type of the list. Elements that
+ * cannot be converted are not included in the batch, and are reported to the error
+ * channel of the binding instead.
+ * <p>
+ * <b>Delivery is at most once.</b> The binder considers an element as processed once it
+ * is added to the batch, so it acknowledges it before the listener is invoked. Elements
+ * that are pending when the application fails are lost, and a batch for which the
+ * listener fails is retried according to the retry template and then sent to the error
+ * channel of the binding as the failed message of an {@link ErrorMessage}, but it is
+ * never redelivered by the binder. Batches completed by the batch size are dispatched on
+ * the thread that delivers the last element, and batches completed by the timeout on a
+ * thread of the handler. Pending elements are dispatched when the handler is stopped,
+ * after the input bindings.
+ * <p>
+ * The error channel of the binding is the {@code <destination>.<group>.errors} channel
+ * of binders that create one. Errors are sent to the global error channel if the binding
+ * has no error channel, for instance if it has no group, and logged if there is no global
+ * error channel either.
+ *
+ * @since 1.3
+ */
+public class BatchingStreamListenerMessageHandler extends StreamListenerMessageHandler implements SmartLifecycle {
+
+	/**
+	 * The phase of the handler, which stops after the input bindings, and before the
+	 * output bindings.
+	 */
+	public static final int PHASE = 0;
+
+	private final InvocableHandlerMethod invocableHandlerMethod;
+
+	private final MessageConverter messageConverter;
+
+	private final Class<?> elementPayloadType;
+
+	private final boolean messageElements;
+
+	private final int batchSize;
+
+	private final int batchTimeout;
+
+	private final RetryTemplate retryTemplate;
+
+	private final String threadNamePrefix;
+
+	private final String errorChannelName;
+
+	private final Object monitor = new Object();
+
+	private List<Object> batch;
+
+	private ScheduledFuture<?> scheduledFlush;
+
+	private ThreadPoolTaskScheduler flushScheduler;
+
+	private volatile boolean running;
+
+	/**
+	 * @param invocableHandlerMethod the listener method
+	 * @param messageConverter the converter used for converting individual elements
+	 * @param elementPayloadType the payload type of the list elements
+	 * @param messageElements whether the list elements are {@link Message} instances
+	 * @param batchSize the maximum number of elements in a batch
+	 * @param batchTimeout the time (in milliseconds) after which an incomplete batch is
+	 * dispatched
+	 * @param retryTemplate the template for invoking the listener method with a batch
+	 * @param notPropagatedHeaders the headers that are not propagated
+	 * @param threadNamePrefix the prefix of the name of the thread dispatching batches on
+	 * timeout
+	 * @param errorChannelName the name of the error channel of the binding, or null if
+	 * errors are sent to the global error channel
+	 */
+	BatchingStreamListenerMessageHandler(InvocableHandlerMethod invocableHandlerMethod,
+			MessageConverter messageConverter, Class<?> elementPayloadType, boolean messageElements, int batchSize,
+			int batchTimeout, RetryTemplate retryTemplate, String[] notPropagatedHeaders, String threadNamePrefix,
+			String errorChannelName) {
+		super(invocableHandlerMethod, false, notPropagatedHeaders);
+		Assert.isTrue(invocableHandlerMethod.isVoid(), "Batch listener methods must not return a value");
+		Assert.notNull(messageConverter, "'messageConverter' cannot be null");
+		Assert.isTrue(batchSize > 0, "'batchSize' must be greater than zero");
+		Assert.isTrue(batchTimeout > 0, "'batchTimeout' must be greater than zero");
+		Assert.notNull(retryTemplate, "'retryTemplate' cannot be null");
+		this.invocableHandlerMethod = invocableHandlerMethod;
+		this.messageConverter = messageConverter;
+		this.elementPayloadType = ClassUtils.resolvePrimitiveIfNecessary(elementPayloadType);
+		this.messageElements = messageElements;
+		this.batchSize = batchSize;
+		this.batchTimeout = batchTimeout;
+		this.retryTemplate = retryTemplate;
+		this.threadNamePrefix = threadNamePrefix;
+		this.errorChannelName = errorChannelName;
+		this.batch = new ArrayList<>(batchSize);
+	}
+
+	@Override
+	public void start() {
+		synchronized (this.monitor) {
+			if (this.running) {
+				return;
+			}
+			this.flushScheduler = new ThreadPoolTaskScheduler();
+			this.flushScheduler.setThreadNamePrefix(this.threadNamePrefix);
+			this.flushScheduler.setDaemon(true);
+			// lets a batch being dispatched on timeout complete when stopped
+			this.flushScheduler.setWaitForTasksToCompleteOnShutdown(true);
+			this.flushScheduler.initialize();
+			this.running = true;
+		}
+	}
+
+	@Override
+	public void stop() {
+		ThreadPoolTaskScheduler scheduler;
+		synchronized (this.monitor) {
+			if (!this.running) {
+				return;
+			}
+			this.running = false;
+			scheduler = this.flushScheduler;
+			this.flushScheduler = null;
+		}
+		flush();
+		scheduler.shutdown();
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return true;
+	}
+
+	@Override
+	public int getPhase() {
+		return PHASE;
+	}
+
+	@Override
+	protected Object handleRequestMessage(Message<?> requestMessage) {
+		Object element = convertElement(requestMessage);
+		if (element == null) {
+			return null;
+		}
+		List<Object> fullBatch = null;
+		synchronized (this.monitor) {
+			this.batch.add(element);
+			if (this.batch.size() >= this.batchSize || !this.running) {
+				// when stopped, elements can no longer wait for the timeout
+				fullBatch = takeBatch();
+			}
+			else if (this.scheduledFlush == null) {
+				this.scheduledFlush = this.flushScheduler.schedule(new Runnable() {
+
+					@Override
+					public void run() {
+						flush();
+					}
+
+				}, new Date(System.currentTimeMillis() + this.batchTimeout));
+			}
+		}
+		if (fullBatch != null) {
+			dispatch(fullBatch);
+		}
+		return null;
+	}
+
+	private Object convertElement(Message<?> message) {
+		Object payload = message.getPayload();
+		if (!this.elementPayloadType.isInstance(payload)) {
+			try {
+				payload = this.messageConverter.fromMessage(message, this.elementPayloadType);
+			}
+			catch (Exception e) {
+				reportError(new MessageConversionException(message,
+						"Failed to convert batch element to " + this.elementPayloadType.getName(), e));
+				return null;
+			}
+			if (payload == null) {
+				reportError(new MessageConversionException(message,
+						"No converter found to convert batch element to " + this.elementPayloadType.getName()));
+				return null;
+			}
+		}
+		if (this.messageElements) {
+			return payload == message.getPayload() ? message : new GenericMessage<>(payload, message.getHeaders());
+		}
+		return payload;
+	}
+
+	private List<Object> takeBatch() {
+		if (this.scheduledFlush != null) {
+			this.scheduledFlush.cancel(false);
+			this.scheduledFlush = null;
+		}
+		List<Object> fullBatch = this.batch;
+		this.batch = new ArrayList<>(this.batchSize);
+		return fullBatch;
+	}
+
+	/**
+	 * Dispatch any pending elements to the listener method, regardless of the batch size.
+	 */
+	public void flush() {
+		List<Object> pendingBatch;
+		synchronized (this.monitor) {
+			pendingBatch = takeBatch();
+		}
+		if (!pendingBatch.isEmpty()) {
+			dispatch(pendingBatch);
+		}
+	}
+
+	private void dispatch(List<Object> elements) {
+		final Message<List<Object>> batchMessage = MessageBuilder.withPayload(elements).build();
+		try {
+			this.retryTemplate.execute(new RetryCallback<Object, Exception>() {
+
+				@Override
+				public Object doWithRetry(RetryContext context) throws Exception {
+					BatchingStreamListenerMessageHandler.this.invocableHandlerMethod.invoke(batchMessage);
+					return null;
+				}
+
+			});
+		}
+		catch (Exception e) {
+			reportError(e instanceof MessagingException ? (MessagingException) e
+					: new MessagingException(batchMessage,
+							"Exception thrown while invoking " + this.invocableHandlerMethod.getShortLogMessage(),
+							e));
+		}
+	}
+
+	private void reportError(MessagingException exception) {
+		MessageChannel errorChannel = resolveErrorChannel();
+		if (errorChannel == null) {
+			logger.error(exception.getMessage(), exception);
+			return;
+		}
+		try {
+			errorChannel.send(new ErrorMessage(exception));
+		}
+		catch (RuntimeException e) {
+			// e.g. rethrown by the binding's error channel when nothing handles the error
+			logger.error(exception.getMessage(), e);
+		}
+	}
+
+	private MessageChannel resolveErrorChannel() {
+		BeanFactory beanFactory = getBeanFactory();
+		if (beanFactory == null) {
+			return null;
+		}
+		// resolved on each error, as the binding's error channel is created when it is bound
+		if (this.errorChannelName != null && beanFactory.containsBean(this.errorChannelName)) {
+			return beanFactory.getBean(this.errorChannelName, MessageChannel.class);
+		}
+		if (beanFactory.containsBean(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)) {
+			return beanFactory.getBean(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME, MessageChannel.class);
+		}
+		return null;
+	}
+}
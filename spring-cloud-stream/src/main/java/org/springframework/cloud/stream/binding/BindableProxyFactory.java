@@ -18,6 +18,7 @@ package org.springframework.cloud.stream.binding;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,7 +58,11 @@ public class BindableProxyFactory implements MethodInterceptor, FactoryBean<Obje
 
 	private static Log log = LogFactory.getLog(BindableProxyFactory.class);
 
-	private final Map<Method, Object> targetCache = new HashMap<>(2);
+	/**
+	 * Binding targets by interface method, fully resolved in {@link #afterPropertiesSet()}
+	 * and never modified afterwards, so that lookups on the proxy do not require locking.
+	 */
+	private volatile Map<Method, Object> targetCache = Collections.emptyMap();
 
 	@Value("${" + InternalPropertyNames.NAMESPACE_PROPERTY_NAME + ":}")
 	private String namespace;
@@ -81,37 +86,14 @@ public class BindableProxyFactory implements MethodInterceptor, FactoryBean<Obje
 	}
 
 	@Override
-	public synchronized Object invoke(MethodInvocation invocation) throws Throwable {
-		Method method = invocation.getMethod();
-
-		// try to use cached target
-		Object boundTarget = targetCache.get(method);
-		if (boundTarget != null) {
-			return boundTarget;
-		}
-
-		Input input = AnnotationUtils.findAnnotation(method, Input.class);
-		if (input != null) {
-			String name = BindingBeanDefinitionRegistryUtils.getBindingTargetName(input, method);
-			boundTarget = this.inputHolders.get(name).getBoundTarget();
-			targetCache.put(method, boundTarget);
-			return boundTarget;
-		}
-		else {
-			Output output = AnnotationUtils.findAnnotation(method, Output.class);
-			if (output != null) {
-				String name = BindingBeanDefinitionRegistryUtils.getBindingTargetName(output, method);
-				boundTarget = this.outputHolders.get(name).getBoundTarget();
-				targetCache.put(method, boundTarget);
-				return boundTarget;
-			}
-		}
-		return null;
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		return this.targetCache.get(invocation.getMethod());
 	}
 
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		Assert.notEmpty(BindableProxyFactory.this.bindingTargetFactories, "'bindingTargetFactories' cannot be empty");
+		final Map<Method, Object> resolvedTargets = new HashMap<>();
 		ReflectionUtils.doWithMethods(this.type, new ReflectionUtils.MethodCallback() {
 			@Override
 			public void doWith(Method method) throws IllegalArgumentException {
@@ -128,6 +110,7 @@ public class BindableProxyFactory implements MethodInterceptor, FactoryBean<Obje
 						BindableProxyFactory.this.inputHolders.put(name,
 								new BoundTargetHolder(getBindingTargetFactory(returnType).createInput(name), true));
 					}
+					resolvedTargets.put(method, BindableProxyFactory.this.inputHolders.get(name).getBoundTarget());
 				}
 			}
 		});
@@ -147,9 +130,11 @@ public class BindableProxyFactory implements MethodInterceptor, FactoryBean<Obje
 						BindableProxyFactory.this.outputHolders.put(name,
 								new BoundTargetHolder(getBindingTargetFactory(returnType).createOutput(name), true));
 					}
+					resolvedTargets.put(method, BindableProxyFactory.this.outputHolders.get(name).getBoundTarget());
 				}
 			}
 		});
+		this.targetCache = Collections.unmodifiableMap(resolvedTargets);
 	}
 
 	private BindingTargetFactory getBindingTargetFactory(Class<?> bindingTargetType) {
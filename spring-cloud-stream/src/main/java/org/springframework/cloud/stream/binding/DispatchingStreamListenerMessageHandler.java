@@ -16,33 +16,76 @@
 
 package org.springframework.cloud.stream.binding;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.cloud.stream.binder.PropertyGetterResolver;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.Indexer;
+import org.springframework.expression.spel.ast.OpEQ;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
 
 /**
  * An {@link AbstractReplyProducingMessageHandler} that delegates to a collection of
  * internal {@link ConditionalStreamListenerMessageHandlerWrapper} instances, executing the ones that
  * match the given expression.
+ * <p>
+ * Conditions of the form {@code headers['<name>']=='<value>'} or
+ * {@code payload.<property>=='<value>'} are not evaluated one by one: the handlers that
+ * test the same header or payload property are looked up by the value of the header or
+ * property in a table built at startup. Other conditions are evaluated by SpEL, in
+ * compiled form once the expression has been evaluated often enough (see
+ * {@link SpelCompilerMode#MIXED}). Handlers are invoked in the order in which they were
+ * provided, and no objects are allocated for dispatching a message to a single handler
+ * or to none.
  *
  * @author Marius Bogoevici
  * @since 1.2
  */
 final class DispatchingStreamListenerMessageHandler extends AbstractReplyProducingMessageHandler {
 
+	private static final SpelExpressionParser MIXED_MODE_PARSER = new SpelExpressionParser(
+			new SpelParserConfiguration(SpelCompilerMode.MIXED, ClassUtils.getDefaultClassLoader()));
+
 	private final List<ConditionalStreamListenerMessageHandlerWrapper> handlerMethods;
 
 	private final boolean evaluateExpressions;
 
 	private final EvaluationContext evaluationContext;
 
+	/**
+	 * The conditions that are evaluated for each message, by handler index; {@code null}
+	 * for handlers without a condition or dispatched through an index.
+	 */
+	private final Expression[] conditions;
+
+	/**
+	 * The indexes of the handlers that are not dispatched through a
+	 * {@link ConditionIndex}, in ascending order.
+	 */
+	private final int[] unindexedHandlers;
+
+	private final ConditionIndex[] conditionIndexes;
+
 	DispatchingStreamListenerMessageHandler(Collection<ConditionalStreamListenerMessageHandlerWrapper> handlerMethods,
 			EvaluationContext evaluationContext) {
 		Assert.notEmpty(handlerMethods, "'handlerMethods' cannot be empty");
@@ -59,6 +102,31 @@ final class DispatchingStreamListenerMessageHandler extends AbstractReplyProduci
 			Assert.notNull(evaluationContext, "'evaluationContext' cannot be null if conditions are used");
 		}
 		this.evaluationContext = evaluationContext;
+		this.conditions = new Expression[this.handlerMethods.size()];
+		Map<String, ConditionIndex> conditionIndexes = new LinkedHashMap<>();
+		List<Integer> unindexedHandlers = new ArrayList<>();
+		for (int i = 0; i < this.handlerMethods.size(); i++) {
+			Expression condition = this.handlerMethods.get(i).getCondition();
+			if (condition == null) {
+				unindexedHandlers.add(i);
+				continue;
+			}
+			ConditionIndex conditionIndex = ConditionIndex.forCondition(condition, conditionIndexes,
+					evaluationContext);
+			if (conditionIndex != null) {
+				conditionIndex.add(condition, i);
+			}
+			else {
+				unindexedHandlers.add(i);
+				this.conditions[i] = condition instanceof SpelExpression
+						? MIXED_MODE_PARSER.parseExpression(condition.getExpressionString()) : condition;
+			}
+		}
+		this.unindexedHandlers = new int[unindexedHandlers.size()];
+		for (int i = 0; i < this.unindexedHandlers.length; i++) {
+			this.unindexedHandlers[i] = unindexedHandlers.get(i);
+		}
+		this.conditionIndexes = conditionIndexes.values().toArray(new ConditionIndex[conditionIndexes.size()]);
 	}
 
 	@Override
@@ -68,42 +136,209 @@ final class DispatchingStreamListenerMessageHandler extends AbstractReplyProduci
 
 	@Override
 	protected Object handleRequestMessage(Message<?> requestMessage) {
-		List<ConditionalStreamListenerMessageHandlerWrapper> matchingHandlers = this.evaluateExpressions ? findMatchingHandlers(requestMessage) : this.handlerMethods;
-		if (matchingHandlers.size() == 0) {
+		if (!this.evaluateExpressions) {
+			for (ConditionalStreamListenerMessageHandlerWrapper handlerMethod : this.handlerMethods) {
+				handlerMethod.getStreamListenerMessageHandler().handleMessage(requestMessage);
+			}
+			return null;
+		}
+		// the first matching handler, and the other ones if there are several
+		int firstMatch = -1;
+		List<Integer> otherMatches = null;
+		for (int i : this.unindexedHandlers) {
+			if (this.conditions[i] == null || conditionMet(this.conditions[i], requestMessage)) {
+				if (firstMatch < 0) {
+					firstMatch = i;
+				}
+				else {
+					otherMatches = addMatch(otherMatches, i);
+				}
+			}
+		}
+		for (ConditionIndex conditionIndex : this.conditionIndexes) {
+			Object value = conditionIndex.extractValue(requestMessage);
+			if (value == ConditionIndex.UNRESOLVED) {
+				for (int i : conditionIndex.handlers) {
+					if (conditionMet(this.handlerMethods.get(i).getCondition(), requestMessage)) {
+						if (firstMatch < 0) {
+							firstMatch = i;
+						}
+						else {
+							otherMatches = addMatch(otherMatches, i);
+						}
+					}
+				}
+			}
+			else if (value != null) {
+				int[] matchingHandlers = conditionIndex.handlersByValue.get(value.toString());
+				if (matchingHandlers != null) {
+					for (int i : matchingHandlers) {
+						if (firstMatch < 0) {
+							firstMatch = i;
+						}
+						else {
+							otherMatches = addMatch(otherMatches, i);
+						}
+					}
+				}
+			}
+		}
+		if (firstMatch < 0) {
 			if (logger.isWarnEnabled()) {
 				logger.warn("Cannot find a @StreamListener matching for message with id: "
 						+ requestMessage.getHeaders().getId());
 			}
-			return null;
 		}
-		else if (matchingHandlers.size() > 1) {
-			for (ConditionalStreamListenerMessageHandlerWrapper matchingMethod : matchingHandlers) {
-				matchingMethod.getStreamListenerMessageHandler().handleMessage(requestMessage);
+		else if (otherMatches != null) {
+			otherMatches.add(firstMatch);
+			Collections.sort(otherMatches);
+			for (int i : otherMatches) {
+				this.handlerMethods.get(i).getStreamListenerMessageHandler().handleMessage(requestMessage);
 			}
-			return null;
 		}
 		else {
-			final ConditionalStreamListenerMessageHandlerWrapper singleMatchingHandler = matchingHandlers.get(0);
-			singleMatchingHandler.getStreamListenerMessageHandler().handleMessage(requestMessage);
-			return null;
+			this.handlerMethods.get(firstMatch).getStreamListenerMessageHandler().handleMessage(requestMessage);
 		}
+		return null;
+	}
+
+	private boolean conditionMet(Expression condition, Message<?> message) {
+		return condition.getValue(this.evaluationContext, message, Boolean.class);
 	}
 
-	private List<ConditionalStreamListenerMessageHandlerWrapper> findMatchingHandlers(Message<?> message) {
-		ArrayList<ConditionalStreamListenerMessageHandlerWrapper> matchingMethods = new ArrayList<>();
-		for (ConditionalStreamListenerMessageHandlerWrapper conditionalStreamListenerMessageHandlerWrapperMethod : this.handlerMethods) {
-			if (conditionalStreamListenerMessageHandlerWrapperMethod.getCondition() == null) {
-				matchingMethods.add(conditionalStreamListenerMessageHandlerWrapperMethod);
+	private static List<Integer> addMatch(List<Integer> matches, int handlerIndex) {
+		List<Integer> result = matches != null ? matches : new ArrayList<Integer>();
+		result.add(handlerIndex);
+		return result;
+	}
+
+	/**
+	 * The handlers whose conditions compare the same header or payload property to a
+	 * string literal, keyed by that literal.
+	 */
+	private static final class ConditionIndex {
+
+		/**
+		 * Returned when the header or property value cannot be obtained directly, or
+		 * cannot be compared directly, in which case the conditions are evaluated by
+		 * SpEL.
+		 */
+		static final Object UNRESOLVED = new Object();
+
+		private final String headerName;
+
+		private final PropertyGetterResolver getterResolver;
+
+		private final Map<String, int[]> handlersByValue = new HashMap<>();
+
+		private int[] handlers = new int[0];
+
+		private ConditionIndex(String headerName, PropertyGetterResolver getterResolver) {
+			this.headerName = headerName;
+			this.getterResolver = getterResolver;
+		}
+
+		/**
+		 * Return the index for the header or payload property tested by the condition,
+		 * creating it if necessary, or {@code null} if the condition cannot be indexed.
+		 */
+		static ConditionIndex forCondition(Expression condition, Map<String, ConditionIndex> conditionIndexes,
+				EvaluationContext evaluationContext) {
+			SpelNode[] operands = equalsLiteralOperands(condition);
+			if (operands == null || operands[0].getChildCount() != 2
+					|| !(operands[0].getChild(0) instanceof PropertyOrFieldReference)
+					|| ((PropertyOrFieldReference) operands[0].getChild(0)).isNullSafe()) {
+				return null;
+			}
+			String root = ((PropertyOrFieldReference) operands[0].getChild(0)).getName();
+			SpelNode accessor = operands[0].getChild(1);
+			String key;
+			ConditionIndex conditionIndex;
+			if ("headers".equals(root) && accessor instanceof Indexer && accessor.getChildCount() == 1
+					&& accessor.getChild(0) instanceof StringLiteral) {
+				String headerName = literalValue(accessor.getChild(0));
+				key = "headers['" + headerName + "']";
+				conditionIndex = new ConditionIndex(headerName, null);
+			}
+			else if ("payload".equals(root) && accessor instanceof PropertyOrFieldReference
+					&& !((PropertyOrFieldReference) accessor).isNullSafe()) {
+				String propertyName = ((PropertyOrFieldReference) accessor).getName();
+				key = "payload." + propertyName;
+				conditionIndex = new ConditionIndex(null, new PropertyGetterResolver(propertyName, evaluationContext));
+			}
+			else {
+				return null;
+			}
+			if (!conditionIndexes.containsKey(key)) {
+				conditionIndexes.put(key, conditionIndex);
+			}
+			return conditionIndexes.get(key);
+		}
+
+		/**
+		 * Return the operand compared to a string literal, followed by the literal, if
+		 * the condition has the form {@code <operand>=='<literal>'} (or the reverse) and the
+		 * operand is a compound expression.
+		 */
+		private static SpelNode[] equalsLiteralOperands(Expression condition) {
+			if (!(condition instanceof SpelExpression)) {
+				return null;
+			}
+			SpelNode ast = ((SpelExpression) condition).getAST();
+			if (!(ast instanceof OpEQ)) {
+				return null;
+			}
+			SpelNode left = ast.getChild(0);
+			SpelNode right = ast.getChild(1);
+			if (left instanceof CompoundExpression && right instanceof StringLiteral) {
+				return new SpelNode[] { left, right };
+			}
+			if (right instanceof CompoundExpression && left instanceof StringLiteral) {
+				return new SpelNode[] { right, left };
+			}
+			return null;
+		}
+
+		private static String literalValue(SpelNode stringLiteral) {
+			return (String) ((StringLiteral) stringLiteral).getLiteralValue().getValue();
+		}
+
+		void add(Expression condition, int handlerIndex) {
+			String value = literalValue(equalsLiteralOperands(condition)[1]);
+			this.handlersByValue.put(value, append(this.handlersByValue.get(value), handlerIndex));
+			this.handlers = append(this.handlers, handlerIndex);
+		}
+
+		private static int[] append(int[] handlers, int handlerIndex) {
+			if (handlers == null) {
+				return new int[] { handlerIndex };
+			}
+			int[] result = new int[handlers.length + 1];
+			System.arraycopy(handlers, 0, result, 0, handlers.length);
+			result[handlers.length] = handlerIndex;
+			return result;
+		}
+
+		/**
+		 * Return the value of the header or payload property as a string to look up,
+		 * {@code null} if no condition can match, or {@link #UNRESOLVED}.
+		 */
+		Object extractValue(Message<?> message) {
+			Object value;
+			if (this.headerName != null) {
+				value = message.getHeaders().get(this.headerName);
 			}
 			else {
-				boolean conditionMetOnMessage = conditionalStreamListenerMessageHandlerWrapperMethod.getCondition().getValue(
-						this.evaluationContext, message, Boolean.class);
-				if (conditionMetOnMessage) {
-					matchingMethods.add(conditionalStreamListenerMessageHandlerWrapperMethod);
+				Object payload = message.getPayload();
+				Method getter = this.getterResolver.getGetter(payload.getClass());
+				if (getter == null) {
+					return UNRESOLVED;
 				}
+				value = ReflectionUtils.invokeMethod(getter, payload);
 			}
+			// SpEL compares strings with any other type by equals() or compareTo()
+			return value == null || value instanceof CharSequence ? value : UNRESOLVED;
 		}
-		return matchingMethods;
 	}
 
 	static class ConditionalStreamListenerMessageHandlerWrapper {
@@ -16,6 +16,10 @@
 
 package org.springframework.cloud.stream.binding;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
@@ -23,6 +27,7 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.cloud.stream.binder.BinderException;
 import org.springframework.cloud.stream.binder.BinderHeaders;
+import org.springframework.cloud.stream.binder.MessageSerializationUtils;
 import org.springframework.cloud.stream.binder.PartitionHandler;
 import org.springframework.cloud.stream.binder.PartitionKeyExtractorStrategy;
 import org.springframework.cloud.stream.binder.PartitionSelectorStrategy;
@@ -34,14 +39,15 @@ import org.springframework.cloud.stream.converter.MessageConverterUtils;
 import org.springframework.integration.channel.AbstractMessageChannel;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.support.MessageBuilderFactory;
+import org.springframework.integration.support.MutableMessage;
 import org.springframework.integration.support.MutableMessageBuilderFactory;
 import org.springframework.integration.support.MutableMessageHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHeaders;
-import org.springframework.messaging.converter.AbstractMessageConverter;
 import org.springframework.messaging.converter.MessageConversionException;
 import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.converter.SmartMessageConverter;
 import org.springframework.messaging.support.ChannelInterceptorAdapter;
 import org.springframework.tuple.Tuple;
 import org.springframework.util.Assert;
@@ -69,6 +75,15 @@ public class MessageConverterConfigurer implements MessageChannelConfigurer, Bea
 
 	private final BindingServiceProperties bindingServiceProperties;
 
+	/**
+	 * The number of most frequent partition keys reported for each partitioned binding.
+	 */
+	private static final int HOT_KEY_COUNT = 10;
+
+	private final Map<String, PartitionHandler> partitionHandlers = new ConcurrentHashMap<>();
+
+	private final Map<String, PartitionStatistics> partitionStatistics = new ConcurrentHashMap<>();
+
 	private ConfigurableListableBeanFactory beanFactory;
 
 	public MessageConverterConfigurer(BindingServiceProperties bindingServiceProperties,
@@ -111,16 +126,48 @@ public class MessageConverterConfigurer implements MessageChannelConfigurer, Bea
 				channelName);
 		final String contentType = bindingProperties.getContentType();
 		ProducerProperties producerProperties = bindingProperties.getProducer();
-		if (!input && producerProperties != null && producerProperties.isPartitioned()) {
-			messageChannel.addInterceptor(new PartitioningInterceptor(bindingProperties,
-					getPartitionKeyExtractorStrategy(producerProperties),
-					getPartitionSelectorStrategy(producerProperties)));
+		if (input) {
+			if (StringUtils.hasText(contentType)) {
+				messageChannel.addInterceptor(new ContentTypeConvertingInterceptor(contentType, true));
+			}
 		}
-		if (StringUtils.hasText(contentType)) {
-			messageChannel.addInterceptor(new ContentTypeConvertingInterceptor(contentType, input));
+		else {
+			boolean partitioned = producerProperties != null && producerProperties.isPartitioned();
+			if (partitioned || StringUtils.hasText(contentType)) {
+				OutboundMessageInterceptor interceptor = new OutboundMessageInterceptor(bindingProperties,
+						partitioned ? getPartitionKeyExtractorStrategy(producerProperties) : null,
+						partitioned ? getPartitionSelectorStrategy(producerProperties) : null, partitioned);
+				if (partitioned) {
+					this.partitionHandlers.put(channelName, interceptor.partitionHandler);
+					this.partitionStatistics.put(channelName, interceptor.partitionStatistics);
+				}
+				messageChannel.addInterceptor(interceptor);
+			}
 		}
 	}
 
+	/**
+	 * Return the {@link PartitionHandler}s of the partitioned output channels configured
+	 * by this instance.
+	 *
+	 * @return the partition handlers, keyed by channel name
+	 * @since 1.3
+	 */
+	public Map<String, PartitionHandler> getPartitionHandlers() {
+		return Collections.unmodifiableMap(this.partitionHandlers);
+	}
+
+	/**
+	 * Return the statistics about the messages sent by the partitioned output channels
+	 * configured by this instance.
+	 *
+	 * @return the partition statistics, keyed by channel name
+	 * @since 1.3
+	 */
+	public Map<String, PartitionStatistics> getPartitionStatistics() {
+		return Collections.unmodifiableMap(this.partitionStatistics);
+	}
+
 	private PartitionKeyExtractorStrategy getPartitionKeyExtractorStrategy(ProducerProperties producerProperties) {
 		if (producerProperties.getPartitionKeyExtractorClass() != null) {
 			return getBean(
@@ -136,6 +183,9 @@ public class MessageConverterConfigurer implements MessageChannelConfigurer, Bea
 					producerProperties.getPartitionSelectorClass().getName(),
 					PartitionSelectorStrategy.class);
 		}
+		if (producerProperties.getPartitionSelectorAlgorithm() != null) {
+			return producerProperties.getPartitionSelectorAlgorithm().createPartitionSelector();
+		}
 		return new DefaultPartitionSelector();
 	}
 
@@ -219,7 +269,7 @@ public class MessageConverterConfigurer implements MessageChannelConfigurer, Bea
 			}
 			this.messageConverter = MessageConverterConfigurer.this.compositeMessageConverterFactory
 					.getMessageConverterForType(this.mimeType);
-			this.provideHint = this.messageConverter instanceof AbstractMessageConverter;
+			this.provideHint = this.messageConverter instanceof SmartMessageConverter;
 		}
 
 		@Override
@@ -241,10 +291,10 @@ public class MessageConverterConfigurer implements MessageChannelConfigurer, Bea
 				Object converted;
 				if (this.input) {
 					if (this.provideHint) {
-						converted = ((AbstractMessageConverter) this.messageConverter).fromMessage(message, this.klazz,
+						converted = ((SmartMessageConverter) this.messageConverter).fromMessage(message, this.klazz,
 								this.mimeType);
 						if (converted == null && message.getHeaders().containsKey(MessageHeaders.CONTENT_TYPE)) {
-							converted = ((AbstractMessageConverter) this.messageConverter).fromMessage(
+							converted = ((SmartMessageConverter) this.messageConverter).fromMessage(
 									MessageConverterConfigurer.this.messageBuilderFactory.fromMessage(message)
 										.removeHeader(MessageHeaders.CONTENT_TYPE)
 										.build(), this.klazz, this.mimeType);
@@ -261,23 +311,7 @@ public class MessageConverterConfigurer implements MessageChannelConfigurer, Bea
 					}
 				}
 				else {
-					MutableMessageHeaders headers = new MutableMessageHeaders(message.getHeaders());
-					if (this.provideHint) {
-						converted = ((AbstractMessageConverter) this.messageConverter).toMessage(message.getPayload(),
-								headers, this.mimeType);
-						if (converted == null && message.getHeaders().containsKey(MessageHeaders.CONTENT_TYPE)) {
-							headers.remove(MessageHeaders.CONTENT_TYPE);
-							converted = ((AbstractMessageConverter) this.messageConverter).toMessage(message.getPayload(),
-									headers, this.mimeType);
-						}
-					}
-					else {
-						converted = this.messageConverter.toMessage(message.getPayload(), headers);
-						if (converted == null && message.getHeaders().containsKey(MessageHeaders.CONTENT_TYPE)) {
-							headers.remove(MessageHeaders.CONTENT_TYPE);
-							converted = this.messageConverter.toMessage(message.getPayload(), headers);
-						}
-					}
+					return convertOutbound(message, new MutableMessageHeaders(message.getHeaders()));
 				}
 				if (converted != null) {
 					if (converted instanceof Message) {
@@ -292,15 +326,174 @@ public class MessageConverterConfigurer implements MessageChannelConfigurer, Bea
 				}
 			}
 			if (sentMessage == null) {
-				throw new MessageConversionException(message, this.messageConverter.getClass().toString()
-						+ " could not convert '" + message + "' to the configured output type: '"
-						+ this.contentType + "'");
+				throw conversionFailure(message);
+			}
+			return sentMessage;
+		}
+
+		/**
+		 * Convert the payload of an outbound message.
+		 * @param message the message to convert
+		 * @param headers a mutable copy of the headers of the message, which may contain
+		 * additional changes, and are used for the converted message
+		 * @return the converted message
+		 */
+		private Message<?> convertOutbound(Message<?> message, MutableMessageHeaders headers) {
+			Object converted;
+			if (this.provideHint) {
+				converted = ((SmartMessageConverter) this.messageConverter).toMessage(message.getPayload(),
+						headers, this.mimeType);
+				if (converted == null && headers.containsKey(MessageHeaders.CONTENT_TYPE)) {
+					headers.remove(MessageHeaders.CONTENT_TYPE);
+					converted = ((SmartMessageConverter) this.messageConverter).toMessage(message.getPayload(),
+							headers, this.mimeType);
+				}
+			}
+			else {
+				converted = this.messageConverter.toMessage(message.getPayload(), headers);
+				if (converted == null && headers.containsKey(MessageHeaders.CONTENT_TYPE)) {
+					headers.remove(MessageHeaders.CONTENT_TYPE);
+					converted = this.messageConverter.toMessage(message.getPayload(), headers);
+				}
+			}
+			if (converted == null) {
+				throw conversionFailure(message);
+			}
+			if (converted instanceof Message) {
+				return (Message<?>) converted;
+			}
+			MutableMessage<?> convertedMessage = new MutableMessage<>(converted, headers);
+			if (!headers.containsKey(MessageHeaders.CONTENT_TYPE)) {
+				convertedMessage.getHeaders().put(MessageHeaders.CONTENT_TYPE, this.mimeType);
+			}
+			return convertedMessage;
+		}
+
+		private MessageConversionException conversionFailure(Message<?> message) {
+			return new MessageConversionException(message, this.messageConverter.getClass().toString()
+					+ " could not convert '" + message + "' to the configured output type: '"
+					+ this.contentType + "'");
+		}
+	}
+
+	/**
+	 * Applies the partitioning and the content type conversion configured for an output
+	 * binding in a single step, so that at most one new message is created per send.
+	 * The identifier and timestamp of the sent message are preserved. For partitioned
+	 * bindings, the partitions and keys of the messages that are sent successfully are
+	 * recorded in {@link PartitionStatistics}.
+	 */
+	protected final class OutboundMessageInterceptor extends ChannelInterceptorAdapter {
+
+		private final PartitionHandler partitionHandler;
+
+		private final PartitionStatistics partitionStatistics;
+
+		/**
+		 * The partition key of the message being sent by the current thread, if
+		 * statistics are recorded.
+		 */
+		private final ThreadLocal<Object> pendingKey;
+
+		private final ContentTypeConvertingInterceptor contentTypeConverter;
+
+		OutboundMessageInterceptor(BindingProperties bindingProperties,
+				PartitionKeyExtractorStrategy partitionKeyExtractorStrategy,
+				PartitionSelectorStrategy partitionSelectorStrategy, boolean partitioned) {
+			this.partitionHandler = partitioned ? new PartitionHandler(
+					ExpressionUtils.createStandardEvaluationContext(MessageConverterConfigurer.this.beanFactory),
+					bindingProperties.getProducer(), partitionKeyExtractorStrategy, partitionSelectorStrategy) : null;
+			this.partitionStatistics = partitioned
+					? new PartitionStatistics(bindingProperties.getProducer().getPartitionCount(), HOT_KEY_COUNT)
+					: null;
+			this.pendingKey = partitioned ? new ThreadLocal<Object>() : null;
+			this.contentTypeConverter = StringUtils.hasText(bindingProperties.getContentType())
+					? new ContentTypeConvertingInterceptor(bindingProperties.getContentType(), false) : null;
+		}
 
+		@Override
+		public Message<?> preSend(Message<?> message, MessageChannel channel) {
+			MessageHeaders headers = message.getHeaders();
+			Object partition = null;
+			Object key = null;
+			if (this.partitionHandler != null) {
+				if (headers.containsKey(BinderHeaders.PARTITION_OVERRIDE)) {
+					partition = headers.get(BinderHeaders.PARTITION_OVERRIDE);
+				}
+				else {
+					key = this.partitionHandler.extractKey(message);
+					partition = this.partitionHandler.selectPartition(key);
+				}
+			}
+			boolean setContentType = false;
+			if (this.contentTypeConverter != null) {
+				if (this.contentTypeConverter.klazz.isAssignableFrom(message.getPayload().getClass())) {
+					setContentType = headers.get(MessageHeaders.CONTENT_TYPE) == null;
+				}
+				else {
+					MutableMessageHeaders convertedHeaders = new MutableMessageHeaders(headers);
+					applyPartition(convertedHeaders, partition);
+					return record(this.contentTypeConverter.convertOutbound(message, convertedHeaders), key);
+				}
+			}
+			if (this.partitionHandler == null && !setContentType) {
+				return message;
+			}
+			MutableMessage<?> sentMessage = new MutableMessage<>(message.getPayload(), headers);
+			applyPartition(sentMessage.getHeaders(), partition);
+			if (setContentType) {
+				sentMessage.getHeaders().put(MessageHeaders.CONTENT_TYPE, this.contentTypeConverter.contentType);
+			}
+			return record(sentMessage, key);
+		}
+
+		private Message<?> record(Message<?> sentMessage, Object key) {
+			if (this.pendingKey != null && sentMessage != null) {
+				// recorded in afterSendCompletion(), once the message is sent
+				this.pendingKey.set(key);
 			}
 			return sentMessage;
 		}
+
+		@Override
+		public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+			if (this.pendingKey == null) {
+				return;
+			}
+			Object key = this.pendingKey.get();
+			this.pendingKey.remove();
+			Object partition = message.getHeaders().get(BinderHeaders.PARTITION_HEADER);
+			if (sent && ex == null && partition instanceof Integer) {
+				Object payload = message.getPayload();
+				long bytes = 0;
+				if (payload instanceof byte[]) {
+					bytes = ((byte[]) payload).length;
+				}
+				else if (payload instanceof String) {
+					// as serialized by the binders, without encoding the payload again
+					bytes = MessageSerializationUtils.utf8Length((String) payload);
+				}
+				this.partitionStatistics.record((Integer) partition, key, bytes);
+			}
+		}
+
+		private void applyPartition(MutableMessageHeaders headers, Object partition) {
+			if (this.partitionHandler != null) {
+				headers.remove(BinderHeaders.PARTITION_OVERRIDE);
+				if (partition != null) {
+					headers.put(BinderHeaders.PARTITION_HEADER, partition);
+				}
+				else {
+					headers.remove(BinderHeaders.PARTITION_HEADER);
+				}
+			}
+		}
 	}
 
+	/**
+	 * @deprecated partitioning is applied by {@link OutboundMessageInterceptor}
+	 */
+	@Deprecated
 	protected final class PartitioningInterceptor extends ChannelInterceptorAdapter {
 
 		private final BindingProperties bindingProperties;
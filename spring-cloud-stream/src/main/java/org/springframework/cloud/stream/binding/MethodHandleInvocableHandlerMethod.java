@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binding;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
+import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolverComposite;
+import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * An {@link InvocableHandlerMethod} that resolves the arguments of a listener method
+ * with argument resolvers selected once per parameter, and invokes the method through
+ * a {@link MethodHandle} bound to the target bean.
+ * <p>
+ * {@link InvocableHandlerMethod} resolves the generic type of each parameter and looks
+ * up its argument resolver for every message, and calls the method reflectively. This
+ * class does that work when it is created, which is safe because the resolvers that
+ * apply to a parameter do not change. Methods for which a parameter has no resolver are
+ * invoked by {@link InvocableHandlerMethod}, as are invocations with provided
+ * arguments. Instances are created by {@link StreamListenerMessageHandlerMethodFactory}.
+ *
+ * @since 1.3
+ */
+final class MethodHandleInvocableHandlerMethod extends InvocableHandlerMethod {
+
+	private static final Log logger = LogFactory.getLog(MethodHandleInvocableHandlerMethod.class);
+
+	private final MethodParameter[] parameters;
+
+	private final HandlerMethodArgumentResolver[] resolvers;
+
+	private final Class<?>[] parameterTypes;
+
+	private final Class<?>[] argumentTypes;
+
+	private final MethodHandle methodHandle;
+
+	private MethodHandleInvocableHandlerMethod(InvocableHandlerMethod handlerMethod,
+			HandlerMethodArgumentResolverComposite argumentResolvers, HandlerMethodArgumentResolver[] resolvers,
+			MethodHandle methodHandle) {
+		super(handlerMethod);
+		setMessageMethodArgumentResolvers(argumentResolvers);
+		this.parameters = getMethodParameters();
+		this.resolvers = resolvers;
+		this.parameterTypes = getMethod().getParameterTypes();
+		this.argumentTypes = new Class<?>[this.parameterTypes.length];
+		for (int i = 0; i < this.parameterTypes.length; i++) {
+			this.argumentTypes[i] = ClassUtils.resolvePrimitiveIfNecessary(this.parameterTypes[i]);
+		}
+		this.methodHandle = methodHandle;
+	}
+
+	/**
+	 * Create an optimized version of the given handler method, if possible.
+	 * @param handlerMethod a handler method
+	 * @param argumentResolvers the argument resolvers the handler method is configured
+	 * with
+	 * @return the optimized handler method, or the original one
+	 */
+	static InvocableHandlerMethod optimize(InvocableHandlerMethod handlerMethod,
+			HandlerMethodArgumentResolverComposite argumentResolvers) {
+		ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+		MethodParameter[] parameters = handlerMethod.getMethodParameters();
+		HandlerMethodArgumentResolver[] resolvers = new HandlerMethodArgumentResolver[parameters.length];
+		for (int i = 0; i < parameters.length; i++) {
+			parameters[i].initParameterNameDiscovery(parameterNameDiscoverer);
+			GenericTypeResolver.resolveParameterType(parameters[i], handlerMethod.getBean().getClass());
+			for (HandlerMethodArgumentResolver resolver : argumentResolvers.getResolvers()) {
+				if (resolver.supportsParameter(parameters[i])) {
+					resolvers[i] = resolver;
+					break;
+				}
+			}
+			if (resolvers[i] == null) {
+				return handlerMethod;
+			}
+		}
+		Method method = handlerMethod.getMethod();
+		MethodHandle methodHandle;
+		try {
+			ReflectionUtils.makeAccessible(method);
+			methodHandle = MethodHandles.lookup().unreflect(method).bindTo(handlerMethod.getBean())
+					.asType(MethodType.genericMethodType(parameters.length))
+					.asSpreader(Object[].class, parameters.length);
+		}
+		catch (IllegalAccessException | RuntimeException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Cannot create a method handle for " + method + ", invoking it reflectively", e);
+			}
+			return handlerMethod;
+		}
+		return new MethodHandleInvocableHandlerMethod(handlerMethod, argumentResolvers, resolvers, methodHandle);
+	}
+
+	@Override
+	public Object invoke(Message<?> message, Object... providedArgs) throws Exception {
+		if (!ObjectUtils.isEmpty(providedArgs)) {
+			return super.invoke(message, providedArgs);
+		}
+		Object[] args = new Object[this.parameters.length];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = this.resolvers[i].resolveArgument(this.parameters[i], message);
+			if (args[i] == null ? this.parameterTypes[i].isPrimitive() : !this.argumentTypes[i].isInstance(args[i])) {
+				// the method handle would fail with a bare ClassCastException or NullPointerException
+				throw new IllegalStateException(getInvocationErrorMessage("Argument [" + i
+						+ "] is not assignable to parameter type [" + this.parameterTypes[i].getName() + "]", args));
+			}
+		}
+		try {
+			return this.methodHandle.invokeExact(args);
+		}
+		catch (Exception | Error e) {
+			throw e;
+		}
+		catch (Throwable t) {
+			throw new IllegalStateException(
+					getInvocationErrorMessage("Failed to invoke handler method: " + t.getMessage(), args), t);
+		}
+	}
+
+	/**
+	 * Build the same error message as {@link InvocableHandlerMethod} does for a failed
+	 * invocation, including the resolved arguments.
+	 */
+	private String getInvocationErrorMessage(String text, Object[] resolvedArgs) {
+		StringBuilder sb = new StringBuilder(getDetailedErrorMessage(text));
+		sb.append("Resolved arguments: \n");
+		for (int i = 0; i < resolvedArgs.length; i++) {
+			sb.append("[").append(i).append("] ");
+			if (resolvedArgs[i] == null) {
+				sb.append("[null] \n");
+			}
+			else {
+				sb.append("[type=").append(resolvedArgs[i].getClass().getName()).append("] ");
+				sb.append("[value=").append(resolvedArgs[i]).append("]\n");
+			}
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.cloud.stream.binder.PartitionKeyHashing;
+import org.springframework.util.Assert;
+
+/**
+ * Statistics about the distribution of the messages sent by a partitioned producer:
+ * the number of messages and bytes sent to each partition, and an estimate of the
+ * most frequent partition keys.
+ * <p>
+ * The counters are striped across threads, like {@code java.util.concurrent.atomic.LongAdder},
+ * so that concurrent senders do not contend on the same memory locations. The most
+ * frequent keys are tracked with the Space-Saving algorithm (Metwally et al., "Efficient
+ * Computation of Frequent and Top-k Elements in Data Streams"); a sender skips updating
+ * the sketch instead of waiting while another sender updates it, so the key counts are
+ * estimates based on a sample of the messages. Keys are tracked by their
+ * {@link PartitionKeyHashing#hashKey(Object) hash}, so that {@code byte[]} keys are
+ * compared by content, and the keys themselves are not retained. Each tracked key keeps
+ * instead a description of the key, truncated to {@value #MAX_KEY_DESCRIPTION_LENGTH}
+ * characters, which is only computed when the key enters the sketch.
+ *
+ * @since 1.3
+ */
+public class PartitionStatistics {
+
+	/**
+	 * The number of {@code long}s in a cache line.
+	 */
+	private static final int PADDING = 8;
+
+	private static final int MAX_STRIPES = 64;
+
+	/**
+	 * The maximum length of the descriptions of the tracked keys.
+	 */
+	public static final int MAX_KEY_DESCRIPTION_LENGTH = 64;
+
+	private final int partitionCount;
+
+	private final int stripeMask;
+
+	private final int stripeLength;
+
+	/**
+	 * For each stripe, the message count and the byte count of each partition.
+	 */
+	private final AtomicLongArray counters;
+
+	private final int hotKeyCount;
+
+	private final ReentrantLock sketchLock = new ReentrantLock();
+
+	private final Map<Long, HotKey> sketch;
+
+	/**
+	 * @param partitionCount the number of partitions
+	 * @param hotKeyCount the number of most frequent keys to report
+	 */
+	public PartitionStatistics(int partitionCount, int hotKeyCount) {
+		Assert.isTrue(partitionCount > 0, "'partitionCount' must be greater than zero");
+		Assert.isTrue(hotKeyCount >= 0, "'hotKeyCount' cannot be negative");
+		this.partitionCount = partitionCount;
+		int stripes = 1;
+		while (stripes < Runtime.getRuntime().availableProcessors() && stripes < MAX_STRIPES) {
+			stripes <<= 1;
+		}
+		this.stripeMask = stripes - 1;
+		// each stripe starts on its own cache line
+		this.stripeLength = (partitionCount * 2 + PADDING - 1) / PADDING * PADDING + PADDING;
+		this.counters = new AtomicLongArray(stripes * this.stripeLength);
+		this.hotKeyCount = hotKeyCount;
+		// tracking more keys than reported improves the accuracy of the reported ones
+		this.sketch = new HashMap<>(hotKeyCount * 8);
+	}
+
+	/**
+	 * Record a message sent to a partition.
+	 * @param partition the partition; messages sent to partitions outside of the
+	 * configured range (e.g. because of a partition override) are not counted
+	 * @param key the partition key, may be {@code null} if unknown
+	 * @param bytes the size of the message payload, or zero if unknown
+	 */
+	public void record(int partition, Object key, long bytes) {
+		if (partition < 0 || partition >= this.partitionCount) {
+			return;
+		}
+		int offset = stripe() * this.stripeLength + partition * 2;
+		this.counters.incrementAndGet(offset);
+		if (bytes > 0) {
+			this.counters.addAndGet(offset + 1, bytes);
+		}
+		if (key != null && this.hotKeyCount > 0 && this.sketchLock.tryLock()) {
+			try {
+				offer(PartitionKeyHashing.hashKey(key), key);
+			}
+			finally {
+				this.sketchLock.unlock();
+			}
+		}
+	}
+
+	public int getPartitionCount() {
+		return this.partitionCount;
+	}
+
+	/**
+	 * @param partition the partition
+	 * @return the number of messages sent to the partition
+	 */
+	public long getSendCount(int partition) {
+		return sum(partition * 2);
+	}
+
+	/**
+	 * @param partition the partition
+	 * @return the number of payload bytes sent to the partition
+	 */
+	public long getByteCount(int partition) {
+		return sum(partition * 2 + 1);
+	}
+
+	/**
+	 * @return the ratio between the largest number of messages sent to a partition and the
+	 * average number of messages per partition; {@code 1} means that messages are
+	 * evenly distributed, {@code 0} that no messages have been sent
+	 */
+	public double getSkew() {
+		long total = 0;
+		long max = 0;
+		for (int partition = 0; partition < this.partitionCount; partition++) {
+			long count = getSendCount(partition);
+			total += count;
+			max = Math.max(max, count);
+		}
+		return total == 0 ? 0 : (double) max * this.partitionCount / total;
+	}
+
+	/**
+	 * @return the most frequent partition keys, most frequent first
+	 */
+	public List<HotKey> getHotKeys() {
+		List<HotKey> hotKeys = new ArrayList<>();
+		this.sketchLock.lock();
+		try {
+			for (HotKey hotKey : this.sketch.values()) {
+				hotKeys.add(new HotKey(hotKey.keyHash, hotKey.key, hotKey.count, hotKey.error));
+			}
+		}
+		finally {
+			this.sketchLock.unlock();
+		}
+		Collections.sort(hotKeys, new Comparator<HotKey>() {
+
+			@Override
+			public int compare(HotKey o1, HotKey o2) {
+				return o1.count < o2.count ? 1 : (o1.count == o2.count ? 0 : -1);
+			}
+
+		});
+		return hotKeys.size() > this.hotKeyCount ? hotKeys.subList(0, this.hotKeyCount) : hotKeys;
+	}
+
+	private void offer(long keyHash, Object key) {
+		HotKey hotKey = this.sketch.get(keyHash);
+		if (hotKey != null) {
+			hotKey.count++;
+		}
+		else if (this.sketch.size() < this.hotKeyCount * 8) {
+			this.sketch.put(keyHash, new HotKey(keyHash, describe(key), 1, 0));
+		}
+		else {
+			// replace the least frequent key, whose count becomes the error of the new one
+			HotKey min = null;
+			for (HotKey candidate : this.sketch.values()) {
+				if (min == null || candidate.count < min.count) {
+					min = candidate;
+				}
+			}
+			this.sketch.remove(min.keyHash);
+			this.sketch.put(keyHash, new HotKey(keyHash, describe(key), min.count + 1, min.count));
+		}
+	}
+
+	private static String describe(Object key) {
+		if (key instanceof byte[]) {
+			byte[] bytes = (byte[]) key;
+			StringBuilder description = new StringBuilder("0x");
+			for (int i = 0; i < bytes.length && description.length() < MAX_KEY_DESCRIPTION_LENGTH; i++) {
+				description.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16))
+						.append(Character.forDigit(bytes[i] & 0xf, 16));
+			}
+			return description.length() > MAX_KEY_DESCRIPTION_LENGTH
+					? description.substring(0, MAX_KEY_DESCRIPTION_LENGTH) : description.toString();
+		}
+		String description = String.valueOf(key);
+		return description.length() > MAX_KEY_DESCRIPTION_LENGTH
+				? description.substring(0, MAX_KEY_DESCRIPTION_LENGTH) : description;
+	}
+
+	private long sum(int index) {
+		long sum = 0;
+		for (int offset = index; offset < this.counters.length(); offset += this.stripeLength) {
+			sum += this.counters.get(offset);
+		}
+		return sum;
+	}
+
+	private int stripe() {
+		long id = Thread.currentThread().getId();
+		int hash = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+		return (hash ^ (hash >>> 16)) & this.stripeMask;
+	}
+
+	/**
+	 * A partition key with its estimated number of occurrences.
+	 */
+	public static final class HotKey {
+
+		private final long keyHash;
+
+		private final String key;
+
+		private long count;
+
+		private final long error;
+
+		private HotKey(long keyHash, String key, long count, long error) {
+			this.keyHash = keyHash;
+			this.key = key;
+			this.count = count;
+			this.error = error;
+		}
+
+		/**
+		 * @return the {@link PartitionKeyHashing#hashKey(Object) hash} of the key
+		 */
+		public long getKeyHash() {
+			return this.keyHash;
+		}
+
+		/**
+		 * @return the key as a string, or its bytes in hexadecimal for {@code byte[]}
+		 * keys, truncated to {@value PartitionStatistics#MAX_KEY_DESCRIPTION_LENGTH}
+		 * characters
+		 */
+		public String getKey() {
+			return this.key;
+		}
+
+		/**
+		 * @return the estimated number of occurrences, which may overestimate the actual
+		 * number by up to {@link #getError()}
+		 */
+		public long getCount() {
+			return this.count;
+		}
+
+		/**
+		 * @return the maximum overestimation of the count
+		 */
+		public long getError() {
+			return this.error;
+		}
+	}
+
+}
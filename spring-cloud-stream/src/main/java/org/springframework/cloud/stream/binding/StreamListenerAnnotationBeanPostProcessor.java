@@ -40,12 +40,16 @@ import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.cloud.stream.annotation.Input;
 import org.springframework.cloud.stream.annotation.Output;
 import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.cloud.stream.binder.ConsumerProperties;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
 import org.springframework.cloud.stream.config.SpringIntegrationProperties;
+import org.springframework.cloud.stream.converter.CompositeMessageConverterFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
 import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.expression.EvaluationContext;
@@ -53,11 +57,15 @@ import org.springframework.expression.Expression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.SubscribableChannel;
 import org.springframework.messaging.core.DestinationResolver;
 import org.springframework.messaging.handler.annotation.support.MessageHandlerMethodFactory;
 import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
+import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -96,6 +104,8 @@ public class StreamListenerAnnotationBeanPostProcessor
 
 	private ConfigurableApplicationContext applicationContext;
 
+	private int batchingListenerCount;
+
 	private EvaluationContext evaluationContext;
 
 	private BeanFactory beanFactory;
@@ -353,9 +363,8 @@ public class StreamListenerAnnotationBeanPostProcessor
 				final InvocableHandlerMethod invocableHandlerMethod = this.messageHandlerMethodFactory
 						.createInvocableHandlerMethod(mapping.getTargetBean(),
 								checkProxy(mapping.getMethod(), mapping.getTargetBean()));
-				StreamListenerMessageHandler streamListenerMessageHandler = new StreamListenerMessageHandler(
-						invocableHandlerMethod, resolveExpressionAsBoolean(mapping.getCopyHeaders(), "copyHeaders"),
-						springIntegrationProperties.getMessageHandlerNotPropagatedHeaders());
+				StreamListenerMessageHandler streamListenerMessageHandler = createStreamListenerMessageHandler(
+						mappedBindingEntry.getKey(), mapping, invocableHandlerMethod);
 				streamListenerMessageHandler.setApplicationContext(this.applicationContext);
 				streamListenerMessageHandler.setBeanFactory(this.applicationContext.getBeanFactory());
 				if (StringUtils.hasText(mapping.getDefaultOutputChannel())) {
@@ -396,6 +405,67 @@ public class StreamListenerAnnotationBeanPostProcessor
 		this.mappedListenerMethods.clear();
 	}
 
+	private StreamListenerMessageHandler createStreamListenerMessageHandler(String bindingName,
+			StreamListenerHandlerMethodMapping mapping, InvocableHandlerMethod invocableHandlerMethod) {
+		String[] notPropagatedHeaders = this.springIntegrationProperties.getMessageHandlerNotPropagatedHeaders();
+		Method method = mapping.getMethod();
+		if (method.getParameterTypes().length == 1 && List.class.equals(method.getParameterTypes()[0])) {
+			BindingServiceProperties bindingServiceProperties = this.applicationContext
+					.getBean(BindingServiceProperties.class);
+			ConsumerProperties consumerProperties = bindingServiceProperties.getConsumerProperties(bindingName);
+			if (consumerProperties.isBatchingEnabled()) {
+				ResolvableType elementType = ResolvableType.forMethodParameter(method, 0).getGeneric(0);
+				boolean messageElements = Message.class.equals(elementType.resolve());
+				Class<?> elementPayloadType = messageElements ? elementType.getGeneric(0).resolve(Object.class)
+						: elementType.resolve(Object.class);
+				BatchingStreamListenerMessageHandler handler = new BatchingStreamListenerMessageHandler(
+						invocableHandlerMethod,
+						this.applicationContext.getBean(CompositeMessageConverterFactory.class)
+								.getMessageConverterForAllRegistered(),
+						elementPayloadType, messageElements, consumerProperties.getBatchSize(),
+						consumerProperties.getBatchTimeout(), buildRetryTemplate(consumerProperties),
+						notPropagatedHeaders, bindingName + "-batch-", getErrorChannelName(bindingServiceProperties,
+								bindingName));
+				// registered so that pending elements are dispatched when the context stops
+				this.applicationContext.getBeanFactory().registerSingleton(
+						bindingName + "." + method.getName() + ".batchingListener" + this.batchingListenerCount++,
+						handler);
+				return handler;
+			}
+		}
+		return new StreamListenerMessageHandler(invocableHandlerMethod,
+				resolveExpressionAsBoolean(mapping.getCopyHeaders(), "copyHeaders"), notPropagatedHeaders);
+	}
+
+	/**
+	 * Return the name of the error channel that binders create for the binding, or null
+	 * if the binding is anonymous, as the group is then generated by the binder, or bound
+	 * to several destinations, as the destination of a failed element is then unknown.
+	 */
+	private static String getErrorChannelName(BindingServiceProperties bindingServiceProperties,
+			String bindingName) {
+		String group = bindingServiceProperties.getGroup(bindingName);
+		String[] destinations = StringUtils.commaDelimitedListToStringArray(
+				bindingServiceProperties.getBindingDestination(bindingName));
+		if (!StringUtils.hasText(group) || destinations.length != 1) {
+			return null;
+		}
+		return destinations[0] + "." + group + ".errors";
+	}
+
+	private static RetryTemplate buildRetryTemplate(ConsumerProperties properties) {
+		RetryTemplate template = new RetryTemplate();
+		SimpleRetryPolicy retryPolicy = new SimpleRetryPolicy();
+		retryPolicy.setMaxAttempts(properties.getMaxAttempts());
+		ExponentialBackOffPolicy backOffPolicy = new ExponentialBackOffPolicy();
+		backOffPolicy.setInitialInterval(properties.getBackOffInitialInterval());
+		backOffPolicy.setMultiplier(properties.getBackOffMultiplier());
+		backOffPolicy.setMaxInterval(properties.getBackOffMaxInterval());
+		template.setRetryPolicy(retryPolicy);
+		template.setBackOffPolicy(backOffPolicy);
+		return template;
+	}
+
 	private Method checkProxy(Method methodArg, Object bean) {
 		Method method = methodArg;
 		if (AopUtils.isJdkDynamicProxy(bean)) {
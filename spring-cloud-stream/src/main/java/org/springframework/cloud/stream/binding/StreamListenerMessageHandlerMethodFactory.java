@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binding;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
+import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolverComposite;
+import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
+
+/**
+ * A {@link DefaultMessageHandlerMethodFactory} that creates handler methods which select
+ * the argument resolver of each parameter once, and invoke the method through a
+ * {@link java.lang.invoke.MethodHandle}, when possible.
+ *
+ * @since 1.3
+ * @see MethodHandleInvocableHandlerMethod
+ */
+public class StreamListenerMessageHandlerMethodFactory extends DefaultMessageHandlerMethodFactory {
+
+	/**
+	 * The argument resolvers of this factory, as configured in the superclass.
+	 */
+	private final HandlerMethodArgumentResolverComposite argumentResolvers = new HandlerMethodArgumentResolverComposite();
+
+	@Override
+	public void setArgumentResolvers(List<HandlerMethodArgumentResolver> argumentResolvers) {
+		super.setArgumentResolvers(argumentResolvers);
+		this.argumentResolvers.clear();
+		if (argumentResolvers != null) {
+			this.argumentResolvers.addResolvers(argumentResolvers);
+		}
+	}
+
+	@Override
+	protected List<HandlerMethodArgumentResolver> initArgumentResolvers() {
+		List<HandlerMethodArgumentResolver> argumentResolvers = super.initArgumentResolvers();
+		this.argumentResolvers.addResolvers(argumentResolvers);
+		return argumentResolvers;
+	}
+
+	@Override
+	public InvocableHandlerMethod createInvocableHandlerMethod(Object bean, Method method) {
+		return MethodHandleInvocableHandlerMethod.optimize(super.createInvocableHandlerMethod(bean, method),
+				this.argumentResolvers);
+	}
+
+}
@@ -48,6 +48,7 @@ import org.springframework.cloud.stream.binding.MessageConverterConfigurer;
 import org.springframework.cloud.stream.binding.OutputBindingLifecycle;
 import org.springframework.cloud.stream.binding.SingleBindingTargetBindable;
 import org.springframework.cloud.stream.binding.StreamListenerAnnotationBeanPostProcessor;
+import org.springframework.cloud.stream.binding.StreamListenerMessageHandlerMethodFactory;
 import org.springframework.cloud.stream.binding.SubscribableChannelBindingTargetFactory;
 import org.springframework.cloud.stream.converter.CompositeMessageConverterFactory;
 import org.springframework.context.annotation.Bean;
@@ -67,6 +68,7 @@ import org.springframework.messaging.handler.annotation.support.DefaultMessageHa
 import org.springframework.messaging.handler.annotation.support.MessageHandlerMethodFactory;
 import org.springframework.tuple.spel.TuplePropertyAccessor;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.IdGenerator;
 
 /**
  * Configuration class that provides necessary beans for {@link MessageChannel} binding.
@@ -97,7 +99,7 @@ public class BindingServiceConfiguration {
 	@Bean
 	public static MessageHandlerMethodFactory messageHandlerMethodFactory(
 			CompositeMessageConverterFactory compositeMessageConverterFactory) {
-		DefaultMessageHandlerMethodFactory messageHandlerMethodFactory = new DefaultMessageHandlerMethodFactory();
+		DefaultMessageHandlerMethodFactory messageHandlerMethodFactory = new StreamListenerMessageHandlerMethodFactory();
 		messageHandlerMethodFactory
 				.setMessageConverter(compositeMessageConverterFactory.getMessageConverterForAllRegistered());
 		return messageHandlerMethodFactory;
@@ -184,6 +186,14 @@ public class BindingServiceConfiguration {
 		return new CompositeMessageConverterFactory(messageConverters, this.objectMapper);
 	}
 
+	@Bean
+	@ConditionalOnProperty("spring.cloud.stream.idGenerator")
+	@ConditionalOnMissingBean(IdGenerator.class)
+	// installed as the message id generator by Spring Integration
+	public IdGenerator streamMessageIdGenerator(BindingServiceProperties bindingServiceProperties) {
+		return bindingServiceProperties.getIdGenerator().createIdGenerator();
+	}
+
 	@Bean
 	// provided for backwards compatibility scenarios
 	public ChannelBindingServiceProperties channelBindingServiceProperties(
@@ -66,6 +66,13 @@ public class BindingServiceProperties implements ApplicationContextAware, Enviro
 
 	private String[] dynamicDestinations = new String[0];
 
+	/**
+	 * The strategy for generating message ids; if not set, the default strategy of
+	 * {@link org.springframework.messaging.MessageHeaders} (or a user-provided
+	 * {@link org.springframework.util.IdGenerator} bean) is used.
+	 */
+	private MessageIdGenerator idGenerator;
+
 	private ConfigurableApplicationContext applicationContext;
 
 	public Map<String, BindingProperties> getBindings() {
@@ -116,6 +123,14 @@ public class BindingServiceProperties implements ApplicationContextAware, Enviro
 		this.dynamicDestinations = dynamicDestinations;
 	}
 
+	public MessageIdGenerator getIdGenerator() {
+		return this.idGenerator;
+	}
+
+	public void setIdGenerator(MessageIdGenerator idGenerator) {
+		this.idGenerator = idGenerator;
+	}
+
 	@Override
 	public void setApplicationContext(ApplicationContext applicationContext)
 			throws BeansException {
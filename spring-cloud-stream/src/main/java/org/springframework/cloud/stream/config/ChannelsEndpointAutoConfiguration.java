@@ -25,7 +25,10 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.cloud.stream.binding.Bindable;
 import org.springframework.cloud.stream.binding.BindingService;
+import org.springframework.cloud.stream.binding.MessageConverterConfigurer;
 import org.springframework.cloud.stream.endpoint.ChannelsEndpoint;
+import org.springframework.cloud.stream.endpoint.PartitioningMetrics;
+import org.springframework.cloud.stream.endpoint.PartitionsEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -47,4 +50,14 @@ public class ChannelsEndpointAutoConfiguration {
 	public ChannelsEndpoint channelsEndpoint(BindingServiceProperties properties) {
 		return new ChannelsEndpoint(this.adapters, properties);
 	}
+
+	@Bean
+	public PartitioningMetrics partitioningMetrics(MessageConverterConfigurer messageConverterConfigurer) {
+		return new PartitioningMetrics(messageConverterConfigurer);
+	}
+
+	@Bean
+	public PartitionsEndpoint partitionsEndpoint(MessageConverterConfigurer messageConverterConfigurer) {
+		return new PartitionsEndpoint(messageConverterConfigurer);
+	}
 }
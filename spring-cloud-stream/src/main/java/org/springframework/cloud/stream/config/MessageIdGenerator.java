@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.config;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.integration.support.IdGenerators;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.IdGenerator;
+
+/**
+ * The strategies that can be selected through
+ * {@code spring.cloud.stream.idGenerator} for generating the
+ * {@link MessageHeaders#ID id} of messages.
+ * <p>
+ * Since the {@link IdGenerator} of {@link MessageHeaders} is shared by all the
+ * messages in the JVM, the selected strategy applies to all the messages created by the
+ * application, not only the ones created by the binders.
+ *
+ * @since 1.3
+ */
+public enum MessageIdGenerator {
+
+	/**
+	 * Random UUIDs generated with {@link UUID#randomUUID()}, i.e. from a shared
+	 * {@link java.security.SecureRandom}.
+	 */
+	secureRandom {
+
+		@Override
+		public IdGenerator createIdGenerator() {
+			return new IdGenerators.JdkIdGenerator();
+		}
+
+	},
+
+	/**
+	 * Random (version 4) UUIDs generated from a {@link ThreadLocalRandom}, which is not
+	 * cryptographically strong, but does not cause contention between threads.
+	 */
+	threadLocalRandom {
+
+		@Override
+		public IdGenerator createIdGenerator() {
+			return new ThreadLocalRandomIdGenerator();
+		}
+
+	},
+
+	/**
+	 * UUIDs generated from an incrementing counter, which are unique only within the
+	 * JVM.
+	 */
+	counter {
+
+		@Override
+		public IdGenerator createIdGenerator() {
+			return new IdGenerators.SimpleIncrementingIdGenerator();
+		}
+
+	};
+
+	/**
+	 * @return a new {@link IdGenerator} that implements this strategy
+	 */
+	public abstract IdGenerator createIdGenerator();
+
+	private static final class ThreadLocalRandomIdGenerator implements IdGenerator {
+
+		@Override
+		public UUID generateId() {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			long mostSigBits = (random.nextLong() & 0xffffffffffff0fffL) | 0x0000000000004000L;
+			long leastSigBits = (random.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+			return new UUID(mostSigBits, leastSigBits);
+		}
+
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.converter;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+
+/**
+ * A {@link MappingJackson2MessageConverter} that reuses an {@link ObjectReader} per
+ * target type and an {@link ObjectWriter} per payload type, reads {@code byte[]}
+ * payloads without decoding them to a {@code String} first and writes {@code byte[]}
+ * payloads without copying them from an intermediate stream. Jackson recycles the
+ * buffers used for writing.
+ * <p>
+ * Conversions that use a JSON view or a character encoding other than UTF-8 are
+ * performed by {@link MappingJackson2MessageConverter}. The converted messages are the
+ * same in all cases.
+ *
+ * @since 1.3
+ */
+public class ApplicationJsonMessageConverter extends MappingJackson2MessageConverter {
+
+	private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+	@Override
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		super.setObjectMapper(objectMapper);
+		clearCaches();
+	}
+
+	@Override
+	public void setPrettyPrint(boolean prettyPrint) {
+		super.setPrettyPrint(prettyPrint);
+		clearCaches();
+	}
+
+	@Override
+	protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+		Object payload = message.getPayload();
+		if (getSerializationView(conversionHint) != null
+				|| !(payload instanceof byte[] || payload instanceof String)) {
+			return super.convertFromInternal(message, targetClass, conversionHint);
+		}
+		ObjectReader reader = this.readers.get(targetClass);
+		if (reader == null) {
+			reader = getObjectMapper().readerFor(targetClass);
+			this.readers.putIfAbsent(targetClass, reader);
+		}
+		try {
+			return payload instanceof byte[] ? reader.readValue((byte[]) payload)
+					: reader.readValue((String) payload);
+		}
+		catch (IOException e) {
+			throw new MessageConversionException(message, "Could not read JSON: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+		boolean bytes = byte[].class == getSerializedPayloadClass();
+		if (getSerializationView(conversionHint) != null
+				|| (bytes && getJsonEncoding(getMimeType(headers)) != JsonEncoding.UTF8)) {
+			return super.convertToInternal(payload, headers, conversionHint);
+		}
+		ObjectWriter writer = this.writers.get(payload.getClass());
+		if (writer == null) {
+			writer = getObjectMapper().writerFor(payload.getClass());
+			this.writers.putIfAbsent(payload.getClass(), writer);
+		}
+		try {
+			return bytes ? writer.writeValueAsBytes(payload) : writer.writeValueAsString(payload);
+		}
+		catch (IOException e) {
+			throw new MessageConversionException("Could not write JSON: " + e.getMessage(), e);
+		}
+	}
+
+	private void clearCaches() {
+		// the readers and writers capture the configuration of the object mapper
+		this.readers.clear();
+		this.writers.clear();
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.converter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.tuple.Tuple;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * A {@link MessageConverter} for inbound messages with {@link ByteBuffer} payloads, as
+ * created by binders that expose the received payload as a view instead of copying it
+ * (see {@code ConsumerProperties#isByteBufferPayload()}).
+ * <p>
+ * Conversions to {@link ByteBuffer}, {@code String} and, for JSON content, to POJOs are
+ * performed directly on the view. For any other target type, the payload is copied into
+ * a {@code byte[]} and the conversion is delegated to the given converters.
+ * <p>
+ * Since it accepts any MIME type, it is not looked up by MIME type: the
+ * {@link CompositeMessageConverterFactory} places it in front of the converters selected
+ * for a MIME type.
+ *
+ * @since 1.3
+ */
+public class ByteBufferMessageConverter extends AbstractMessageConverter {
+
+	private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+	private final ObjectMapper objectMapper;
+
+	private final List<MessageConverter> converters;
+
+	/**
+	 * @param objectMapper the object mapper used for reading JSON content
+	 * @param converters the converters to delegate to for conversions that require a
+	 * {@code byte[]} payload
+	 */
+	public ByteBufferMessageConverter(ObjectMapper objectMapper, List<MessageConverter> converters) {
+		super(MimeTypeUtils.ALL);
+		this.objectMapper = objectMapper != null ? objectMapper : new ObjectMapper();
+		this.converters = converters;
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return true;
+	}
+
+	@Override
+	protected boolean canConvertFrom(Message<?> message, Class<?> targetClass) {
+		return targetClass != null && message.getPayload() instanceof ByteBuffer;
+	}
+
+	@Override
+	public boolean canConvertTo(Object payload, MessageHeaders headers) {
+		// only handles inbound conversions
+		return false;
+	}
+
+	@Override
+	protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+		ByteBuffer payload = (ByteBuffer) message.getPayload();
+		if (targetClass.isInstance(payload)) {
+			return payload;
+		}
+		if (byte[].class == targetClass) {
+			return toByteArray(payload);
+		}
+		MimeType mimeType = getMimeType(message.getHeaders());
+		if (String.class == targetClass) {
+			Charset charset = mimeType != null && mimeType.getCharset() != null ? mimeType.getCharset()
+					: DEFAULT_CHARSET;
+			return charset.decode(payload.duplicate()).toString();
+		}
+		if (isJson(mimeType) && !Tuple.class.isAssignableFrom(targetClass)) {
+			try {
+				return this.objectMapper.readValue(new ByteBufferBackedInputStream(payload.duplicate()), targetClass);
+			}
+			catch (IOException e) {
+				throw new MessageConversionException(message, "Could not read JSON: " + e.getMessage(), e);
+			}
+		}
+		Message<byte[]> copy = new GenericMessage<>(toByteArray(payload), message.getHeaders());
+		for (MessageConverter converter : this.converters) {
+			Object result = converter.fromMessage(copy, targetClass);
+			if (result != null) {
+				return result;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isJson(MimeType mimeType) {
+		return mimeType != null && "application".equals(mimeType.getType())
+				&& ("json".equals(mimeType.getSubtype()) || mimeType.getSubtype().endsWith("+json"));
+	}
+
+	private static byte[] toByteArray(ByteBuffer payload) {
+		ByteBuffer view = payload.duplicate();
+		byte[] bytes = new byte[view.remaining()];
+		view.get(bytes);
+		return bytes;
+	}
+
+}
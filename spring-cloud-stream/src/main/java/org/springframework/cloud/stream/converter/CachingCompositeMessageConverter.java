@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.converter;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.converter.SmartMessageConverter;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * A {@link CompositeMessageConverter} that remembers which of its converters performed
+ * a conversion, for a given content type, payload type, target type and conversion
+ * hint. Subsequent conversions with the same characteristics are delegated to that
+ * converter directly instead of trying all the converters in turn; if it cannot
+ * perform the conversion (i.e. returns {@code null}), all the converters are tried
+ * again.
+ *
+ * @since 1.3
+ */
+class CachingCompositeMessageConverter extends CompositeMessageConverter {
+
+	/**
+	 * The maximum number of remembered conversions, as a protection against content
+	 * type headers with unbounded variations.
+	 */
+	private static final int MAX_CACHE_SIZE = 1024;
+
+	private final ConcurrentMap<ResolutionKey, MessageConverter> fromMessageConverters = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<ResolutionKey, MessageConverter> toMessageConverters = new ConcurrentHashMap<>();
+
+	CachingCompositeMessageConverter(Collection<MessageConverter> converters) {
+		super(converters);
+	}
+
+	@Override
+	public Object fromMessage(Message<?> message, Class<?> targetClass) {
+		return fromMessage(message, targetClass, null, false);
+	}
+
+	@Override
+	public Object fromMessage(Message<?> message, Class<?> targetClass, Object conversionHint) {
+		return fromMessage(message, targetClass, conversionHint, true);
+	}
+
+	@Override
+	public Message<?> toMessage(Object payload, MessageHeaders headers) {
+		return toMessage(payload, headers, null, false);
+	}
+
+	@Override
+	public Message<?> toMessage(Object payload, MessageHeaders headers, Object conversionHint) {
+		return toMessage(payload, headers, conversionHint, true);
+	}
+
+	private Object fromMessage(Message<?> message, Class<?> targetClass, Object conversionHint, boolean smart) {
+		ResolutionKey key = new ResolutionKey(message.getHeaders().get(MessageHeaders.CONTENT_TYPE),
+				message.getPayload().getClass(), targetClass, conversionHint);
+		MessageConverter cachedConverter = this.fromMessageConverters.get(key);
+		if (cachedConverter != null) {
+			Object result = fromMessage(cachedConverter, message, targetClass, conversionHint, smart);
+			if (result != null) {
+				return result;
+			}
+			this.fromMessageConverters.remove(key, cachedConverter);
+		}
+		for (MessageConverter converter : getConverters()) {
+			Object result = converter == cachedConverter ? null
+					: fromMessage(converter, message, targetClass, conversionHint, smart);
+			if (result != null) {
+				cache(this.fromMessageConverters, key, converter);
+				return result;
+			}
+		}
+		return null;
+	}
+
+	private Message<?> toMessage(Object payload, MessageHeaders headers, Object conversionHint, boolean smart) {
+		ResolutionKey key = new ResolutionKey(headers != null ? headers.get(MessageHeaders.CONTENT_TYPE) : null,
+				payload.getClass(), null, conversionHint);
+		MessageConverter cachedConverter = this.toMessageConverters.get(key);
+		if (cachedConverter != null) {
+			Message<?> result = toMessage(cachedConverter, payload, headers, conversionHint, smart);
+			if (result != null) {
+				return result;
+			}
+			this.toMessageConverters.remove(key, cachedConverter);
+		}
+		for (MessageConverter converter : getConverters()) {
+			Message<?> result = converter == cachedConverter ? null
+					: toMessage(converter, payload, headers, conversionHint, smart);
+			if (result != null) {
+				cache(this.toMessageConverters, key, converter);
+				return result;
+			}
+		}
+		return null;
+	}
+
+	private static Object fromMessage(MessageConverter converter, Message<?> message, Class<?> targetClass,
+			Object conversionHint, boolean smart) {
+		return smart && converter instanceof SmartMessageConverter
+				? ((SmartMessageConverter) converter).fromMessage(message, targetClass, conversionHint)
+				: converter.fromMessage(message, targetClass);
+	}
+
+	private static Message<?> toMessage(MessageConverter converter, Object payload, MessageHeaders headers,
+			Object conversionHint, boolean smart) {
+		return smart && converter instanceof SmartMessageConverter
+				? ((SmartMessageConverter) converter).toMessage(payload, headers, conversionHint)
+				: converter.toMessage(payload, headers);
+	}
+
+	private static void cache(ConcurrentMap<ResolutionKey, MessageConverter> converters, ResolutionKey key,
+			MessageConverter converter) {
+		if (converters.size() < MAX_CACHE_SIZE) {
+			converters.put(key, converter);
+		}
+	}
+
+	/**
+	 * @return the number of remembered conversions, for testing
+	 */
+	int getCacheSize() {
+		return this.fromMessageConverters.size() + this.toMessageConverters.size();
+	}
+
+	@Override
+	public String toString() {
+		return "CachingCompositeMessageConverter[converters=" + getConverters() + "]";
+	}
+
+	private static final class ResolutionKey {
+
+		private final Object contentType;
+
+		private final Class<?> payloadType;
+
+		private final Class<?> targetType;
+
+		private final Object conversionHint;
+
+		private final int hashCode;
+
+		private ResolutionKey(Object contentType, Class<?> payloadType, Class<?> targetType, Object conversionHint) {
+			this.contentType = contentType;
+			this.payloadType = payloadType;
+			this.targetType = targetType;
+			this.conversionHint = conversionHint;
+			int hashCode = ObjectUtils.nullSafeHashCode(contentType);
+			hashCode = 31 * hashCode + payloadType.hashCode();
+			hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode(targetType);
+			this.hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode(conversionHint);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof ResolutionKey)) {
+				return false;
+			}
+			ResolutionKey otherKey = (ResolutionKey) other;
+			return this.payloadType == otherKey.payloadType && this.targetType == otherKey.targetType
+					&& ObjectUtils.nullSafeEquals(this.contentType, otherKey.contentType)
+					&& ObjectUtils.nullSafeEquals(this.conversionHint, otherKey.conversionHint);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+	}
+
+}
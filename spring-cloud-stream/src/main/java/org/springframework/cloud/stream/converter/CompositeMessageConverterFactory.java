@@ -19,6 +19,8 @@ package org.springframework.cloud.stream.converter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.logging.Log;
@@ -47,6 +49,8 @@ public class CompositeMessageConverterFactory {
 
 	private final List<MessageConverter> converters;
 
+	private final ConcurrentMap<MimeType, MessageConverter> convertersByType = new ConcurrentHashMap<>();
+
 	public CompositeMessageConverterFactory() {
 		this(Collections.<MessageConverter>emptyList(), new ObjectMapper());
 	}
@@ -69,7 +73,7 @@ public class CompositeMessageConverterFactory {
 	private void initDefaultConverters() {
 		this.converters.add(new TupleJsonMessageConverter(this.objectMapper));
 
-		MappingJackson2MessageConverter jsonMessageConverter = new MappingJackson2MessageConverter();
+		MappingJackson2MessageConverter jsonMessageConverter = new ApplicationJsonMessageConverter();
 		jsonMessageConverter.setSerializedPayloadClass(String.class);
 		if (this.objectMapper != null) {
 			jsonMessageConverter.setObjectMapper(this.objectMapper);
@@ -83,11 +87,26 @@ public class CompositeMessageConverterFactory {
 	}
 
 	/**
-	 * Creation method.
+	 * Creation method. If several converters support the MIME type, the returned
+	 * converter remembers which one converted messages with a given content type and
+	 * payload type, and uses it directly for subsequent messages. Converters are shared
+	 * between callers requesting the same MIME type.
 	 * @param mimeType the target MIME type
 	 * @return a converter for the target MIME type
 	 */
 	public MessageConverter getMessageConverterForType(MimeType mimeType) {
+		MessageConverter messageConverter = this.convertersByType.get(mimeType);
+		if (messageConverter == null) {
+			messageConverter = createMessageConverterForType(mimeType);
+			MessageConverter existing = this.convertersByType.putIfAbsent(mimeType, messageConverter);
+			if (existing != null) {
+				messageConverter = existing;
+			}
+		}
+		return messageConverter;
+	}
+
+	private MessageConverter createMessageConverterForType(MimeType mimeType) {
 		List<MessageConverter> converters = new ArrayList<>();
 		for (MessageConverter converter : this.converters) {
 			if (converter instanceof AbstractMessageConverter) {
@@ -108,16 +127,29 @@ public class CompositeMessageConverterFactory {
 			throw new ConversionException("No message converter is registered for "
 					+ mimeType.toString());
 		}
-		if (converters.size() > 1) {
-			return new CompositeMessageConverter(converters);
-		}
-		else {
-			return converters.get(0);
-		}
+		return new CachingCompositeMessageConverter(withByteBufferSupport(converters));
 	}
 
+	/**
+	 * @return a converter that delegates to all the registered converters, remembering
+	 * which one converted messages with a given content type, payload type and target
+	 * type
+	 */
 	public CompositeMessageConverter getMessageConverterForAllRegistered() {
-		return new CompositeMessageConverter(new ArrayList<>(this.converters));
+		return new CachingCompositeMessageConverter(withByteBufferSupport(this.converters));
+	}
+
+	/**
+	 * Precede the given converters, none of which accepts {@link java.nio.ByteBuffer}
+	 * payloads, with a converter that handles them or delegates to the given converters.
+	 * It supports all MIME types, so it is not included when looking up the converters
+	 * for a MIME type.
+	 */
+	private List<MessageConverter> withByteBufferSupport(List<MessageConverter> converters) {
+		List<MessageConverter> result = new ArrayList<>(converters.size() + 1);
+		result.add(new ByteBufferMessageConverter(this.objectMapper, new ArrayList<>(converters)));
+		result.addAll(converters);
+		return result;
 	}
 
 }
@@ -17,8 +17,11 @@
 package org.springframework.cloud.stream.converter;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
@@ -37,6 +40,8 @@ public class JsonUnmarshallingConverter extends AbstractMessageConverter {
 
 	private final ObjectMapper objectMapper;
 
+	private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
 	protected JsonUnmarshallingConverter(ObjectMapper objectMapper) {
 		super(MessageConverterUtils.X_JAVA_OBJECT);
 		this.objectMapper = objectMapper != null ? objectMapper : new ObjectMapper();
@@ -71,9 +76,14 @@ public class JsonUnmarshallingConverter extends AbstractMessageConverter {
 	@Override
 	protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
 		Object payload = message.getPayload();
+		ObjectReader reader = this.readers.get(targetClass);
+		if (reader == null) {
+			reader = this.objectMapper.readerFor(targetClass);
+			this.readers.putIfAbsent(targetClass, reader);
+		}
 		try {
-			return payload instanceof byte[] ? objectMapper.readValue((byte[]) payload, targetClass)
-					: objectMapper.readValue((String) payload, targetClass);
+			return payload instanceof byte[] ? reader.readValue((byte[]) payload)
+					: reader.readValue((String) payload);
 		}
 		catch (IOException e) {
 			throw new MessageConversionException("Cannot parse payload ", e);
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.converter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.tuple.Tuple;
+import org.springframework.tuple.TupleBuilder;
+
+/**
+ * Streaming conversion between {@link Tuple}s and JSON, producing the same JSON as
+ * {@link Tuple#toString()} and the same tuples as {@link TupleBuilder#fromString(String)},
+ * without building an intermediate tree of JSON nodes, and reading {@code byte[]}
+ * payloads without decoding them to a {@code String} first.
+ * <p>
+ * JSON is read and written with the factory of the given {@link ObjectMapper}, which
+ * also serializes the values that are neither tuples, lists nor simple types. As with
+ * {@link TupleBuilder#fromString(String)}, single quotes are allowed when reading.
+ *
+ * @since 1.3
+ */
+final class TupleJsonCodec {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final JsonFactory jsonFactory;
+
+	TupleJsonCodec(ObjectMapper objectMapper) {
+		this.jsonFactory = objectMapper.getFactory();
+	}
+
+	String write(Tuple tuple, boolean prettyPrint) throws IOException {
+		StringWriter writer = new StringWriter();
+		JsonGenerator generator = this.jsonFactory.createGenerator(writer);
+		if (prettyPrint) {
+			generator.useDefaultPrettyPrinter();
+		}
+		writeTuple(generator, tuple);
+		generator.close();
+		return writer.toString();
+	}
+
+	Tuple read(byte[] json) throws IOException {
+		JsonParser parser = this.jsonFactory.createParser(json);
+		try {
+			if (parser.enable(JsonParser.Feature.ALLOW_SINGLE_QUOTES).nextToken() != JsonToken.START_OBJECT) {
+				// anything but an object at the root is rare, leave it to TupleBuilder
+				return TupleBuilder.fromString(new String(json, UTF_8));
+			}
+			return readTuple(parser);
+		}
+		finally {
+			parser.close();
+		}
+	}
+
+	Tuple read(String json) throws IOException {
+		JsonParser parser = this.jsonFactory.createParser(json);
+		try {
+			if (parser.enable(JsonParser.Feature.ALLOW_SINGLE_QUOTES).nextToken() != JsonToken.START_OBJECT) {
+				return TupleBuilder.fromString(json);
+			}
+			return readTuple(parser);
+		}
+		finally {
+			parser.close();
+		}
+	}
+
+	private static void writeTuple(JsonGenerator generator, Tuple tuple) throws IOException {
+		generator.writeStartObject();
+		List<String> names = tuple.getFieldNames();
+		List<Object> values = tuple.getValues();
+		for (int i = 0; i < names.size(); i++) {
+			generator.writeFieldName(names.get(i));
+			writeValue(generator, values.get(i));
+		}
+		generator.writeEndObject();
+	}
+
+	private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+		if (value == null) {
+			generator.writeNull();
+		}
+		else if (value instanceof Tuple) {
+			writeTuple(generator, (Tuple) value);
+		}
+		else if (value instanceof List) {
+			generator.writeStartArray();
+			for (Object element : (List<?>) value) {
+				// null elements are left out, as in Tuple.toString()
+				if (element != null) {
+					writeValue(generator, element);
+				}
+			}
+			generator.writeEndArray();
+		}
+		else if (value instanceof String) {
+			generator.writeString((String) value);
+		}
+		else if (value instanceof Integer) {
+			generator.writeNumber((Integer) value);
+		}
+		else if (value instanceof Long) {
+			generator.writeNumber((Long) value);
+		}
+		else if (value instanceof Double) {
+			generator.writeNumber((Double) value);
+		}
+		else if (value instanceof Boolean) {
+			generator.writeBoolean((Boolean) value);
+		}
+		else {
+			generator.writeObject(value);
+		}
+	}
+
+	/**
+	 * Read the fields of an object, after its start token.
+	 */
+	private static Tuple readTuple(JsonParser parser) throws IOException {
+		// as with a tree of JSON nodes, the last value of a duplicate field wins
+		Map<String, Object> fields = new LinkedHashMap<>();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			fields.put(name, readValue(parser, parser.nextToken()));
+		}
+		return TupleBuilder.tuple().ofNamesAndValues(new ArrayList<>(fields.keySet()),
+				new ArrayList<>(fields.values()));
+	}
+
+	private static Object readValue(JsonParser parser, JsonToken token) throws IOException {
+		switch (token) {
+		case START_OBJECT:
+			return readTuple(parser);
+		case START_ARRAY:
+			List<Object> elements = new ArrayList<>();
+			JsonToken elementToken;
+			while ((elementToken = parser.nextToken()) != JsonToken.END_ARRAY) {
+				elements.add(readValue(parser, elementToken));
+			}
+			return elements;
+		case VALUE_NULL:
+			return null;
+		case VALUE_TRUE:
+			return Boolean.TRUE;
+		case VALUE_FALSE:
+			return Boolean.FALSE;
+		case VALUE_NUMBER_INT:
+		case VALUE_NUMBER_FLOAT:
+			return parser.getNumberValue();
+		default:
+			return parser.getText();
+		}
+	}
+
+}
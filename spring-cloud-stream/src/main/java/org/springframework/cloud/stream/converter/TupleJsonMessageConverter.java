@@ -17,7 +17,6 @@
 package org.springframework.cloud.stream.converter;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.Arrays;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -26,8 +25,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
 import org.springframework.tuple.Tuple;
-import org.springframework.tuple.TupleBuilder;
 import org.springframework.util.MimeTypeUtils;
 
 /**
@@ -41,12 +40,15 @@ public class TupleJsonMessageConverter extends AbstractMessageConverter {
 
 	private final ObjectMapper objectMapper;
 
+	private final TupleJsonCodec codec;
+
 	@Value("${typeconversion.json.prettyPrint:false}")
 	private volatile boolean prettyPrint;
 
 	public TupleJsonMessageConverter(ObjectMapper objectMapper) {
 		super(Arrays.asList(MessageConverterUtils.X_SPRING_TUPLE, MimeTypeUtils.APPLICATION_JSON));
 		this.objectMapper = (objectMapper != null) ? objectMapper : new ObjectMapper();
+		this.codec = new TupleJsonCodec(this.objectMapper);
 	}
 
 	public void setPrettyPrint(boolean prettyPrint) {
@@ -60,34 +62,25 @@ public class TupleJsonMessageConverter extends AbstractMessageConverter {
 
 	@Override
 	protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
-		Tuple t = (Tuple) payload;
-		String json;
-		if (this.prettyPrint) {
-			try {
-				Object tmp = this.objectMapper.readValue(t.toString(), Object.class);
-				json = this.objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(tmp);
-			}
-			catch (IOException e) {
-				this.logger.error(e.getMessage(), e);
-				return null;
-			}
+		try {
+			return this.codec.write((Tuple) payload, this.prettyPrint);
 		}
-		else {
-			json = t.toString();
+		catch (IOException e) {
+			this.logger.error(e.getMessage(), e);
+			return null;
 		}
-		return json;
 	}
 
 	@Override
 	public Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
-		String source;
-		if (message.getPayload() instanceof byte[]) {
-			source = new String((byte[]) message.getPayload(), Charset.forName("UTF-8"));
+		Object payload = message.getPayload();
+		try {
+			return payload instanceof byte[] ? this.codec.read((byte[]) payload)
+					: this.codec.read(payload.toString());
 		}
-		else {
-			source = message.getPayload().toString();
+		catch (IOException e) {
+			throw new MessageConversionException(message, "Could not read JSON: " + e.getMessage(), e);
 		}
-		return TupleBuilder.fromString(source);
 	}
 
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.endpoint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.stream.binder.PartitionHandler;
+import org.springframework.cloud.stream.binding.MessageConverterConfigurer;
+import org.springframework.cloud.stream.binding.PartitionStatistics;
+
+/**
+ * {@link PublicMetrics} for the partitioned output bindings. For each binding, the
+ * gauges {@code spring.cloud.stream.binding.<name>.partitionKeyExpression.compiled} and
+ * {@code spring.cloud.stream.binding.<name>.partitionSelectorExpression.compiled} are
+ * {@code 1} if the corresponding expression is evaluated directly or in compiled form,
+ * and {@code 0} if it is interpreted. Gauges are reported only for the configured
+ * expressions. The gauges
+ * {@code spring.cloud.stream.binding.<name>.partition.<partition>.send.count} and
+ * {@code spring.cloud.stream.binding.<name>.partition.<partition>.send.bytes} report
+ * the number of messages and payload bytes sent to each partition, and
+ * {@code spring.cloud.stream.binding.<name>.partition.skew} the ratio between the
+ * number of messages sent to the busiest partition and the average.
+ *
+ * @since 1.3
+ */
+public class PartitioningMetrics implements PublicMetrics {
+
+	private static final String PREFIX = "spring.cloud.stream.binding.";
+
+	private final MessageConverterConfigurer messageConverterConfigurer;
+
+	public PartitioningMetrics(MessageConverterConfigurer messageConverterConfigurer) {
+		this.messageConverterConfigurer = messageConverterConfigurer;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		Collection<Metric<?>> metrics = new ArrayList<>();
+		for (Map.Entry<String, PartitionHandler> entry : this.messageConverterConfigurer.getPartitionHandlers()
+				.entrySet()) {
+			PartitionHandler partitionHandler = entry.getValue();
+			String prefix = PREFIX + entry.getKey();
+			if (partitionHandler.hasPartitionKeyExpression()) {
+				metrics.add(new Metric<Integer>(prefix + ".partitionKeyExpression.compiled",
+						partitionHandler.isPartitionKeyExpressionCompiled() ? 1 : 0));
+			}
+			if (partitionHandler.hasPartitionSelectorExpression()) {
+				metrics.add(new Metric<Integer>(prefix + ".partitionSelectorExpression.compiled",
+						partitionHandler.isPartitionSelectorExpressionCompiled() ? 1 : 0));
+			}
+		}
+		for (Map.Entry<String, PartitionStatistics> entry : this.messageConverterConfigurer.getPartitionStatistics()
+				.entrySet()) {
+			PartitionStatistics statistics = entry.getValue();
+			String prefix = PREFIX + entry.getKey() + ".partition.";
+			for (int partition = 0; partition < statistics.getPartitionCount(); partition++) {
+				metrics.add(new Metric<Long>(prefix + partition + ".send.count", statistics.getSendCount(partition)));
+				metrics.add(new Metric<Long>(prefix + partition + ".send.bytes", statistics.getByteCount(partition)));
+			}
+			metrics.add(new Metric<Double>(prefix + "skew", statistics.getSkew()));
+		}
+		return metrics;
+	}
+
+}
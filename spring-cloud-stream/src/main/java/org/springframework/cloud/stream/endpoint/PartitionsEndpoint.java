@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.endpoint;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.actuate.endpoint.Endpoint;
+import org.springframework.cloud.stream.binding.MessageConverterConfigurer;
+import org.springframework.cloud.stream.binding.PartitionStatistics;
+
+/**
+ * An {@link Endpoint} that reports, for each partitioned output binding, the number of
+ * messages and payload bytes sent to each partition, the skew of the distribution and
+ * the most frequent partition keys.
+ *
+ * @since 1.3
+ */
+public class PartitionsEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+	private final MessageConverterConfigurer messageConverterConfigurer;
+
+	public PartitionsEndpoint(MessageConverterConfigurer messageConverterConfigurer) {
+		super("partitions");
+		this.messageConverterConfigurer = messageConverterConfigurer;
+	}
+
+	@Override
+	public Map<String, Object> invoke() {
+		Map<String, Object> bindings = new TreeMap<>();
+		for (Map.Entry<String, PartitionStatistics> entry : this.messageConverterConfigurer.getPartitionStatistics()
+				.entrySet()) {
+			PartitionStatistics statistics = entry.getValue();
+			Map<String, Object> binding = new LinkedHashMap<>();
+			binding.put("partitionCount", statistics.getPartitionCount());
+			binding.put("skew", statistics.getSkew());
+			List<Map<String, Object>> partitions = new ArrayList<>();
+			for (int partition = 0; partition < statistics.getPartitionCount(); partition++) {
+				Map<String, Object> partitionInfo = new LinkedHashMap<>();
+				partitionInfo.put("partition", partition);
+				partitionInfo.put("sendCount", statistics.getSendCount(partition));
+				partitionInfo.put("sendBytes", statistics.getByteCount(partition));
+				partitions.add(partitionInfo);
+			}
+			binding.put("partitions", partitions);
+			List<Map<String, Object>> hotKeys = new ArrayList<>();
+			for (PartitionStatistics.HotKey hotKey : statistics.getHotKeys()) {
+				Map<String, Object> hotKeyInfo = new LinkedHashMap<>();
+				hotKeyInfo.put("key", hotKey.getKey());
+				hotKeyInfo.put("keyHash", String.format("%016x", hotKey.getKeyHash()));
+				hotKeyInfo.put("count", hotKey.getCount());
+				hotKeyInfo.put("error", hotKey.getError());
+				hotKeys.add(hotKeyInfo);
+			}
+			binding.put("hotKeys", hotKeys);
+			bindings.put(entry.getKey(), binding);
+		}
+		return bindings;
+	}
+
+}
@@ -387,6 +387,21 @@ public class AggregationTest {
 		context.close();
 	}
 
+	@Test
+	public void testBindableProxyFactoryTargetsResolvedOnInitialization() {
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(
+				MockBinderRegistryConfiguration.class, TestProcessor.class);
+		BindableProxyFactory factory = context.getBean(BindableProxyFactory.class);
+		Field field = ReflectionUtils.findField(BindableProxyFactory.class, "targetCache");
+		ReflectionUtils.makeAccessible(field);
+		Map<?, ?> targetCache = (Map<?, ?>) ReflectionUtils.getField(field, factory);
+		assertThat(targetCache).hasSize(2);
+		Processor processor = context.getBean(Processor.class);
+		assertThat(targetCache.values()).containsOnly(processor.input(), processor.output());
+		assertThat(ReflectionUtils.getField(field, factory)).isSameAs(targetCache);
+		context.close();
+	}
+
 	@EnableBinding(Source.class)
 	@EnableAutoConfiguration
 	public static class TestSource {
@@ -17,9 +17,16 @@
 package org.springframework.cloud.stream.binder;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
@@ -39,14 +46,25 @@ import org.springframework.integration.channel.PublishSubscribeChannel;
 import org.springframework.integration.core.MessageProducer;
 import org.springframework.integration.handler.BridgeHandler;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * @author Marius Bogoevici
@@ -137,23 +155,202 @@ public class AbstractMessageChannelBinderTests {
 		assertThat(context.containsBean("foo.fooGroup.errors.bridge")).isFalse();
 	}
 
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void testBatchingProducerSendsFullBatchesAndFlushesOnUnbind() throws Exception {
+		StubMessageChannelBinder binder = new StubMessageChannelBinder(false, true);
+		GenericApplicationContext context = createBatchingContext();
+		binder.setApplicationContext(context);
+		ProducerProperties producerProperties = new ProducerProperties();
+		producerProperties.setBatchingEnabled(true);
+		producerProperties.setBatchSize(3);
+		DirectChannel outputChannel = new DirectChannel();
+		Binding<MessageChannel> producerBinding = binder.bindProducer("bar", outputChannel, producerProperties);
+		BatchMessageHandler messageHandler = (BatchMessageHandler) binder.producerMessageHandler;
+		for (int i = 0; i < 4; i++) {
+			outputChannel.send(new GenericMessage<>(("foo" + i).getBytes()));
+		}
+		ArgumentCaptor<List> batchCaptor = ArgumentCaptor.forClass(List.class);
+		verify(messageHandler).handleMessages(batchCaptor.capture());
+		assertThat(batchCaptor.getValue()).hasSize(3);
+		assertThat(((Message<?>) batchCaptor.getValue().get(0)).getPayload()).isEqualTo("foo0".getBytes());
+		producerBinding.unbind();
+		verify(messageHandler, times(2)).handleMessages(batchCaptor.capture());
+		assertThat(batchCaptor.getValue()).hasSize(1);
+		assertThat(((Message<?>) batchCaptor.getValue().get(0)).getPayload()).isEqualTo("foo3".getBytes());
+		verify(messageHandler, never()).handleMessage(any(Message.class));
+		verify((Lifecycle) messageHandler).stop();
+		context.close();
+	}
+
+	@Test
+	public void testBatchingProducerFlushesAfterTimeout() throws Exception {
+		StubMessageChannelBinder binder = new StubMessageChannelBinder(false, true);
+		GenericApplicationContext context = createBatchingContext();
+		binder.setApplicationContext(context);
+		ProducerProperties producerProperties = new ProducerProperties();
+		producerProperties.setBatchingEnabled(true);
+		producerProperties.setBatchTimeout(100);
+		DirectChannel outputChannel = new DirectChannel();
+		Binding<MessageChannel> producerBinding = binder.bindProducer("bar", outputChannel, producerProperties);
+		BatchMessageHandler messageHandler = (BatchMessageHandler) binder.producerMessageHandler;
+		outputChannel.send(new GenericMessage<>("foo".getBytes()));
+		verify(messageHandler, timeout(10000)).handleMessages(Matchers.<List<Message<?>>>any());
+		producerBinding.unbind();
+		verify(messageHandler).handleMessages(Matchers.<List<Message<?>>>any());
+		context.close();
+	}
+
+	@Test
+	public void testBatchingProducerReportsFailedBatch() throws Exception {
+		StubMessageChannelBinder binder = new StubMessageChannelBinder(false, true);
+		GenericApplicationContext context = createBatchingContext();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final ErrorMessage[] errorMessage = new ErrorMessage[1];
+		((PublishSubscribeChannel) context.getBean("errorChannel")).subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				errorMessage[0] = (ErrorMessage) message;
+				latch.countDown();
+			}
+
+		});
+		binder.setApplicationContext(context);
+		ProducerProperties producerProperties = new ProducerProperties();
+		producerProperties.setBatchingEnabled(true);
+		producerProperties.setBatchSize(2);
+		DirectChannel outputChannel = new DirectChannel();
+		binder.bindProducer("bar", outputChannel, producerProperties);
+		doThrow(new MessagingException("test")).when((BatchMessageHandler) binder.producerMessageHandler)
+				.handleMessages(Matchers.<List<Message<?>>>any());
+		outputChannel.send(new GenericMessage<>("foo".getBytes()));
+		outputChannel.send(new GenericMessage<>("bar".getBytes()));
+		assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+		MessagingException exception = (MessagingException) errorMessage[0].getPayload();
+		assertThat((List<?>) exception.getFailedMessage().getPayload()).hasSize(2);
+		context.close();
+	}
+
+	@Test
+	public void testBatchingProducerSendsBatchesOneAtATime() throws Exception {
+		StubMessageChannelBinder binder = new StubMessageChannelBinder(false, true);
+		GenericApplicationContext context = createBatchingContext();
+		binder.setApplicationContext(context);
+		ProducerProperties producerProperties = new ProducerProperties();
+		producerProperties.setBatchingEnabled(true);
+		producerProperties.setBatchSize(1);
+		final DirectChannel outputChannel = new DirectChannel();
+		binder.bindProducer("bar", outputChannel, producerProperties);
+		final AtomicInteger sending = new AtomicInteger();
+		final AtomicInteger maxSending = new AtomicInteger();
+		final AtomicInteger sent = new AtomicInteger();
+		willAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				int current = sending.incrementAndGet();
+				if (current > maxSending.get()) {
+					maxSending.set(current);
+				}
+				Thread.sleep(5);
+				sent.incrementAndGet();
+				sending.decrementAndGet();
+				return null;
+			}
+
+		}).given((BatchMessageHandler) binder.producerMessageHandler).handleMessages(
+				Matchers.<List<Message<?>>>any());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		for (int i = 0; i < 4; i++) {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 5; j++) {
+						outputChannel.send(new GenericMessage<>("foo".getBytes()));
+					}
+				}
+
+			});
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(sent.get()).isEqualTo(20);
+		assertThat(maxSending.get()).isEqualTo(1);
+		context.close();
+	}
+
+	@Test
+	public void testBatchingProducerSendsDirectlyAfterStop() throws Exception {
+		StubMessageChannelBinder binder = new StubMessageChannelBinder(false, true);
+		GenericApplicationContext context = createBatchingContext();
+		binder.setApplicationContext(context);
+		ProducerProperties producerProperties = new ProducerProperties();
+		producerProperties.setBatchingEnabled(true);
+		producerProperties.setBatchTimeout(60000);
+		DirectChannel outputChannel = new DirectChannel();
+		Binding<MessageChannel> producerBinding = binder.bindProducer("bar", outputChannel, producerProperties);
+		BatchMessageHandler messageHandler = (BatchMessageHandler) binder.producerMessageHandler;
+		((Lifecycle) new DirectFieldAccessor(producerBinding).getPropertyValue("lifecycle")).stop();
+		verify(messageHandler, never()).handleMessages(Matchers.<List<Message<?>>>any());
+		outputChannel.send(new GenericMessage<>("foo".getBytes()));
+		verify(messageHandler).handleMessages(Matchers.<List<Message<?>>>any());
+		context.close();
+	}
+
+	@Test
+	public void testBatchingIgnoredWhenNotSupported() throws Exception {
+		StubMessageChannelBinder binder = new StubMessageChannelBinder();
+		GenericApplicationContext context = createBatchingContext();
+		binder.setApplicationContext(context);
+		ProducerProperties producerProperties = new ProducerProperties();
+		producerProperties.setBatchingEnabled(true);
+		DirectChannel outputChannel = new DirectChannel();
+		Binding<MessageChannel> producerBinding = binder.bindProducer("bar", outputChannel, producerProperties);
+		outputChannel.send(new GenericMessage<>("foo".getBytes()));
+		verify(binder.producerMessageHandler).handleMessage(any(Message.class));
+		assertThat(new DirectFieldAccessor(producerBinding).getPropertyValue("lifecycle"))
+				.isSameAs(binder.producerMessageHandler);
+		context.close();
+	}
+
+	private GenericApplicationContext createBatchingContext() {
+		GenericApplicationContext context = new GenericApplicationContext();
+		ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+		taskScheduler.initialize();
+		context.getBeanFactory().registerSingleton("taskScheduler", taskScheduler);
+		context.getBeanFactory().registerSingleton("errorChannel", new PublishSubscribeChannel());
+		context.refresh();
+		return context;
+	}
+
 	private static class StubMessageChannelBinder extends
 			AbstractMessageChannelBinder<ConsumerProperties, ProducerProperties,
 										ProvisioningProvider<ConsumerProperties, ProducerProperties>> {
 
 		private final boolean hasRecoverer;
 
+		private final boolean batchCapable;
+
 		private ErrorInfrastructure errorInfrastructure;
 
+		private MessageHandler producerMessageHandler;
+
 		StubMessageChannelBinder() {
 			this(false);
 		}
 
-		@SuppressWarnings("unchecked")
 		StubMessageChannelBinder(boolean hasRecoverer) {
+			this(hasRecoverer, false);
+		}
+
+		@SuppressWarnings("unchecked")
+		StubMessageChannelBinder(boolean hasRecoverer, boolean batchCapable) {
 			super(true, null, Mockito.mock(ProvisioningProvider.class));
 			mockProvisioner();
 			this.hasRecoverer = hasRecoverer;
+			this.batchCapable = batchCapable;
 		}
 
 		private void mockProvisioner() {
@@ -171,8 +368,10 @@ public class AbstractMessageChannelBinderTests {
 		@Override
 		protected MessageHandler createProducerMessageHandler(ProducerDestination destination,
 				ProducerProperties producerProperties) throws Exception {
-			MessageHandler mock = Mockito.mock(MessageHandler.class, Mockito.withSettings()
-					.extraInterfaces(Lifecycle.class, InitializingBean.class, DisposableBean.class));
+			MessageHandler mock = Mockito.mock(this.batchCapable ? BatchMessageHandler.class : MessageHandler.class,
+					Mockito.withSettings().extraInterfaces(Lifecycle.class, InitializingBean.class,
+							DisposableBean.class));
+			this.producerMessageHandler = mock;
 			return mock;
 		}
 
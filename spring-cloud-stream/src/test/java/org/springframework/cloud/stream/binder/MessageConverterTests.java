@@ -16,12 +16,36 @@
 
 package org.springframework.cloud.stream.binder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
+import org.springframework.cloud.stream.converter.CompositeMessageConverterFactory;
+import org.springframework.integration.codec.Codec;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.support.ErrorMessage;
 import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -112,6 +136,297 @@ public class MessageConverterTests {
 		assertThat(new String(embedded).substring(1)).isEqualTo("\u0001\u0003foo\u0000\u0000\u0000\u0005\"bar\"Hello");
 	}
 
+	@Test
+	public void testBinaryHeaderEmbedding() throws Exception {
+		UUID correlationId = UUID.randomUUID();
+		Message<byte[]> message = MessageBuilder.withPayload("Hello".getBytes())
+				.setHeader("contentType", MimeTypeUtils.TEXT_PLAIN)
+				.setCorrelationId(correlationId)
+				.setSequenceNumber(3)
+				.setHeader("foo", "bar")
+				.setHeader("long", 42L)
+				.setHeader("flag", true)
+				.setHeader("bytes", new byte[] { 1, 2 })
+				.setHeader("missing", null)
+				.build();
+		byte[] embedded = EmbeddedHeaderUtils.embedHeaders(new MessageValues(message), EmbeddedHeadersFormat.binary,
+				EmbeddedHeaderUtils.headersToEmbed(new String[] { "foo", "long", "flag", "bytes", "missing" }));
+		assertThat(embedded[0] & 0xff).isEqualTo(0xff);
+		assertThat(embedded[1] & 0xff).isEqualTo(0xff);
+		assertThat(embedded[2]).isEqualTo((byte) 7);
+		// correlation id is encoded as a dictionary id, followed by a typed UUID
+		assertThat(embedded[3]).isEqualTo((byte) 1);
+		assertThat(new String(embedded, "UTF-8")).endsWith("Hello");
+
+		MessageValues extracted = EmbeddedHeaderUtils.extractHeaders(MessageBuilder.withPayload(embedded).build(),
+				false);
+		assertThat(new String((byte[]) extracted.getPayload())).isEqualTo("Hello");
+		assertThat(extracted.get("contentType")).isEqualTo(MimeTypeUtils.TEXT_PLAIN);
+		assertThat(extracted.get("correlationId")).isEqualTo(correlationId);
+		assertThat(extracted.get("sequenceNumber")).isEqualTo(3);
+		assertThat(extracted.get("foo")).isEqualTo("bar");
+		assertThat(extracted.get("long")).isEqualTo(42L);
+		assertThat(extracted.get("flag")).isEqualTo(true);
+		assertThat((byte[]) extracted.get("bytes")).containsExactly(1, 2);
+		assertThat(extracted.containsKey("missing")).isFalse();
+	}
+
+	@Test
+	public void testBinaryFormatIsMoreCompactThanJson() throws Exception {
+		Message<byte[]> message = MessageBuilder.withPayload("Hello".getBytes())
+				.setHeader("contentType", MimeType.valueOf("application/json"))
+				.setHeader(BinderHeaders.BINDER_ORIGINAL_CONTENT_TYPE, "application/x-java-object")
+				.setCorrelationId(UUID.randomUUID())
+				.build();
+		MessageValues messageValues = new MessageValues(message);
+		byte[] binary = EmbeddedHeaderUtils.embedHeaders(messageValues, EmbeddedHeadersFormat.binary,
+				BinderHeaders.STANDARD_HEADERS);
+		messageValues.put("contentType", "application/json");
+		byte[] json = EmbeddedHeaderUtils.embedHeaders(messageValues, EmbeddedHeadersFormat.json,
+				BinderHeaders.STANDARD_HEADERS);
+		assertThat(binary.length).isLessThan(json.length);
+		assertThat(EmbeddedHeaderUtils.extractHeaders(binary).get(BinderHeaders.BINDER_ORIGINAL_CONTENT_TYPE))
+				.isEqualTo("application/x-java-object");
+	}
+
+	@Test
+	public void testBinaryUnknownHeaderId() throws Exception {
+		byte[] bytes = new byte[] { (byte) 0xff, (byte) 0xff, 1, 127, 1, 0, 0, 0, 0 };
+		try {
+			EmbeddedHeaderUtils.extractHeaders(bytes);
+			Assert.fail("Exception expected");
+		}
+		catch (IllegalArgumentException e) {
+			assertThat(e.getMessage()).isEqualTo("Unknown embedded header id: 127");
+		}
+	}
+
+	@Test
+	public void testHeaderExtractionWithPayloadView() throws Exception {
+		Message<byte[]> message = MessageBuilder.withPayload("Hello".getBytes()).setHeader("foo", "bar").build();
+		byte[] embedded = EmbeddedHeaderUtils.embedHeaders(new MessageValues(message), "foo");
+		MessageValues extracted = EmbeddedHeaderUtils.extractHeaders(MessageBuilder.withPayload(embedded).build(),
+				false, true);
+		assertThat(extracted.get("foo")).isEqualTo("bar");
+		assertThat(extracted.getPayload()).isInstanceOf(ByteBuffer.class);
+		ByteBuffer view = (ByteBuffer) extracted.getPayload();
+		assertThat(view.isReadOnly()).isTrue();
+		assertThat(view.remaining()).isEqualTo(5);
+		assertThat(new String((byte[]) EmbeddedHeaderUtils.materializePayload(view))).isEqualTo("Hello");
+		// materializing does not consume the view
+		assertThat(view.remaining()).isEqualTo(5);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testByteBufferPayloadConversion() throws Exception {
+		MessageConverter converter = new CompositeMessageConverterFactory().getMessageConverterForAllRegistered();
+		ByteBuffer view = ByteBuffer.wrap("xx{\"foo\":\"bar\"}".getBytes("UTF-8"), 2, 13).slice().asReadOnlyBuffer();
+		Message<ByteBuffer> message = MessageBuilder.withPayload(view).setHeader("contentType", "application/json")
+				.build();
+		assertThat(converter.fromMessage(message, ByteBuffer.class)).isSameAs(view);
+		assertThat(converter.fromMessage(message, String.class)).isEqualTo("{\"foo\":\"bar\"}");
+		assertThat(new String((byte[]) converter.fromMessage(message, byte[].class), "UTF-8"))
+				.isEqualTo("{\"foo\":\"bar\"}");
+		assertThat((Map<String, Object>) converter.fromMessage(message, Map.class)).containsEntry("foo", "bar");
+		assertThat(view.remaining()).isEqualTo(13);
+	}
+
+	@Test
+	public void testHeaderValuesDecodedOnAccess() throws Exception {
+		byte[] bytes = "\u00ff\u0002\u0003foo\u0000\u0000\u0000\u0005\"bar\"\u0003baz\u0000\u0000\u0000\u0004{bazHello"
+				.getBytes("ISO-8859-1");
+		MessageValues extracted = EmbeddedHeaderUtils.extractHeaders(new GenericMessage<>(bytes), true);
+		assertThat(new String((byte[]) extracted.getPayload())).isEqualTo("Hello");
+		assertThat(extracted.containsKey("baz")).isTrue();
+		Message<?> message = extracted.toMessage();
+		assertThat(message.getHeaders().get("foo")).isEqualTo("bar");
+		assertThat(message.getHeaders().getId()).isNotNull();
+		assertThat(message.getHeaders().getTimestamp()).isNotNull();
+		try {
+			message.getHeaders().get("baz");
+			Assert.fail("Exception expected");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage()).isEqualTo("Could not decode embedded header 'baz'");
+		}
+	}
+
+	@Test
+	public void testPendingHeaderValuesDoNotRetainFrame() throws Exception {
+		Message<byte[]> original = MessageBuilder.withPayload("Hello".getBytes()).setHeader("foo", "bar")
+				.setHeader("baz", Collections.singletonMap("qux", 1)).build();
+		byte[] embedded = EmbeddedHeaderUtils.embedHeaders(new MessageValues(original), EmbeddedHeadersFormat.binary,
+				"foo", "baz");
+		Message<?> message = EmbeddedHeaderUtils.extractHeaders(new GenericMessage<>(embedded), true).toMessage();
+		Arrays.fill(embedded, (byte) 0);
+		assertThat(message.getHeaders().get("foo")).isEqualTo("bar");
+		assertThat(message.getHeaders().get("baz")).isEqualTo(Collections.singletonMap("qux", 1));
+		assertThat(new String((byte[]) message.getPayload())).isEqualTo("Hello");
+	}
+
+	@Test
+	public void testLazyHeadersCopiedAndSerialized() throws Exception {
+		Message<byte[]> original = MessageBuilder.withPayload("Hello".getBytes()).setHeader("foo", "bar")
+				.setHeader("contentType", "text/plain").build();
+		byte[] embedded = EmbeddedHeaderUtils.embedHeaders(new MessageValues(original), EmbeddedHeadersFormat.binary,
+				"foo", "contentType");
+		Message<?> message = EmbeddedHeaderUtils.extractHeaders(new GenericMessage<>(embedded), true).toMessage();
+		Message<?> copy = MessageBuilder.fromMessage(message).setHeader("baz", "qux").build();
+		assertThat(copy.getHeaders()).containsEntry("foo", "bar").containsEntry("contentType", "text/plain")
+				.containsEntry("baz", "qux");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new ObjectOutputStream(bytes).writeObject(message.getHeaders());
+		MessageHeaders deserialized = (MessageHeaders) new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertThat(message.getHeaders()).isEqualTo(deserialized);
+		assertThat(deserialized.getId()).isEqualTo(message.getHeaders().getId());
+	}
+
+	@Test
+	public void testSerializeAndEmbedHeaders() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("Héllo").setHeader("foo", "bar").build();
+		MessageValues values = MessageSerializationUtils.withSerializedContentType(message);
+		byte[] embedded = EmbeddedHeaderUtils.serializeAndEmbedHeaders(values, null, EmbeddedHeadersFormat.json,
+				"foo", "contentType");
+		MessageValues extracted = EmbeddedHeaderUtils.extractHeaders(embedded);
+		assertThat(new String((byte[]) extracted.getPayload(), "UTF-8")).isEqualTo("Héllo");
+		assertThat(extracted.get("foo")).isEqualTo("bar");
+		assertThat(extracted.get("contentType")).isEqualTo("text/plain");
+	}
+
+	@Test
+	public void testSerializeStringPayloadMatchesGetBytes() throws Exception {
+		StringBuilder allChars = new StringBuilder();
+		for (char c = 0; c < Character.MAX_VALUE; c++) {
+			allChars.append(c);
+		}
+		allChars.append(Character.MAX_VALUE);
+		String[] values = { "", "a", "Héllo", "\u20ac", "a\ud83d\ude00b\ud83dc", "\ud83d", "\ude00", "\ude00\ud83d",
+				"\ud83d\ud83d\ude00", "x\ud83d", "\ude00x", allChars.toString(), allChars.reverse().toString() };
+		for (String value : values) {
+			byte[] expected = value.getBytes("UTF-8");
+			assertThat(MessageSerializationUtils.utf8Length(value)).isEqualTo(expected.length);
+			assertThat(MessageSerializationUtils.serializePayload(value, null)).isEqualTo(expected);
+			byte[] prefixed = MessageSerializationUtils.serializePayload(value, null, 3);
+			assertThat(prefixed).hasSize(expected.length + 3);
+			assertThat(Arrays.copyOfRange(prefixed, 3, prefixed.length)).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void testSerializeAndEmbedHeadersAllocatesPayloadOnce() throws Exception {
+		final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled());
+		final int size = 500000;
+		char[] chars = new char[size];
+		Arrays.fill(chars, 'x');
+		// encoded in two bytes each
+		char[] nonAsciiChars = new char[size / 2];
+		Arrays.fill(nonAsciiChars, '\u00e9');
+		final byte[] encoded = new byte[size];
+		Codec codec = new Codec() {
+
+			@Override
+			public void encode(Object object, OutputStream outputStream) throws IOException {
+				outputStream.write(encoded);
+			}
+
+			@Override
+			public byte[] encode(Object object) throws IOException {
+				return encoded;
+			}
+
+			@Override
+			public <T> T decode(InputStream inputStream, Class<T> type) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public <T> T decode(byte[] bytes, Class<T> type) throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+		for (Object payload : new Object[] { new String(chars), new String(nonAsciiChars), new Foo() }) {
+			MessageValues values = MessageSerializationUtils.withSerializedContentType(
+					MessageBuilder.withPayload(payload).setHeader("foo", "bar").build());
+			long allocated = 0;
+			for (int i = 0; i < 5; i++) {
+				long before = ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(
+						Thread.currentThread().getId());
+				byte[] result = EmbeddedHeaderUtils.serializeAndEmbedHeaders(values, codec, EmbeddedHeadersFormat.json,
+						BinderHeaders.STANDARD_HEADERS);
+				allocated = ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(
+						Thread.currentThread().getId()) - before;
+				assertThat(result.length).isGreaterThan(size);
+			}
+			// a single array for the headers and the payload, plus the encoded header values
+			assertThat(allocated).isLessThan(size + size / 2);
+		}
+	}
+
+	@Test
+	public void testMessageValuesOverlay() {
+		Message<String> message = MessageBuilder.withPayload("foo").setHeader("foo", "bar").setHeader("baz", "qux")
+				.build();
+		MessageValues values = new MessageValues(message);
+		assertThat(values).hasSize(4).containsEntry("foo", "bar").containsEntry("baz", "qux");
+		values.put("foo", "fiz");
+		values.put("bar", "buz");
+		assertThat(values.remove("baz")).isEqualTo("qux");
+		assertThat(values.remove("missing")).isNull();
+		assertThat(values).hasSize(4).containsEntry("foo", "fiz").containsEntry("bar", "buz").doesNotContainKey("baz");
+		assertThat(message.getHeaders()).containsEntry("foo", "bar").containsEntry("baz", "qux")
+				.doesNotContainKey("bar");
+		Iterator<Map.Entry<String, Object>> iterator = values.entrySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getKey().equals("bar")) {
+				iterator.remove();
+			}
+		}
+		assertThat(values).hasSize(3).doesNotContainKey("bar");
+		Message<?> converted = values.toMessage();
+		assertThat(converted.getHeaders()).hasSize(3).containsEntry("foo", "fiz").doesNotContainKey("baz");
+		assertThat(converted.getHeaders().getId()).isNotEqualTo(message.getHeaders().getId());
+		values.clear();
+		assertThat(values).isEmpty();
+		assertThat(message.getHeaders()).hasSize(4);
+	}
+
+	@Test
+	public void testMessageValuesOriginalEntriesAreReadOnly() {
+		Message<String> message = MessageBuilder.withPayload("foo").setHeader("foo", "bar").build();
+		MessageValues values = new MessageValues(message);
+		values.put("baz", "qux");
+		int entries = 0;
+		for (Map.Entry<String, Object> entry : values.entrySet()) {
+			entries++;
+			if (entry.getKey().equals("foo")) {
+				try {
+					entry.setValue("fiz");
+					Assert.fail("Exception expected");
+				}
+				catch (UnsupportedOperationException e) {
+					assertThat(values).containsEntry("foo", "bar");
+				}
+			}
+		}
+		assertThat(entries).isEqualTo(values.size());
+		assertThat(values).containsEntry("foo", "bar").containsEntry("baz", "qux");
+	}
+
+	@Test
+	public void testMessageValuesNullHeaderRemovedInMessage() {
+		MessageValues values = new MessageValues(MessageBuilder.withPayload("foo").setHeader("foo", "bar").build());
+		values.put("foo", null);
+		assertThat(values).containsKey("foo");
+		assertThat(values.toMessage().getHeaders()).doesNotContainKey("foo");
+		values.setPayload(new RuntimeException("test"));
+		assertThat(values.toMessage()).isInstanceOf(ErrorMessage.class);
+	}
+
 	@Test
 	public void testCanDecodeOldFormat() throws Exception {
 		byte[] bytes = "\u0002\u0003foo\u0003bar\u0003baz\u0004quxxHello".getBytes("UTF-8");
@@ -138,4 +453,7 @@ public class MessageConverterTests {
 
 	}
 
+	static class Foo {
+	}
+
 }
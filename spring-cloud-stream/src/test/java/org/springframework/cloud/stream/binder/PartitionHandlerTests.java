@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import org.springframework.context.expression.MapAccessor;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PartitionHandlerTests {
+
+	private final SpelExpressionParser parser = new SpelExpressionParser();
+
+	@Test
+	public void testPayloadProperty() {
+		PartitionHandler partitionHandler = partitionHandler("payload.id", null);
+		assertThat(partitionHandler.isPartitionKeyExpressionCompiled()).isTrue();
+		assertThat(partitionHandler.determinePartition(MessageBuilder.withPayload(new Foo(7)).build())).isEqualTo(2);
+		// a Map payload is read through the MapAccessor, like in SpEL
+		Message<?> message = MessageBuilder.withPayload(Collections.singletonMap("id", 11)).build();
+		assertThat(partitionHandler.determinePartition(message)).isEqualTo(1);
+	}
+
+	@Test
+	public void testHeaderAndSelector() {
+		PartitionHandler partitionHandler = partitionHandler("headers['key']", "hashCode() + 1");
+		Message<?> message = MessageBuilder.withPayload("foo").setHeader("key", 3).build();
+		assertThat(partitionHandler.determinePartition(message)).isEqualTo(4 % 5);
+		assertThat(partitionHandler.isPartitionKeyExpressionCompiled()).isTrue();
+		assertThat(partitionHandler.isPartitionSelectorExpressionCompiled()).isTrue();
+	}
+
+	@Test
+	public void testCompiledExpressionRevertsToInterpreted() {
+		PartitionHandler partitionHandler = partitionHandler("payload.id + 1", null);
+		assertThat(partitionHandler.isPartitionKeyExpressionCompiled()).isFalse();
+		assertThat(partitionHandler.determinePartition(MessageBuilder.withPayload(new Foo(1)).build())).isEqualTo(2);
+		assertThat(partitionHandler.isPartitionKeyExpressionCompiled()).isTrue();
+		assertThat(partitionHandler.determinePartition(MessageBuilder.withPayload(new Foo(2)).build())).isEqualTo(3);
+		assertThat(partitionHandler.determinePartition(MessageBuilder.withPayload(new Bar("4")).build()))
+				.isEqualTo("41".hashCode() % 5);
+		assertThat(partitionHandler.isPartitionKeyExpressionCompiled()).isFalse();
+	}
+
+	private PartitionHandler partitionHandler(String keyExpression, String selectorExpression) {
+		ProducerProperties producerProperties = new ProducerProperties();
+		producerProperties.setPartitionKeyExpression(this.parser.parseExpression(keyExpression));
+		if (selectorExpression != null) {
+			producerProperties.setPartitionSelectorExpression(this.parser.parseExpression(selectorExpression));
+		}
+		producerProperties.setPartitionCount(5);
+		StandardEvaluationContext evaluationContext = new StandardEvaluationContext();
+		evaluationContext.addPropertyAccessor(new MapAccessor());
+		return new PartitionHandler(evaluationContext, producerProperties, null, new PartitionSelectorStrategy() {
+
+			@Override
+			public int selectPartition(Object key, int partitionCount) {
+				return key.hashCode();
+			}
+
+		});
+	}
+
+	public static class Foo {
+
+		private final int id;
+
+		public Foo(int id) {
+			this.id = id;
+		}
+
+		public int getId() {
+			return this.id;
+		}
+
+	}
+
+	public static class Bar {
+
+		private final String id;
+
+		public Bar(String id) {
+			this.id = id;
+		}
+
+		public String getId() {
+			return this.id;
+		}
+
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binder;
+
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PartitionSelectorAlgorithmTests {
+
+	private static final int KEYS = 100000;
+
+	@Test
+	public void testMurmurHash3() {
+		Charset utf8 = Charset.forName("UTF-8");
+		// reference values of the first 64 bits of MurmurHash3_x64_128 with a seed of 0
+		assertThat(PartitionKeyHashing.hash64(new byte[0])).isEqualTo(0L);
+		assertThat(PartitionKeyHashing.hash64("hello".getBytes(utf8))).isEqualTo(0xcbd8a7b341bd9b02L);
+		assertThat(PartitionKeyHashing.hash64("The quick brown fox jumps over the lazy dog".getBytes(utf8)))
+				.isEqualTo(0xe34bbc7bbc071b6cL);
+		assertThat(PartitionKeyHashing.hashKey("hello")).isEqualTo(PartitionKeyHashing.hashKey("hello".getBytes(utf8)));
+		assertThat(PartitionKeyHashing.hashKey(42)).isEqualTo(PartitionKeyHashing.hashKey(42L));
+	}
+
+	@Test
+	public void testJumpHashKeyMovement() {
+		PartitionSelectorStrategy selector = PartitionSelectorAlgorithm.jumpHash.createPartitionSelector();
+		for (int partitions : new int[] { 1, 4, 10, 31 }) {
+			double moved = movedFraction(selector, selector, partitions, true);
+			// the optimum is 1/(n + 1), for 100000 keys the deviation is well below 1%
+			assertThat(moved).isBetween(1.0 / (partitions + 1) - 0.01, 1.0 / (partitions + 1) + 0.01);
+			assertBalanced(selector, partitions + 1, 0.1);
+		}
+	}
+
+	@Test
+	public void testConsistentHashRingKeyMovement() {
+		for (int partitions : new int[] { 1, 4, 10, 31 }) {
+			// a fresh ring for each partition count, as for different producers
+			double moved = movedFraction(new ConsistentHashRingPartitionSelector(),
+					new ConsistentHashRingPartitionSelector(), partitions, true);
+			// the share of the new partition depends on the placement of its virtual nodes
+			assertThat(moved).isBetween(1.0 / (partitions + 1) * 0.7, 1.0 / (partitions + 1) * 1.3);
+			assertBalanced(new ConsistentHashRingPartitionSelector(), partitions + 1, 0.3);
+		}
+	}
+
+	@Test
+	public void testHashCodeModuloKeyMovement() {
+		PartitionSelectorStrategy selector = new PartitionSelectorStrategy() {
+
+			@Override
+			public int selectPartition(Object key, int partitionCount) {
+				return Math.abs(key.hashCode() % partitionCount);
+			}
+
+		};
+		// for comparison: with the default strategy, n/(n + 1) of the keys move
+		assertThat(movedFraction(selector, selector, 10, false)).isGreaterThan(0.85);
+	}
+
+	/**
+	 * Return the fraction of keys that are assigned to a different partition when going
+	 * from {@code partitions} to {@code partitions + 1} partitions. If
+	 * {@code consistent}, verify that all these keys move to the new partition.
+	 */
+	private static double movedFraction(PartitionSelectorStrategy before, PartitionSelectorStrategy after,
+			int partitions, boolean consistent) {
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String key = "key-" + i;
+			int oldPartition = before.selectPartition(key, partitions);
+			int newPartition = after.selectPartition(key, partitions + 1);
+			assertThat(oldPartition).isBetween(0, partitions - 1);
+			if (oldPartition != newPartition) {
+				moved++;
+				if (consistent) {
+					assertThat(newPartition).isEqualTo(partitions);
+				}
+			}
+		}
+		return (double) moved / KEYS;
+	}
+
+	private static void assertBalanced(PartitionSelectorStrategy selector, int partitions, double tolerance) {
+		int[] counts = new int[partitions];
+		for (int i = 0; i < KEYS; i++) {
+			counts[selector.selectPartition("key-" + i, partitions)]++;
+		}
+		double expected = (double) KEYS / partitions;
+		for (int count : counts) {
+			assertThat((double) count).isBetween(expected * (1 - tolerance), expected * (1 + tolerance));
+		}
+	}
+
+}
@@ -60,10 +60,12 @@ public class CustomPartitionedProducerTest {
 	@SuppressWarnings("unchecked")
 	public void testCustomPartitionedProducer() {
 		DirectChannel messageChannel = (DirectChannel) this.testSource.output();
+		boolean found = false;
 		for (ChannelInterceptor channelInterceptor : messageChannel.getChannelInterceptors()) {
-			if (channelInterceptor instanceof MessageConverterConfigurer.PartitioningInterceptor) {
+			if (channelInterceptor instanceof MessageConverterConfigurer.OutboundMessageInterceptor) {
+				found = true;
 				Field partitionHandlerField = ReflectionUtils
-						.findField(MessageConverterConfigurer.PartitioningInterceptor.class, "partitionHandler");
+						.findField(MessageConverterConfigurer.OutboundMessageInterceptor.class, "partitionHandler");
 				ReflectionUtils.makeAccessible(partitionHandlerField);
 				PartitionHandler partitionHandler = (PartitionHandler) ReflectionUtils.getField(partitionHandlerField,
 						channelInterceptor);
@@ -80,6 +82,7 @@ public class CustomPartitionedProducerTest {
 								.getClass().equals(CustomPartitionSelectorClass.class));
 			}
 		}
+		Assert.assertTrue(found);
 	}
 
 	@EnableBinding(Source.class)
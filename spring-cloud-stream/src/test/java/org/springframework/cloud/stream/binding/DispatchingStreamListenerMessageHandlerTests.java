@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.cloud.stream.binding.DispatchingStreamListenerMessageHandler.ConditionalStreamListenerMessageHandlerWrapper;
+import org.springframework.context.expression.MapAccessor;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.annotation.support.MessageMethodArgumentResolver;
+import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolverComposite;
+import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
+import org.springframework.util.ReflectionUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 1.3
+ */
+public class DispatchingStreamListenerMessageHandlerTests {
+
+	private final List<String> invocations = new ArrayList<>();
+
+	private final List<ConditionalStreamListenerMessageHandlerWrapper> handlers = new ArrayList<>();
+
+	@Test
+	public void testIndexedHeaderConditions() {
+		addHandler("foo", "headers['type']=='foo'");
+		addHandler("bar", "'bar' == headers['type']");
+		addHandler("otherFoo", "headers['type']=='foo'");
+		addHandler("count", "headers['count'] > 1");
+		DispatchingStreamListenerMessageHandler handler = createHandler();
+		handler.handleMessage(MessageBuilder.withPayload("hello").setHeader("type", "foo").build());
+		assertThat(this.invocations).containsExactly("foo", "otherFoo");
+		this.invocations.clear();
+		handler.handleMessage(MessageBuilder.withPayload("hello").setHeader("type", "bar").setHeader("count", 2)
+				.build());
+		assertThat(this.invocations).containsExactly("bar", "count");
+		this.invocations.clear();
+		handler.handleMessage(MessageBuilder.withPayload("hello").setHeader("type", "baz").build());
+		handler.handleMessage(MessageBuilder.withPayload("hello").build());
+		assertThat(this.invocations).isEmpty();
+	}
+
+	@Test
+	public void testIndexedHeaderConditionWithNonStringHeader() {
+		addHandler("one", "headers['type']=='1'");
+		DispatchingStreamListenerMessageHandler handler = createHandler();
+		handler.handleMessage(MessageBuilder.withPayload("hello").setHeader("type", 1).build());
+		handler.handleMessage(MessageBuilder.withPayload("hello").setHeader("type", new StringBuilder("1")).build());
+		assertThat(this.invocations).containsExactly("one");
+	}
+
+	@Test
+	public void testIndexedPayloadConditions() {
+		addHandler("unconditional", null);
+		addHandler("a", "payload.name=='a'");
+		addHandler("b", "payload.name=='b'");
+		DispatchingStreamListenerMessageHandler handler = createHandler();
+		handler.handleMessage(MessageBuilder.withPayload(new Named("b")).build());
+		assertThat(this.invocations).containsExactly("unconditional", "b");
+		this.invocations.clear();
+		// the property of a map is resolved by the MapAccessor of the evaluation context
+		handler.handleMessage(MessageBuilder.withPayload(Collections.singletonMap("name", "a")).build());
+		assertThat(this.invocations).containsExactly("unconditional", "a");
+	}
+
+	@Test
+	public void testUnconditionalHandlers() {
+		addHandler("first", null);
+		addHandler("second", null);
+		createHandler().handleMessage(MessageBuilder.withPayload("hello").build());
+		assertThat(this.invocations).containsExactly("first", "second");
+	}
+
+	private DispatchingStreamListenerMessageHandler createHandler() {
+		StandardEvaluationContext evaluationContext = new StandardEvaluationContext();
+		evaluationContext.addPropertyAccessor(new MapAccessor());
+		return new DispatchingStreamListenerMessageHandler(this.handlers, evaluationContext);
+	}
+
+	private void addHandler(String name, String condition) {
+		InvocableHandlerMethod handlerMethod = new InvocableHandlerMethod(new Recorder(name),
+				ReflectionUtils.findMethod(Recorder.class, "handle", Message.class));
+		HandlerMethodArgumentResolverComposite resolvers = new HandlerMethodArgumentResolverComposite();
+		resolvers.addResolver(new MessageMethodArgumentResolver());
+		handlerMethod.setMessageMethodArgumentResolvers(resolvers);
+		this.handlers.add(new ConditionalStreamListenerMessageHandlerWrapper(
+				condition != null ? new SpelExpressionParser().parseExpression(condition) : null,
+				new StreamListenerMessageHandler(handlerMethod, false, new String[0])));
+	}
+
+	public class Recorder {
+
+		private final String name;
+
+		Recorder(String name) {
+			this.name = name;
+		}
+
+		public void handle(Message<?> message) {
+			DispatchingStreamListenerMessageHandlerTests.this.invocations.add(this.name);
+		}
+
+	}
+
+	public static class Named {
+
+		private final String name;
+
+		Named(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+	}
+
+}
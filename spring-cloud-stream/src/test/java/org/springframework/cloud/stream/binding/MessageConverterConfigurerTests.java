@@ -20,10 +20,18 @@ import java.util.Collections;
 
 import org.junit.Test;
 
+import org.springframework.cloud.stream.binder.BinderHeaders;
+import org.springframework.cloud.stream.binder.JumpHashPartitionSelector;
+import org.springframework.cloud.stream.binder.PartitionKeyHashing;
+import org.springframework.cloud.stream.binder.PartitionSelectorAlgorithm;
+import org.springframework.cloud.stream.binder.ProducerProperties;
 import org.springframework.cloud.stream.config.BindingProperties;
 import org.springframework.cloud.stream.config.BindingServiceProperties;
 import org.springframework.cloud.stream.converter.CompositeMessageConverterFactory;
+import org.springframework.cloud.stream.converter.ConversionException;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.converter.AbstractMessageConverter;
@@ -94,6 +102,136 @@ public class MessageConverterConfigurerTests {
 		}
 	}
 
+	@Test
+	public void testConfigureOutputChannelWithUnknownContentType() {
+		BindingServiceProperties props = new BindingServiceProperties();
+		BindingProperties bindingProps = new BindingProperties();
+		bindingProps.setContentType("application/x-unknown");
+		props.setBindings(Collections.singletonMap("foo", bindingProps));
+		CompositeMessageConverterFactory converterFactory = new CompositeMessageConverterFactory(
+				Collections.<MessageConverter>emptyList(), null);
+		MessageConverterConfigurer configurer = new MessageConverterConfigurer(props, converterFactory);
+		try {
+			configurer.configureOutputChannel(new QueueChannel(), "foo");
+			fail("Expected ConversionException");
+		}
+		catch (ConversionException e) {
+			assertThat(e.getMessage()).isEqualTo("No message converter is registered for application/x-unknown");
+		}
+	}
+
+	@Test
+	public void testConfigureOutputChannelPartitionedWithContentType() {
+		QueueChannel out = partitionedOutputChannel("text/plain");
+		assertThat(out.getChannelInterceptors()).hasSize(1);
+		Message<String> message = MessageBuilder.withPayload("foo").build();
+		out.send(message);
+		Message<?> received = out.receive(0);
+		assertThat(received.getPayload()).isEqualTo("foo");
+		assertThat(received.getHeaders().getId()).isEqualTo(message.getHeaders().getId());
+		assertThat(received.getHeaders().getTimestamp()).isEqualTo(message.getHeaders().getTimestamp());
+		assertThat(received.getHeaders().get(BinderHeaders.PARTITION_HEADER)).isEqualTo("foo".hashCode() % 3);
+		assertThat(received.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo("text/plain");
+		out.send(MessageBuilder.withPayload("foo").setHeader(BinderHeaders.PARTITION_OVERRIDE, 2).build());
+		received = out.receive(0);
+		assertThat(received.getHeaders().get(BinderHeaders.PARTITION_HEADER)).isEqualTo(2);
+		assertThat(received.getHeaders()).doesNotContainKey(BinderHeaders.PARTITION_OVERRIDE);
+	}
+
+	@Test
+	public void testConfigureOutputChannelPartitionedWithConversion() {
+		QueueChannel out = partitionedOutputChannel("application/json");
+		out.send(MessageBuilder.withPayload(new Foo()).setHeader("foo", "bar").build());
+		Message<?> received = out.receive(0);
+		assertThat(received.getPayload()).isEqualTo("{\"bar\":\"bar\"}");
+		assertThat(received.getHeaders().get(BinderHeaders.PARTITION_HEADER)).isEqualTo(Math.abs(Foo.class.hashCode() % 3));
+		assertThat(received.getHeaders().get("foo")).isEqualTo("bar");
+	}
+
+	@Test
+	public void testConfigureOutputChannelWithPartitionSelectorAlgorithm() {
+		QueueChannel out = partitionedOutputChannel("text/plain", PartitionSelectorAlgorithm.jumpHash);
+		for (String key : new String[] { "foo", "bar", "baz" }) {
+			out.send(MessageBuilder.withPayload(key).build());
+			assertThat(out.receive(0).getHeaders().get(BinderHeaders.PARTITION_HEADER))
+					.isEqualTo(new JumpHashPartitionSelector().selectPartition(key, 3));
+		}
+	}
+
+	@Test
+	public void testConfigureOutputChannelPartitionedRecordsStatistics() {
+		BindingServiceProperties props = new BindingServiceProperties();
+		BindingProperties bindingProps = new BindingProperties();
+		ProducerProperties producerProperties = new ProducerProperties();
+		producerProperties.setPartitionKeyExpression(new SpelExpressionParser().parseExpression("headers['key']"));
+		producerProperties.setPartitionSelectorExpression(new SpelExpressionParser().parseExpression("0"));
+		producerProperties.setPartitionCount(2);
+		bindingProps.setProducer(producerProperties);
+		props.setBindings(Collections.singletonMap("foo", bindingProps));
+		MessageConverterConfigurer configurer = new MessageConverterConfigurer(props,
+				new CompositeMessageConverterFactory(Collections.<MessageConverter>emptyList(), null));
+		QueueChannel out = new QueueChannel();
+		configurer.configureOutputChannel(out, "foo");
+		for (int i = 0; i < 3; i++) {
+			out.send(MessageBuilder.withPayload("h\u00e9llo").setHeader("key", "hot").build());
+		}
+		out.send(MessageBuilder.withPayload(new byte[10]).setHeader("key", "cold").build());
+		out.send(MessageBuilder.withPayload("hello").setHeader(BinderHeaders.PARTITION_OVERRIDE, 1).build());
+		PartitionStatistics statistics = configurer.getPartitionStatistics().get("foo");
+		assertThat(statistics.getSendCount(0)).isEqualTo(4);
+		assertThat(statistics.getByteCount(0)).isEqualTo(28);
+		assertThat(statistics.getSendCount(1)).isEqualTo(1);
+		assertThat(statistics.getSkew()).isEqualTo(1.6);
+		assertThat(statistics.getHotKeys()).hasSize(2);
+		assertThat(statistics.getHotKeys().get(0).getKeyHash()).isEqualTo(PartitionKeyHashing.hashKey("hot"));
+		assertThat(statistics.getHotKeys().get(0).getCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void testConfigureOutputChannelPartitionedDoesNotRecordFailedSends() {
+		BindingServiceProperties props = new BindingServiceProperties();
+		BindingProperties bindingProps = new BindingProperties();
+		ProducerProperties producerProperties = new ProducerProperties();
+		producerProperties.setPartitionKeyExpression(new SpelExpressionParser().parseExpression("payload"));
+		producerProperties.setPartitionSelectorExpression(new SpelExpressionParser().parseExpression("0"));
+		producerProperties.setPartitionCount(2);
+		bindingProps.setProducer(producerProperties);
+		props.setBindings(Collections.singletonMap("foo", bindingProps));
+		MessageConverterConfigurer configurer = new MessageConverterConfigurer(props,
+				new CompositeMessageConverterFactory(Collections.<MessageConverter>emptyList(), null));
+		QueueChannel out = new QueueChannel(1);
+		configurer.configureOutputChannel(out, "foo");
+		assertThat(out.send(MessageBuilder.withPayload("hello").build(), 0)).isTrue();
+		assertThat(out.send(MessageBuilder.withPayload("hello").build(), 0)).isFalse();
+		PartitionStatistics statistics = configurer.getPartitionStatistics().get("foo");
+		assertThat(statistics.getSendCount(0)).isEqualTo(1);
+		assertThat(statistics.getByteCount(0)).isEqualTo(5);
+		assertThat(statistics.getHotKeys().get(0).getCount()).isEqualTo(1);
+	}
+
+	private QueueChannel partitionedOutputChannel(String contentType) {
+		return partitionedOutputChannel(contentType, null);
+	}
+
+	private QueueChannel partitionedOutputChannel(String contentType, PartitionSelectorAlgorithm algorithm) {
+		BindingServiceProperties props = new BindingServiceProperties();
+		BindingProperties bindingProps = new BindingProperties();
+		bindingProps.setContentType(contentType);
+		ProducerProperties producerProperties = new ProducerProperties();
+		producerProperties.setPartitionKeyExpression(new SpelExpressionParser().parseExpression(
+				"payload instanceof T(String) ? payload : payload.getClass()"));
+		producerProperties.setPartitionCount(3);
+		producerProperties.setPartitionSelectorAlgorithm(algorithm);
+		bindingProps.setProducer(producerProperties);
+		props.setBindings(Collections.singletonMap("foo", bindingProps));
+		CompositeMessageConverterFactory converterFactory = new CompositeMessageConverterFactory(
+				Collections.<MessageConverter>emptyList(), null);
+		MessageConverterConfigurer configurer = new MessageConverterConfigurer(props, converterFactory);
+		QueueChannel out = new QueueChannel();
+		configurer.configureOutputChannel(out, "foo");
+		return out;
+	}
+
 	public static class Foo {
 
 		private String bar = "bar";
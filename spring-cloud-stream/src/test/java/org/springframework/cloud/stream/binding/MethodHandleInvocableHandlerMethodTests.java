@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binding;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.support.HeaderMethodArgumentResolver;
+import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
+import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
+import org.springframework.util.ReflectionUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @since 1.3
+ */
+public class MethodHandleInvocableHandlerMethodTests {
+
+	private final StreamListenerMessageHandlerMethodFactory factory = new StreamListenerMessageHandlerMethodFactory();
+
+	private final Listener listener = new Listener();
+
+	@Before
+	public void setUp() {
+		this.factory.setMessageConverter(new StringMessageConverter());
+		this.factory.setBeanFactory(new DefaultListableBeanFactory());
+		this.factory.afterPropertiesSet();
+	}
+
+	@Test
+	public void testPayload() throws Exception {
+		InvocableHandlerMethod handlerMethod = optimize("payload", String.class);
+		assertThat(handlerMethod).isInstanceOf(MethodHandleInvocableHandlerMethod.class);
+		assertThat(handlerMethod.isVoid()).isFalse();
+		assertThat(handlerMethod.invoke(MessageBuilder.withPayload("hello".getBytes()).build()))
+				.isEqualTo("HELLO");
+	}
+
+	@Test
+	public void testMessage() throws Exception {
+		InvocableHandlerMethod handlerMethod = optimize("message", Message.class);
+		assertThat(handlerMethod).isInstanceOf(MethodHandleInvocableHandlerMethod.class);
+		assertThat(handlerMethod.isVoid()).isTrue();
+		Message<String> message = MessageBuilder.withPayload("hello").build();
+		assertThat(handlerMethod.invoke(message)).isNull();
+		assertThat(this.listener.received).isSameAs(message);
+	}
+
+	@Test
+	public void testPayloadAndHeaders() throws Exception {
+		InvocableHandlerMethod handlerMethod = optimize("payloadAndHeaders", String.class, int.class, String.class);
+		assertThat(handlerMethod).isInstanceOf(MethodHandleInvocableHandlerMethod.class);
+		assertThat(handlerMethod.invoke(MessageBuilder.withPayload("hello").setHeader("count", "2").build()))
+				.isEqualTo("hello:2:none");
+	}
+
+	@Test
+	public void testExceptionIsNotWrapped() throws Exception {
+		InvocableHandlerMethod handlerMethod = optimize("fail", String.class);
+		try {
+			handlerMethod.invoke(MessageBuilder.withPayload("hello").build());
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertThat(e.getMessage()).isEqualTo("hello");
+		}
+	}
+
+	@Test
+	public void testParameterWithoutResolverIsNotOptimized() throws Exception {
+		StreamListenerMessageHandlerMethodFactory factory = new StreamListenerMessageHandlerMethodFactory();
+		factory.setArgumentResolvers(Collections.<HandlerMethodArgumentResolver>singletonList(
+				new HeaderMethodArgumentResolver(null, null)));
+		factory.afterPropertiesSet();
+		InvocableHandlerMethod handlerMethod = factory.createInvocableHandlerMethod(this.listener,
+				ReflectionUtils.findMethod(Listener.class, "payload", String.class));
+		assertThat(handlerMethod).isNotInstanceOf(MethodHandleInvocableHandlerMethod.class);
+	}
+
+	@Test
+	public void testArgumentTypeMismatch() throws Exception {
+		InvocableHandlerMethod handlerMethod = optimizeWithResolvedArgument(42, "payload", String.class);
+		assertThat(handlerMethod).isInstanceOf(MethodHandleInvocableHandlerMethod.class);
+		try {
+			handlerMethod.invoke(MessageBuilder.withPayload("hello").build());
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage()).contains("Argument [0] is not assignable to parameter type [java.lang.String]")
+					.contains("HandlerMethod details").contains("[0] [type=java.lang.Integer] [value=42]");
+		}
+	}
+
+	@Test
+	public void testNullArgumentForPrimitiveParameter() throws Exception {
+		InvocableHandlerMethod handlerMethod = optimizeWithResolvedArgument(null, "count", int.class);
+		assertThat(handlerMethod).isInstanceOf(MethodHandleInvocableHandlerMethod.class);
+		try {
+			handlerMethod.invoke(MessageBuilder.withPayload("hello").build());
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage()).contains("Argument [0] is not assignable to parameter type [int]")
+					.contains("[0] [null]");
+		}
+	}
+
+	@Test
+	public void testBoxedArgumentForPrimitiveParameter() throws Exception {
+		InvocableHandlerMethod handlerMethod = optimizeWithResolvedArgument(3, "count", int.class);
+		assertThat(handlerMethod.invoke(MessageBuilder.withPayload("hello").build())).isEqualTo(4);
+	}
+
+	private InvocableHandlerMethod optimize(String methodName, Class<?>... parameterTypes) {
+		return this.factory.createInvocableHandlerMethod(this.listener,
+				ReflectionUtils.findMethod(Listener.class, methodName, parameterTypes));
+	}
+
+	private InvocableHandlerMethod optimizeWithResolvedArgument(final Object argument, String methodName,
+			Class<?>... parameterTypes) {
+		StreamListenerMessageHandlerMethodFactory factory = new StreamListenerMessageHandlerMethodFactory();
+		factory.setArgumentResolvers(Collections.<HandlerMethodArgumentResolver>singletonList(
+				new HandlerMethodArgumentResolver() {
+
+					@Override
+					public boolean supportsParameter(MethodParameter parameter) {
+						return true;
+					}
+
+					@Override
+					public Object resolveArgument(MethodParameter parameter, Message<?> message) {
+						return argument;
+					}
+
+				}));
+		factory.afterPropertiesSet();
+		return factory.createInvocableHandlerMethod(this.listener,
+				ReflectionUtils.findMethod(Listener.class, methodName, parameterTypes));
+	}
+
+	private static class Listener {
+
+		private Message<?> received;
+
+		public String payload(String payload) {
+			return payload.toUpperCase();
+		}
+
+		public void message(Message<String> message) {
+			this.received = message;
+		}
+
+		public String payloadAndHeaders(String payload, @Header("count") int count,
+				@Header(name = "missing", defaultValue = "none") String missing) {
+			return payload + ":" + count + ":" + missing;
+		}
+
+		public String fail(String payload) throws IOException {
+			throw new IOException(payload);
+		}
+
+		public int count(int count) {
+			return count + 1;
+		}
+
+	}
+
+}
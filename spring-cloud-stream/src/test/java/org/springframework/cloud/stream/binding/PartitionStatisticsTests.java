@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.binding;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import org.springframework.cloud.stream.binder.PartitionKeyHashing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 1.3
+ */
+public class PartitionStatisticsTests {
+
+	@Test
+	public void testCounters() {
+		PartitionStatistics statistics = new PartitionStatistics(3, 5);
+		statistics.record(0, "a", 10);
+		statistics.record(2, "b", 5);
+		statistics.record(2, "b", 0);
+		statistics.record(3, "c", 100);
+		statistics.record(-1, "d", 100);
+		assertThat(statistics.getSendCount(0)).isEqualTo(1);
+		assertThat(statistics.getByteCount(0)).isEqualTo(10);
+		assertThat(statistics.getSendCount(1)).isEqualTo(0);
+		assertThat(statistics.getSendCount(2)).isEqualTo(2);
+		assertThat(statistics.getByteCount(2)).isEqualTo(5);
+		assertThat(statistics.getSkew()).isEqualTo(2.0);
+	}
+
+	@Test
+	public void testNoMessages() {
+		PartitionStatistics statistics = new PartitionStatistics(3, 5);
+		assertThat(statistics.getSkew()).isEqualTo(0.0);
+		assertThat(statistics.getHotKeys()).isEmpty();
+	}
+
+	@Test
+	public void testConcurrentCounters() throws Exception {
+		final PartitionStatistics statistics = new PartitionStatistics(4, 0);
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			final int partition = i % 4;
+			threads[i] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+					for (int j = 0; j < 10000; j++) {
+						statistics.record(partition, null, 2);
+					}
+				}
+
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (int partition = 0; partition < 4; partition++) {
+			assertThat(statistics.getSendCount(partition)).isEqualTo(20000);
+			assertThat(statistics.getByteCount(partition)).isEqualTo(40000);
+		}
+		assertThat(statistics.getSkew()).isEqualTo(1.0);
+	}
+
+	@Test
+	public void testHotKeys() {
+		PartitionStatistics statistics = new PartitionStatistics(1, 2);
+		for (int i = 0; i < 10000; i++) {
+			// two frequent keys among many rare ones, more than the sketch can track
+			statistics.record(0, i % 4 == 0 ? "hot" : (i % 4 == 1 ? "warm" : "cold-" + i), 0);
+		}
+		List<PartitionStatistics.HotKey> hotKeys = statistics.getHotKeys();
+		assertThat(hotKeys).hasSize(2);
+		assertThat(hotKeys.get(0).getKeyHash()).isIn(PartitionKeyHashing.hashKey("hot"),
+				PartitionKeyHashing.hashKey("warm"));
+		assertThat(hotKeys.get(1).getKeyHash()).isIn(PartitionKeyHashing.hashKey("hot"),
+				PartitionKeyHashing.hashKey("warm"));
+		for (PartitionStatistics.HotKey hotKey : hotKeys) {
+			assertThat(hotKey.getKey()).isIn("hot", "warm");
+			assertThat(hotKey.getKeyHash()).isEqualTo(PartitionKeyHashing.hashKey(hotKey.getKey()));
+			assertThat(hotKey.getCount()).isGreaterThanOrEqualTo(2500);
+			assertThat(hotKey.getCount() - hotKey.getError()).isLessThanOrEqualTo(2500);
+		}
+	}
+
+	@Test
+	public void testByteArrayKeysComparedByContent() {
+		PartitionStatistics statistics = new PartitionStatistics(1, 1);
+		statistics.record(0, new byte[] { 1, 2 }, 0);
+		statistics.record(0, new byte[] { 1, 2 }, 0);
+		List<PartitionStatistics.HotKey> hotKeys = statistics.getHotKeys();
+		assertThat(hotKeys).hasSize(1);
+		assertThat(hotKeys.get(0).getKeyHash()).isEqualTo(PartitionKeyHashing.hashKey(new byte[] { 1, 2 }));
+		assertThat(hotKeys.get(0).getKey()).isEqualTo("0x0102");
+		assertThat(hotKeys.get(0).getCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void testKeyDescriptionsAreTruncated() {
+		PartitionStatistics statistics = new PartitionStatistics(1, 2);
+		StringBuilder longKey = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			longKey.append(i % 10);
+		}
+		statistics.record(0, longKey.toString(), 0);
+		statistics.record(0, new byte[100], 0);
+		for (PartitionStatistics.HotKey hotKey : statistics.getHotKeys()) {
+			assertThat(hotKey.getKey()).hasSize(PartitionStatistics.MAX_KEY_DESCRIPTION_LENGTH);
+			assertThat(longKey.toString().startsWith(hotKey.getKey()) || hotKey.getKey().startsWith("0x0000"))
+					.isTrue();
+		}
+	}
+
+}
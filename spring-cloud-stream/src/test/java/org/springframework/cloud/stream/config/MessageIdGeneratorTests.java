@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.config;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.utils.MockBinderRegistryConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.IdGenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageIdGeneratorTests {
+
+	@Test
+	public void testThreadLocalRandom() {
+		IdGenerator idGenerator = MessageIdGenerator.threadLocalRandom.createIdGenerator();
+		Set<UUID> ids = new HashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			UUID id = idGenerator.generateId();
+			assertThat(id.version()).isEqualTo(4);
+			assertThat(id.variant()).isEqualTo(2);
+			ids.add(id);
+		}
+		assertThat(ids).hasSize(1000);
+	}
+
+	@Test
+	public void testIdGeneratorInstalledWhileContextIsOpen() {
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(Config.class).web(false)
+				.run("--spring.cloud.stream.idGenerator=counter");
+		try {
+			UUID first = MessageBuilder.withPayload("foo").build().getHeaders().getId();
+			UUID second = MessageBuilder.withPayload("foo").build().getHeaders().getId();
+			assertThat(first.getMostSignificantBits()).isEqualTo(0);
+			assertThat(second.getLeastSignificantBits()).isEqualTo(first.getLeastSignificantBits() + 1);
+		}
+		finally {
+			context.close();
+		}
+		UUID id = MessageBuilder.withPayload("foo").build().getHeaders().getId();
+		assertThat(id.getMostSignificantBits()).isNotEqualTo(0);
+	}
+
+	@Configuration
+	@EnableBinding
+	@EnableAutoConfiguration
+	@Import(MockBinderRegistryConfiguration.class)
+	public static class Config {
+
+	}
+
+}
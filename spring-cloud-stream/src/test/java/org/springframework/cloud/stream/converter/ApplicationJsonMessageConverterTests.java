@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.converter;
+
+import java.util.Collections;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import org.junit.Test;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.util.MimeType;
+import org.springframework.util.ReflectionUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 1.3
+ */
+public class ApplicationJsonMessageConverterTests {
+
+	private static final MessageHeaders JSON_HEADERS = new MessageHeaders(
+			Collections.<String, Object>singletonMap(MessageHeaders.CONTENT_TYPE, "application/json"));
+
+	@Test
+	public void testWriteBytes() {
+		ApplicationJsonMessageConverter converter = new ApplicationJsonMessageConverter();
+		converter.setSerializedPayloadClass(byte[].class);
+		MappingJackson2MessageConverter reference = new MappingJackson2MessageConverter();
+		reference.setSerializedPayloadClass(byte[].class);
+		Message<?> message = converter.toMessage(new Foo("bar"), JSON_HEADERS);
+		assertThat((byte[]) message.getPayload()).isEqualTo(
+				(byte[]) reference.toMessage(new Foo("bar"), JSON_HEADERS).getPayload());
+		assertThat(new String((byte[]) converter.toMessage(new Foo("baz"), JSON_HEADERS).getPayload()))
+				.isEqualTo("{\"name\":\"baz\",\"secret\":null}");
+	}
+
+	@Test
+	public void testWriteString() {
+		ApplicationJsonMessageConverter converter = new ApplicationJsonMessageConverter();
+		converter.setSerializedPayloadClass(String.class);
+		assertThat(converter.toMessage(new Foo("bar"), JSON_HEADERS).getPayload())
+				.isEqualTo("{\"name\":\"bar\",\"secret\":null}");
+		converter.setPrettyPrint(true);
+		assertThat((String) converter.toMessage(new Foo("bar"), JSON_HEADERS).getPayload()).contains("\n");
+	}
+
+	@Test
+	public void testWriteBytesWithOtherEncoding() {
+		ApplicationJsonMessageConverter converter = new ApplicationJsonMessageConverter();
+		converter.setSerializedPayloadClass(byte[].class);
+		MessageHeaders headers = new MessageHeaders(Collections.<String, Object>singletonMap(
+				MessageHeaders.CONTENT_TYPE, MimeType.valueOf("application/json;charset=UTF-16BE")));
+		byte[] payload = (byte[]) converter.toMessage(new Foo("bar"), headers).getPayload();
+		assertThat(payload).hasSize(2 * "{\"name\":\"bar\",\"secret\":null}".length());
+	}
+
+	@Test
+	public void testRead() {
+		ApplicationJsonMessageConverter converter = new ApplicationJsonMessageConverter();
+		Foo fromBytes = (Foo) converter.fromMessage(MessageBuilder.withPayload("{\"name\":\"bar\"}".getBytes())
+				.copyHeaders(JSON_HEADERS).build(), Foo.class);
+		assertThat(fromBytes.getName()).isEqualTo("bar");
+		Foo fromString = (Foo) converter.fromMessage(MessageBuilder.withPayload("{\"name\":\"baz\"}")
+				.copyHeaders(JSON_HEADERS).build(), Foo.class);
+		assertThat(fromString.getName()).isEqualTo("baz");
+	}
+
+	@Test
+	public void testReadWithView() {
+		ApplicationJsonMessageConverter converter = new ApplicationJsonMessageConverter();
+		MethodParameter parameter = new MethodParameter(
+				ReflectionUtils.findMethod(ApplicationJsonMessageConverterTests.class, "handle", Foo.class), 0);
+		Foo foo = (Foo) converter.fromMessage(MessageBuilder.withPayload("{\"name\":\"bar\",\"secret\":\"s\"}")
+				.copyHeaders(JSON_HEADERS).build(), Foo.class, parameter);
+		assertThat(foo.getName()).isEqualTo("bar");
+		assertThat(foo.getSecret()).isNull();
+	}
+
+	public void handle(@JsonView(Public.class) Foo foo) {
+	}
+
+	public interface Public {
+	}
+
+	public static class Foo {
+
+		@JsonView(Public.class)
+		private String name;
+
+		private String secret;
+
+		public Foo() {
+		}
+
+		Foo(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getSecret() {
+			return this.secret;
+		}
+
+		public void setSecret(String secret) {
+			this.secret = secret;
+		}
+
+	}
+
+}
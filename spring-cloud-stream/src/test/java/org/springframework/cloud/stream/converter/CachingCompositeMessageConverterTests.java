@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.converter;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.util.MimeType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 1.3
+ */
+public class CachingCompositeMessageConverterTests {
+
+	private final CountingConverter first = new CountingConverter("first");
+
+	private final CountingConverter second = new CountingConverter("second");
+
+	private final CachingCompositeMessageConverter converter = new CachingCompositeMessageConverter(
+			Arrays.<MessageConverter>asList(this.first, this.second));
+
+	@Test
+	public void testFromMessageUsesRememberedConverter() {
+		this.first.converts = false;
+		Message<String> message = MessageBuilder.withPayload("foo").setHeader(MessageHeaders.CONTENT_TYPE, "text/plain")
+				.build();
+		assertThat(this.converter.fromMessage(message, String.class)).isEqualTo("second");
+		assertThat(this.converter.fromMessage(message, String.class)).isEqualTo("second");
+		assertThat(this.first.invocations).isEqualTo(1);
+		assertThat(this.second.invocations).isEqualTo(2);
+		assertThat(this.converter.getCacheSize()).isEqualTo(1);
+	}
+
+	@Test
+	public void testFromMessageDistinguishesContentTypesAndTypes() {
+		Message<String> message = MessageBuilder.withPayload("foo").build();
+		this.converter.fromMessage(message, String.class);
+		this.converter.fromMessage(message, Object.class);
+		this.converter.fromMessage(MessageBuilder.fromMessage(message)
+				.setHeader(MessageHeaders.CONTENT_TYPE, MimeType.valueOf("text/plain")).build(), String.class);
+		this.converter.fromMessage(MessageBuilder.withPayload(new byte[0]).build(), String.class);
+		this.converter.fromMessage(message, String.class, "hint");
+		assertThat(this.converter.getCacheSize()).isEqualTo(5);
+	}
+
+	@Test
+	public void testFromMessageFallsBackWhenRememberedConverterFails() {
+		Message<String> message = MessageBuilder.withPayload("foo").build();
+		assertThat(this.converter.fromMessage(message, String.class)).isEqualTo("first");
+		this.first.converts = false;
+		assertThat(this.converter.fromMessage(message, String.class)).isEqualTo("second");
+		assertThat(this.first.invocations).isEqualTo(2);
+		assertThat(this.converter.fromMessage(message, String.class)).isEqualTo("second");
+		assertThat(this.first.invocations).isEqualTo(2);
+		this.second.converts = false;
+		assertThat(this.converter.fromMessage(message, String.class)).isNull();
+		assertThat(this.converter.getCacheSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void testToMessageUsesRememberedConverter() {
+		this.first.converts = false;
+		assertThat(this.converter.toMessage("foo", null).getPayload()).isEqualTo("second");
+		assertThat(this.converter.toMessage("foo", null).getPayload()).isEqualTo("second");
+		assertThat(this.first.invocations).isEqualTo(1);
+		assertThat(this.second.invocations).isEqualTo(2);
+	}
+
+	private static class CountingConverter implements MessageConverter {
+
+		private final String result;
+
+		private boolean converts = true;
+
+		private int invocations;
+
+		CountingConverter(String result) {
+			this.result = result;
+		}
+
+		@Override
+		public Object fromMessage(Message<?> message, Class<?> targetClass) {
+			this.invocations++;
+			return this.converts ? this.result : null;
+		}
+
+		@Override
+		public Message<?> toMessage(Object payload, MessageHeaders headers) {
+			this.invocations++;
+			return this.converts ? MessageBuilder.withPayload(this.result).build() : null;
+		}
+
+	}
+
+}
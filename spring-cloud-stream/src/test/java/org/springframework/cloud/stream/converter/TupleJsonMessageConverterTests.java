@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.stream.converter;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.TimeZone;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.tuple.Tuple;
+import org.springframework.tuple.TupleBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 1.3
+ */
+public class TupleJsonMessageConverterTests {
+
+	private static final MessageHeaders TUPLE_HEADERS = new MessageHeaders(Collections.<String, Object>singletonMap(
+			MessageHeaders.CONTENT_TYPE, MessageConverterUtils.X_SPRING_TUPLE));
+
+	private final TupleJsonMessageConverter converter = new TupleJsonMessageConverter(null);
+
+	@Test
+	public void testWriteFlatTuple() {
+		Tuple tuple = TupleBuilder.tuple().put("name", "foo").put("count", 42).put("total", 123456789012L)
+				.put("ratio", 0.5).put("active", true).put("missing", null).put("amount", new BigDecimal("10.25"))
+				.build();
+		assertThat(this.converter.toMessage(tuple, TUPLE_HEADERS).getPayload()).isEqualTo(tuple.toString());
+	}
+
+	@Test
+	public void testWriteNestedTuple() {
+		Tuple tuple = nestedTuple();
+		assertThat(this.converter.toMessage(tuple, TUPLE_HEADERS).getPayload()).isEqualTo(tuple.toString());
+	}
+
+	@Test
+	public void testWritePrettyPrinted() {
+		this.converter.setPrettyPrint(true);
+		String json = (String) this.converter.toMessage(nestedTuple(), TUPLE_HEADERS).getPayload();
+		assertThat(json).contains("\n");
+		assertThat(TupleBuilder.fromString(json)).isEqualTo(TupleBuilder.fromString(nestedTuple().toString()));
+	}
+
+	@Test
+	public void testWriteWithObjectMapper() {
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		TupleJsonMessageConverter converter = new TupleJsonMessageConverter(
+				new ObjectMapper().setDateFormat(dateFormat));
+		Tuple tuple = TupleBuilder.tuple().of("name", "foo", "date", new Date(0));
+		assertThat(converter.toMessage(tuple, TUPLE_HEADERS).getPayload())
+				.isEqualTo("{\"name\":\"foo\",\"date\":\"1970-01-01\"}");
+	}
+
+	@Test
+	public void testReadBytes() {
+		String json = nestedTuple().toString();
+		Message<byte[]> message = MessageBuilder.withPayload(json.getBytes(Charset.forName("UTF-8")))
+				.copyHeaders(TUPLE_HEADERS).build();
+		Tuple tuple = (Tuple) this.converter.fromMessage(message, Tuple.class);
+		assertThat(tuple).isEqualTo(TupleBuilder.fromString(json));
+		assertThat(tuple.getTuple("address").getString("city")).isEqualTo("Paris");
+		assertThat(tuple.getValue("tags")).isEqualTo(Arrays.asList("a", 1, 2.5, false));
+	}
+
+	@Test
+	public void testReadString() {
+		String json = "{\"name\":\"foo\",\"big\":12345678901234567890,\"list\":[[1,2],{\"x\":\"y\"}],"
+				+ "\"name\":\"bar\",\"text\":\"café\"}";
+		Message<String> message = MessageBuilder.withPayload(json).copyHeaders(TUPLE_HEADERS).build();
+		assertThat(this.converter.fromMessage(message, Tuple.class)).isEqualTo(TupleBuilder.fromString(json));
+	}
+
+	@Test
+	public void testReadSingleQuotes() {
+		Message<byte[]> message = MessageBuilder.withPayload("{'name':'foo'}".getBytes(Charset.forName("UTF-8")))
+				.copyHeaders(TUPLE_HEADERS).build();
+		assertThat(this.converter.fromMessage(message, Tuple.class))
+				.isEqualTo(TupleBuilder.fromString("{'name':'foo'}"));
+	}
+
+	@Test
+	public void testReadRootValue() {
+		Message<String> message = MessageBuilder.withPayload("\"foo\"").copyHeaders(TUPLE_HEADERS).build();
+		assertThat(this.converter.fromMessage(message, Tuple.class)).isEqualTo(TupleBuilder.fromString("\"foo\""));
+	}
+
+	private static Tuple nestedTuple() {
+		Tuple address = TupleBuilder.tuple().of("street", "Rue de Rivoli", "number", 12, "city", "Paris");
+		return TupleBuilder.tuple().of("name", "foo", "address", address, "tags",
+				Arrays.<Object>asList("a", null, 1, 2.5, false), "history",
+				Arrays.asList(address, TupleBuilder.tuple().of("city", "Lyon")));
+	}
+
+}
@@ -16,18 +16,24 @@
 
 package org.springframework.cloud.stream.partitioning;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.binder.Binder;
 import org.springframework.cloud.stream.binder.BinderFactory;
 import org.springframework.cloud.stream.binder.ProducerProperties;
+import org.springframework.cloud.stream.endpoint.PartitioningMetrics;
+import org.springframework.cloud.stream.endpoint.PartitionsEndpoint;
 import org.springframework.cloud.stream.messaging.Source;
 import org.springframework.cloud.stream.utils.MockBinderRegistryConfiguration;
 import org.springframework.context.annotation.Import;
@@ -35,6 +41,7 @@ import org.springframework.context.annotation.PropertySource;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.verify;
@@ -55,6 +62,12 @@ public class PartitionedProducerTest {
 	@Autowired
 	private Source testSource;
 
+	@Autowired
+	private PartitioningMetrics partitioningMetrics;
+
+	@Autowired
+	private PartitionsEndpoint partitionsEndpoint;
+
 	@Test
 	@SuppressWarnings("unchecked")
 	public void testBindingPartitionedProducer() {
@@ -67,6 +80,38 @@ public class PartitionedProducerTest {
 		verifyNoMoreInteractions(binder);
 	}
 
+	@Test
+	public void testPartitionKeyExpressionCompiledMetric() {
+		Map<String, Number> metrics = metrics();
+		Assert.assertThat(metrics.get("spring.cloud.stream.binding.output.partitionKeyExpression.compiled"),
+				equalTo((Number) 1));
+		Assert.assertThat(metrics.containsKey("spring.cloud.stream.binding.output.partitionSelectorExpression.compiled"),
+				equalTo(false));
+	}
+
+	@Test
+	public void testPartitionStatisticsMetricsAndEndpoint() {
+		Map<String, Number> metrics = metrics();
+		for (int partition = 0; partition < 3; partition++) {
+			Assert.assertThat(metrics.containsKey("spring.cloud.stream.binding.output.partition." + partition
+					+ ".send.count"), equalTo(true));
+			Assert.assertThat(metrics.containsKey("spring.cloud.stream.binding.output.partition." + partition
+					+ ".send.bytes"), equalTo(true));
+		}
+		Assert.assertThat(metrics.containsKey("spring.cloud.stream.binding.output.partition.skew"), equalTo(true));
+		Map<String, Object> partitions = this.partitionsEndpoint.invoke();
+		Assert.assertThat(partitions.keySet(), contains("output"));
+		Assert.assertThat(((Map<?, ?>) partitions.get("output")).get("partitionCount"), equalTo((Object) 3));
+	}
+
+	private Map<String, Number> metrics() {
+		Map<String, Number> metrics = new HashMap<>();
+		for (Metric<?> metric : this.partitioningMetrics.metrics()) {
+			metrics.put(metric.getName(), metric.getValue());
+		}
+		return metrics;
+	}
+
 	@EnableBinding(Source.class)
 	@EnableAutoConfiguration
 	@Import(MockBinderRegistryConfiguration.class)